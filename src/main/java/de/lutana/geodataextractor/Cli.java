@@ -3,16 +3,25 @@ package de.lutana.geodataextractor;
 import com.beust.jcommander.IStringConverter;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.JCommander;
-import de.lutana.geodataextractor.entity.Document;
 import de.lutana.geodataextractor.entity.Figure;
 import de.lutana.geodataextractor.entity.Location;
+import de.lutana.geodataextractor.fileparser.PdfParser;
+import de.lutana.geodataextractor.metrics.JsonMetricsReporter;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.MetricsReporter;
+import de.lutana.geodataextractor.metrics.PrometheusMetricsReporter;
+import de.lutana.geodataextractor.strategy.AbstractStrategy;
+import de.lutana.geodataextractor.strategy.AdaptiveStrategy;
 import de.lutana.geodataextractor.strategy.Strategy;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Set;
+import java.util.List;
 
 /**
  * Command Line Interface for the Geodata Extractor.
@@ -27,15 +36,84 @@ public class Cli {
 	@Parameter(names = "--strategy", description = "Strategy (fully qualified class name, Default or Fast)")
 	public String strategy;
 
+	@Parameter(names = {"--recursive", "-r"}, description = "Include the documents in all sub folders")
+	public boolean recursive = false;
+
+	@Parameter(names = "--include", description = "Only process documents matching one of these glob patterns, e.g. *.pdf")
+	public List<String> include = null;
+
+	@Parameter(names = "--exclude", description = "Skip documents and folders matching one of these glob patterns")
+	public List<String> exclude = null;
+
 	@Parameter(names = "--save", description = "Save extracted figures and data to the document's folder")
 	public boolean save = false;
 
+	@Parameter(names = "--cache", description = "Folder to cache the results in, documents with the same content are only processed once")
+	public String cache;
+
+	@Parameter(names = "--metrics", description = "Write the time spent in each processing step as JSON to the given file")
+	public String metrics;
+
+	@Parameter(names = "--prometheus", description = "Write the time spent in each processing step in the Prometheus text format to the given file")
+	public String prometheus;
+
+	@Parameter(names = "--metadata", description = "When to use CERMINE for title and abstract of PDF files: ALWAYS, FALLBACK (if missing in the PDF metadata) or NEVER")
+	public PdfParser.MetadataMode metadata = PdfParser.MetadataMode.ALWAYS;
+
+	@Parameter(names = "--figure-memory", description = "Memory in MB to keep rendered figures in, additional figures are written to the temporary folder (default: a quarter of the heap)")
+	public Integer figureMemory;
+
 	@Parameter(names = "--ocr", description = "Use slower but more accurate OCR mode")
 	public boolean improvedOcr = false;
 
 	@Parameter(names = "--figures", description = "Include bounding boxes for figures")
 	public boolean figures = false;
 
+	@Parameter(names = "--threads", description = "Number of documents processed in parallel (in server mode: number of requests)")
+	public int threads = 1;
+
+	@Parameter(names = "--figure-threads", description = "Number of figures of a document processed in parallel")
+	public int figureThreads = 1;
+
+	@Parameter(names = "--tf-intra-threads", description = "Number of threads TensorFlow uses within an operation (default: number of cores)")
+	public int tfIntraOpThreads = 0;
+
+	@Parameter(names = "--tf-inter-threads", description = "Number of operations TensorFlow runs in parallel (default: number of cores)")
+	public int tfInterOpThreads = 0;
+
+	@Parameter(names = "--time-budget", description = "Time in milliseconds per document, expensive steps are skipped if the time runs low")
+	public long timeBudget = 0;
+
+	@Parameter(names = "--figure-time-budget", description = "Time in milliseconds per figure, expensive steps are skipped if the time runs low")
+	public long figureTimeBudget = 0;
+
+	@Parameter(names = "--statistics", description = "File to load and save the recognizer statistics of the Adaptive strategy")
+	public String statistics;
+
+	@Parameter(names = "--stage-threads", description = "Process the documents in a pipeline with the given number of threads for the stages parse, text, figures and resolve, e.g. 2,1,4,1")
+	public List<Integer> stageThreads = null;
+
+	@Parameter(names = "--journal", description = "Write each processed document to this journal file, see --resume")
+	public String journal;
+
+	@Parameter(names = "--resume", description = "Skip the documents already in the journal and use the results from the journal instead")
+	public boolean resume = false;
+
+	@Parameter(names = "--server", description = "Run as HTTP server that keeps the models loaded, see --port")
+	public boolean server = false;
+
+	@Parameter(names = "--port", description = "Port for the HTTP server")
+	public int port = 8080;
+
+	@Parameter(names = "--bind", description = "Address the HTTP server listens on, e.g. 0.0.0.0 for all network interfaces")
+	public String bind = "127.0.0.1";
+
+	@Parameter(names = "--root", description = "Folder the HTTP server may process files from by path (default: only uploads)")
+	public String root;
+
+	@Parameter(names = "--max-upload", description = "Maximum size of files uploaded to the HTTP server in MB")
+	public int maxUpload = 100;
+
     @Parameter(names = "--help", help = true, description = "Prints this help")
     private boolean help = false;
 
@@ -49,40 +127,118 @@ public class Cli {
         }
 		
 		File file = cli.getFile();
-		if (!file.exists()) {
+		if (!cli.server && !file.exists()) {
 			System.out.println("Path does not exist.");
 			return;
 		}
+		// The models might be loaded with the strategy
+		Config.setTensorFlowIntraOpThreads(cli.tfIntraOpThreads);
+		Config.setTensorFlowInterOpThreads(cli.tfInterOpThreads);
 		Strategy strategy = cli.getStrategy();
 		if (strategy == null) {
 			System.out.println("Strategy not found.");
 			return;
 		}
+		if (strategy instanceof AbstractStrategy) {
+			((AbstractStrategy) strategy).setFigureThreads(cli.figureThreads);
+			((AbstractStrategy) strategy).setTimeBudget(cli.timeBudget, cli.figureTimeBudget);
+		}
+		File statistics = null;
+		if (cli.statistics != null && !cli.statistics.isEmpty() && strategy instanceof AdaptiveStrategy) {
+			statistics = new File(cli.statistics);
+			if (statistics.exists()) {
+				try {
+					((AdaptiveStrategy) strategy).getStatistics().load(statistics);
+				} catch (IOException e) {
+					System.out.println("Loading the statistics from " + statistics + " failed: " + e.getMessage());
+				}
+			}
+		}
 
-		GeodataExtractor gde = new GeodataExtractor();
+		// Pass the strategy directly, otherwise the default strategy and its models would be loaded in addition
+		GeodataExtractor gde = new GeodataExtractor(strategy);
 		gde.enableFastOcrMode(!cli.improvedOcr);
+		gde.setPdfMetadataMode(cli.metadata);
+		if (cli.figureMemory != null) {
+			Config.setGraphicMemoryLimit(cli.figureMemory * 1024L * 1024L);
+		}
 		gde.enableCaching(cli.save);
+		gde.setThreads(cli.threads);
+		if (cli.stageThreads != null) {
+			if (cli.stageThreads.size() != 4) {
+				System.out.println("Four thread counts required for --stage-threads.");
+				return;
+			}
+			gde.setStageThreads(cli.stageThreads.get(0), cli.stageThreads.get(1), cli.stageThreads.get(2), cli.stageThreads.get(3));
+		}
+		if (cli.cache != null && !cli.cache.isEmpty()) {
+			gde.setResultCache(new File(cli.cache));
+		}
+		if (cli.journal != null && !cli.journal.isEmpty()) {
+			gde.setJournal(new File(cli.journal), cli.resume);
+		}
+		else if (cli.resume) {
+			System.out.println("A journal is required to resume.");
+			return;
+		}
+		if (cli.server) {
+			try {
+				Server server = new Server(gde, cli.port, cli.threads);
+				server.setBindAddress(cli.bind);
+				if (cli.root != null && !cli.root.isEmpty()) {
+					server.setRoot(new File(cli.root));
+				}
+				server.setMaxUploadSize(cli.maxUpload * 1024L * 1024L);
+				// Keeps running until the JVM is stopped
+				server.start();
+			} catch (IOException e) {
+				System.out.println("Starting the server failed: " + e.getMessage());
+				gde.shutdown();
+			}
+			return;
+		}
 		if (file.isDirectory()) {
-			gde.setFolder(file);
+			gde.setFolder(file, cli.recursive, cli.include, cli.exclude);
 		}
 		else {
 			Collection<File> files = new ArrayList<File>();
 			files.add(file);
 			gde.setFiles(files);
 		}
-		gde.setStrategy(strategy);
-		Set<Document> documents = gde.run();
-		for(Document document : documents) {
+		// Print each document as soon as it's done instead of waiting for all documents
+		gde.run((document) -> {
+			StringBuilder sb = new StringBuilder();
 			Location dl = document.getLocation();
-			System.out.println(document.getFile().getAbsolutePath() + ":" + dl);
+			sb.append(document.getFile().getAbsolutePath()).append(":").append(dl).append(System.lineSeparator());
 			if (cli.figures) {
 				for(Figure figure : document.getFigures()) {
-					System.out.println(figure.getPage() + ":" + figure.getIndex() + ":" + figure.getLocation());
+					sb.append(figure.getPage()).append(":").append(figure.getIndex()).append(":").append(figure.getLocation()).append(System.lineSeparator());
 				}
 			}
-			System.out.println();
-		}
+			// Single call so that the output of documents finished at the same time doesn't get mixed up
+			System.out.println(sb);
+		});
 		gde.shutdown();
+		if (statistics != null) {
+			try {
+				((AdaptiveStrategy) strategy).getStatistics().save(statistics);
+			} catch (IOException e) {
+				System.out.println("Saving the statistics to " + statistics + " failed: " + e.getMessage());
+			}
+		}
+		writeMetrics(cli.metrics, new JsonMetricsReporter());
+		writeMetrics(cli.prometheus, new PrometheusMetricsReporter());
+	}
+
+	private static void writeMetrics(String file, MetricsReporter reporter) {
+		if (file == null || file.isEmpty()) {
+			return;
+		}
+		try (OutputStream out = new FileOutputStream(file)) {
+			Metrics.getInstance().report(reporter, out);
+		} catch (IOException e) {
+			System.out.println("Writing the metrics to " + file + " failed: " + e.getMessage());
+		}
 	}
 
 	public File getFile() {
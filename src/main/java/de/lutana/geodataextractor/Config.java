@@ -18,6 +18,10 @@ import java.net.URLEncoder;
 public class Config {
 	
 	private static boolean fastOcrModeEnabled = true;
+	private static PdfParser.MetadataMode pdfMetadataMode = PdfParser.MetadataMode.ALWAYS;
+	private static long graphicMemoryLimit = Runtime.getRuntime().maxMemory() / 4;
+	private static int tensorFlowIntraOpThreads = 0;
+	private static int tensorFlowInterOpThreads = 0;
 	
 	public static boolean isOcrFastModeEnabled() {
 		return fastOcrModeEnabled;
@@ -27,6 +31,58 @@ public class Config {
 		fastOcrModeEnabled = enableFastOcrMode;
 	}
 	
+	public static PdfParser.MetadataMode getPdfMetadataMode() {
+		return pdfMetadataMode;
+	}
+	
+	public static void setPdfMetadataMode(PdfParser.MetadataMode metadataMode) {
+		pdfMetadataMode = metadataMode;
+	}
+	
+	/**
+	 * Returns the maximum memory in bytes used to keep figure images in memory.
+	 * Additional images are written to the temporary folder.
+	 * 
+	 * @return 
+	 */
+	public static long getGraphicMemoryLimit() {
+		return graphicMemoryLimit;
+	}
+	
+	public static void setGraphicMemoryLimit(long bytes) {
+		graphicMemoryLimit = bytes;
+	}
+	
+	/**
+	 * Returns the number of threads TensorFlow uses within an operation, 0 for the TensorFlow default.
+	 * 
+	 * Only applies to models loaded afterwards.
+	 * 
+	 * @return 
+	 */
+	public static int getTensorFlowIntraOpThreads() {
+		return tensorFlowIntraOpThreads;
+	}
+	
+	public static void setTensorFlowIntraOpThreads(int threads) {
+		tensorFlowIntraOpThreads = threads;
+	}
+	
+	/**
+	 * Returns the number of operations TensorFlow runs in parallel, 0 for the TensorFlow default.
+	 * 
+	 * Only applies to models loaded afterwards.
+	 * 
+	 * @return 
+	 */
+	public static int getTensorFlowInterOpThreads() {
+		return tensorFlowInterOpThreads;
+	}
+	
+	public static void setTensorFlowInterOpThreads(int threads) {
+		tensorFlowInterOpThreads = threads;
+	}
+	
 	public static File getTempFolder(String subFolderName) {
 		File folder = new File("./temp/" + subFolderName);
 		if (!folder.exists()) {
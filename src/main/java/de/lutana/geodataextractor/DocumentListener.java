@@ -0,0 +1,26 @@
+package de.lutana.geodataextractor;
+
+import de.lutana.geodataextractor.entity.Document;
+
+/**
+ * Receives the documents processed by the GeodataExtractor one by one.
+ *
+ * @author Matthias Mohr
+ * @see de.lutana.geodataextractor.GeodataExtractor#run(DocumentListener)
+ */
+@FunctionalInterface
+public interface DocumentListener {
+
+	/**
+	 * Called as soon as a document has been processed.
+	 *
+	 * Failed documents are passed without location information.
+	 * Might be called concurrently if several threads are used.
+	 * The GeodataExtractor doesn't keep a reference to the document, so it can
+	 * be garbage collected once the listener is done with it.
+	 *
+	 * @param document
+	 */
+	public void onDocument(Document document);
+
+}
@@ -1,16 +1,36 @@
 package de.lutana.geodataextractor;
 
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
+import de.lutana.geodataextractor.pipeline.Pipeline;
+import de.lutana.geodataextractor.recognizer.cv.MatPool;
+import de.lutana.geodataextractor.strategy.AbstractStrategy;
 import de.lutana.geodataextractor.strategy.DefaultStrategy;
 import de.lutana.geodataextractor.strategy.Strategy;
 import de.lutana.geodataextractor.entity.Document;
+import de.lutana.geodataextractor.fileparser.PageRange;
 import de.lutana.geodataextractor.fileparser.Parser;
 import de.lutana.geodataextractor.fileparser.ParserFactory;
+import de.lutana.geodataextractor.fileparser.PdfParser;
+import de.lutana.geodataextractor.util.FileWalker;
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.slf4j.LoggerFactory;
 
 /**
  * Main class that controlls the location extraction from documents.
@@ -20,9 +40,15 @@ import java.util.Set;
 public class GeodataExtractor {
 	
 	private Set<Document> documents;
+	private List<FileWalker> folders;
 	private Strategy strategy;
 	private ParserFactory parserFactory;
 	private boolean cachingEnabled;
+	private int threads;
+	private int[] stageThreads;
+	private File journalFile;
+	private boolean resumeEnabled;
+	private ResultCache resultCache;
 	
 	/**
 	 * Creates an instance using the DefaultStrategy.
@@ -40,26 +66,176 @@ public class GeodataExtractor {
 	 */
 	public GeodataExtractor(Strategy strategy) {
 		this.documents = new HashSet<>();
+		this.folders = new ArrayList<>();
 		this.strategy = strategy;
 		this.parserFactory = new ParserFactory();
 		this.cachingEnabled = false;
+		this.threads = 1;
+		this.stageThreads = null;
+		this.journalFile = null;
+		this.resumeEnabled = false;
+		this.resultCache = null;
 	}
 	
 	/**
 	 * Executes the GeodataExtractor and detects the locations for the specified documents.
 	 * 
+	 * All documents are kept in memory until the last document is done,
+	 * use run(DocumentListener) for large amounts of documents.
+	 * 
 	 * @return Map containing documents and their locations on success, null on failure (e.g. no strategy specified).
+	 * @see #run(DocumentListener)
 	 */
 	public Set<Document> run() {
-		if (this.strategy == null) {
+		Set<Document> results = ConcurrentHashMap.newKeySet();
+		if (!this.run(results::add)) {
 			return null;
 		}
+		return results;
+	}
+	
+	/**
+	 * Executes the GeodataExtractor and passes each document to the listener as soon as it's done.
+	 * 
+	 * The documents are processed by a pool of worker threads, see setThreads().
+	 * If threads are set per stage, the documents are processed by a pipeline
+	 * instead, see setStageThreads().
+	 * A document that fails doesn't affect the other documents, it's just 
+	 * passed without location information.
+	 * 
+	 * The documents added to the GeodataExtractor are not modified, the listener
+	 * receives a new instance for each of them. Those are not referenced
+	 * afterwards so that the memory usage depends on the number of threads
+	 * and not on the number of documents.
+	 * 
+	 * If a journal is set, each successfully processed document is added to
+	 * the journal before it's passed to the listener, see setJournal().
+	 * Failed documents are not added, so they are processed again on resume.
+	 * 
+	 * @param listener Receives the processed documents, might be called concurrently.
+	 * @return true on success, false on failure (e.g. no strategy specified or the journal can't be opened).
+	 */
+	public boolean run(DocumentListener listener) {
+		if (this.strategy == null) {
+			return false;
+		}
 		
-		this.documents.forEach((doc) -> {
-			this.runDocument(doc);
-		});
+		Map<Document, Document> completed = Collections.emptyMap();
+		Journal journal = null;
+		BiConsumer<Document, Boolean> output = (document, success) -> listener.onDocument(document);
+		if (this.journalFile != null) {
+			journal = new Journal(this.journalFile);
+			try {
+				if (this.resumeEnabled) {
+					completed = journal.read();
+				}
+				journal.open(this.resumeEnabled);
+			} catch (IOException e) {
+				LoggerFactory.getLogger(getClass()).error("Opening journal " + this.journalFile + " failed: " + e.getMessage());
+				return false;
+			}
+			output = this.journaling(journal, listener);
+		}
 
-		return this.documents;
+		// Documents from the journal are passed to the listener without processing them again.
+		// This is done while iterating so that the input is never held in memory completely.
+		Map<Document, Document> journaled = completed;
+		Iterable<Document> pending = () -> StreamSupport.stream(this.getInputs().spliterator(), false).filter((doc) -> {
+			Document restored = journaled.get(doc);
+			if (restored != null) {
+				listener.onDocument(restored);
+				return false;
+			}
+			return true;
+		}).iterator();
+
+		try {
+			this.process(pending, output);
+		} finally {
+			if (journal != null) {
+				try {
+					journal.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return true;
+	}
+	
+	private BiConsumer<Document, Boolean> journaling(Journal journal, DocumentListener listener) {
+		return (document, success) -> {
+			if (!success) {
+				LoggerFactory.getLogger(getClass()).warn("Not writing failed document " + document + " to the journal, it will be processed again on resume.");
+			}
+			else {
+				try {
+					journal.append(document);
+				} catch (IOException e) {
+					LoggerFactory.getLogger(getClass()).error("Writing " + document + " to the journal failed: " + e.getMessage());
+				}
+			}
+			listener.onDocument(document);
+		};
+	}
+	
+	private void process(Iterable<Document> inputs, BiConsumer<Document, Boolean> output) {
+		BiConsumer<Document, Boolean> listener = (document, success) -> {
+			Metrics.count("documents");
+			output.accept(document, success);
+		};
+		if (this.stageThreads != null && this.strategy instanceof AbstractStrategy) {
+			Pipeline pipeline = new Pipeline((AbstractStrategy) this.strategy, this::parseDocument, listener, this.stageThreads[0], this.stageThreads[1], this.stageThreads[2], this.stageThreads[3]);
+			pipeline.setResultCache(this.resultCache);
+			try {
+				pipeline.run(() -> StreamSupport.stream(inputs.spliterator(), false).map(doc -> new Document(doc.getFile())).iterator());
+			} finally {
+				// Release the native buffers pooled by the stage threads
+				MatPool.clearAll();
+			}
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		// Limits the number of queued documents so that the queue doesn't grow with the corpus size
+		Semaphore slots = new Semaphore(this.threads * 2);
+		try {
+			for(Document input : inputs) {
+				slots.acquireUninterruptibly();
+				executor.execute(() -> {
+					Document doc = new Document(input.getFile());
+					boolean success = false;
+					try {
+						success = this.runDocument(doc);
+					} catch (RuntimeException | Error e) {
+						LoggerFactory.getLogger(getClass()).error("Processing document " + doc + " failed: " + e);
+					}
+					try {
+						listener.accept(doc, success);
+					} catch (RuntimeException e) {
+						LoggerFactory.getLogger(getClass()).error("Listener failed for document " + doc + ": " + e);
+					} finally {
+						slots.release();
+					}
+				});
+			}
+		} finally {
+			this.awaitTermination(executor);
+			// Release the native buffers pooled by the worker threads
+			MatPool.clearAll();
+		}
+	}
+	
+	private void awaitTermination(ExecutorService executor) {
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				LoggerFactory.getLogger(getClass()).debug("Waiting for documents to be processed...");
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
 	}
 	
 	public Document runSingle(File file) {
@@ -85,24 +261,62 @@ public class GeodataExtractor {
 	}
 	
 	protected boolean runDocument(Document doc, Integer page) {
-		boolean loaded = false;
-		if (this.isCachingEnabled()) {
-			loaded = doc.load();
+		// Results for single pages are not cached as they are incomplete
+		File cacheEntry = null;
+		if (this.resultCache != null && page == null) {
+			cacheEntry = this.resultCache.getEntry(doc, this.strategy);
+			if (this.resultCache.restore(doc, cacheEntry)) {
+				return true;
+			}
 		}
-		if (!loaded) {
-			try {
-				Parser parser = this.parserFactory.getParser(doc.getFile());
-				parser.parse(doc);
-				if (this.isCachingEnabled()) {
-					doc.save();
-				}
-			} catch (Exception e) {
-				e.printStackTrace();
-				return false;
+		if (!this.parseDocument(doc, page != null ? PageRange.of(page) : null)) {
+			return false;
+		}
+		try {
+			boolean success;
+			try (Timer.Sample sample = Metrics.time("strategy")) {
+				success = this.strategy.execute(doc, page);
 			}
+			if (success && cacheEntry != null) {
+				this.resultCache.store(doc, cacheEntry);
+			}
+			return success;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	/**
+	 * Parses the document or loads it from the cache if caching is enabled.
+	 * 
+	 * @param doc
+	 * @return true on success, false on failure.
+	 */
+	protected boolean parseDocument(Document doc) {
+		return this.parseDocument(doc, null);
+	}
+	
+	/**
+	 * Parses the given pages of the document or loads the whole document from the cache if caching is enabled.
+	 * 
+	 * Partially parsed documents are not saved to the cache.
+	 * 
+	 * @param doc
+	 * @param pages Pages to parse, null to parse all pages.
+	 * @return true on success, false on failure.
+	 */
+	protected boolean parseDocument(Document doc, PageRange pages) {
+		if (this.isCachingEnabled() && doc.load()) {
+			return true;
 		}
 		try {
-			return this.strategy.execute(doc, page);
+			Parser parser = this.parserFactory.getParser(doc.getFile());
+			parser.parse(doc, pages);
+			if (this.isCachingEnabled() && pages == null) {
+				doc.save();
+			}
+			return true;
 		} catch (Exception e) {
 			e.printStackTrace();
 			return false;
@@ -114,7 +328,10 @@ public class GeodataExtractor {
 	}
 	
 	/**
-	 * Returns a list of documents.
+	 * Returns a list of documents added explicitly.
+	 * 
+	 * The documents in the folders added are not included, they are only
+	 * listed while the documents are processed.
 	 * 
 	 * @return the documents
 	 */
@@ -122,6 +339,33 @@ public class GeodataExtractor {
 		return this.documents;
 	}
 	
+	/**
+	 * Returns the folders added.
+	 * 
+	 * @return the folders
+	 */
+	public List<FileWalker> getFolders() {
+		return this.folders;
+	}
+	
+	/**
+	 * Returns all documents to process, i.e. the documents added explicitly
+	 * and the documents from the folders that can be parsed.
+	 * 
+	 * The folders are walked lazily while iterating.
+	 * 
+	 * @return 
+	 */
+	protected Iterable<Document> getInputs() {
+		return () -> Stream.concat(
+			this.documents.stream(),
+			this.folders.stream()
+				.flatMap(folder -> StreamSupport.stream(folder.spliterator(), false))
+				.filter(this.parserFactory::hasParser)
+				.map(Document::new)
+		).iterator();
+	}
+	
 	/**
 	 * Adds a file if a parser exists for it.
 	 * 
@@ -155,16 +399,47 @@ public class GeodataExtractor {
 	/**
 	 * Adds all documents from a folder (non-recursive) that can be parsed.
 	 * 
-	 * @param file
-	 * @return 
+	 * @param folder
+	 * @return true if the folder has been added, false if it's not a folder.
+	 * @see de.lutana.geodataextractor.fileparser.ParserFactory
+	 */
+	public boolean setFolder(File folder) {
+		return this.setFolder(folder, false);
+	}
+	
+	/**
+	 * Adds all documents from a folder that can be parsed.
+	 * 
+	 * @param folder
+	 * @param recursive true to include all sub folders
+	 * @return true if the folder has been added, false if it's not a folder.
+	 * @see de.lutana.geodataextractor.fileparser.ParserFactory
+	 */
+	public boolean setFolder(File folder, boolean recursive) {
+		return this.setFolder(folder, recursive, null, null);
+	}
+	
+	/**
+	 * Adds all documents from a folder that can be parsed and match the filters.
+	 * 
+	 * The folder is not read before the documents are processed and then
+	 * only step by step, so it can contain any number of files.
+	 * 
+	 * @param folder
+	 * @param recursive true to include all sub folders
+	 * @param includes Glob patterns, a file must match at least one of them. null or empty to include all files.
+	 * @param excludes Glob patterns for files and folders to skip, null or empty to skip nothing.
+	 * @return true if the folder has been added, false if it's not a folder.
+	 * @see de.lutana.geodataextractor.util.FileWalker
 	 * @see de.lutana.geodataextractor.fileparser.ParserFactory
 	 */
-	public int setFolder(File file) {
-		if (!file.isDirectory()) {
-			return 0;
+	public boolean setFolder(File folder, boolean recursive, Collection<String> includes, Collection<String> excludes) {
+		if (!folder.isDirectory()) {
+			return false;
 		}
 		
-		return this.setFiles(Arrays.asList(file.listFiles()));
+		this.folders.add(new FileWalker(folder, recursive, includes, excludes));
+		return true;
 	}
 
 	/**
@@ -208,6 +483,110 @@ public class GeodataExtractor {
 		this.cachingEnabled = allowed;
 	}
 
+	/**
+	 * Returns the number of documents processed in parallel.
+	 * 
+	 * @return the number of threads
+	 */
+	public int getThreads() {
+		return this.threads;
+	}
+
+	/**
+	 * Sets the number of documents processed in parallel. Defaults to 1.
+	 * 
+	 * @param threads the number of threads, values lower than 1 are treated as 1
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Returns the number of threads per pipeline stage.
+	 * 
+	 * @return threads for the stages parse, text, figures and resolve or null if the pipeline is disabled.
+	 */
+	public int[] getStageThreads() {
+		return this.stageThreads;
+	}
+
+	/**
+	 * Processes the documents in a pipeline with the given number of threads per stage.
+	 * 
+	 * Parsing, text recognition, figure recognition and location resolution
+	 * run in separate stages so that they overlap for subsequent documents.
+	 * Only strategies extending AbstractStrategy can be split into stages,
+	 * all other strategies are still executed using setThreads().
+	 * 
+	 * Values lower than 1 are treated as 1.
+	 * 
+	 * @param parse Number of threads parsing documents
+	 * @param text Number of threads detecting locations in the document texts
+	 * @param figures Number of threads detecting locations in figures
+	 * @param resolve Number of threads resolving the figure locations
+	 * @see de.lutana.geodataextractor.pipeline.Pipeline
+	 */
+	public void setStageThreads(int parse, int text, int figures, int resolve) {
+		this.stageThreads = new int[] {Math.max(1, parse), Math.max(1, text), Math.max(1, figures), Math.max(1, resolve)};
+	}
+
+	/**
+	 * Disables the pipeline, documents are processed as a whole again, see setThreads().
+	 */
+	public void disableStageThreads() {
+		this.stageThreads = null;
+	}
+
+	/**
+	 * Returns the journal the processed documents are written to.
+	 * 
+	 * @return the journal file or null if no journal is written
+	 */
+	public File getJournal() {
+		return this.journalFile;
+	}
+
+	/**
+	 * Writes each processed document and its locations to a journal.
+	 * 
+	 * Documents that failed are not written, so they are retried on resume.
+	 * 
+	 * When resuming, the documents from the journal are not processed again,
+	 * their results are passed to the listener instead and new results are
+	 * appended to the journal. Otherwise the journal is overwritten.
+	 * 
+	 * @param journal the journal file or null to disable the journal
+	 * @param resume true to skip the documents already in the journal
+	 * @see de.lutana.geodataextractor.Journal
+	 */
+	public void setJournal(File journal, boolean resume) {
+		this.journalFile = journal;
+		this.resumeEnabled = resume;
+	}
+
+	/**
+	 * Returns the cache for the results.
+	 * 
+	 * @return the cache or null if disabled
+	 */
+	public ResultCache getResultCache() {
+		return this.resultCache;
+	}
+
+	/**
+	 * Caches the locations detected for each document by the content of the document.
+	 * 
+	 * Documents with the same content (e.g. the same file with different names)
+	 * are only processed once per strategy. If a document is in the cache,
+	 * parsing and location detection are skipped completely.
+	 * 
+	 * @param folder Folder to store the cache in or null to disable the cache.
+	 * @see de.lutana.geodataextractor.ResultCache
+	 */
+	public void setResultCache(File folder) {
+		this.resultCache = folder != null ? new ResultCache(folder) : null;
+	}
+
 	/**
 	 * @return the fastOcrMode
 	 */
@@ -221,6 +600,25 @@ public class GeodataExtractor {
 	public void enableFastOcrMode(boolean fastOcrMode) {
 		Config.enableFastOcrMode(fastOcrMode);
 	}
+
+	/**
+	 * @return when CERMINE is used to extract title and abstract from PDF files
+	 */
+	public PdfParser.MetadataMode getPdfMetadataMode() {
+		return Config.getPdfMetadataMode();
+	}
+
+	/**
+	 * Sets when CERMINE is used to extract title and abstract from PDF files.
+	 * 
+	 * CERMINE is often the slowest step for a document, FALLBACK only uses it
+	 * if the PDF metadata and PDFFigures don't provide title and abstract.
+	 * 
+	 * @param metadataMode 
+	 */
+	public void setPdfMetadataMode(PdfParser.MetadataMode metadataMode) {
+		Config.setPdfMetadataMode(metadataMode);
+	}
 	
 	/**
 	 * 
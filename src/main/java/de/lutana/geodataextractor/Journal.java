@@ -0,0 +1,133 @@
+package de.lutana.geodataextractor;
+
+import de.lutana.geodataextractor.entity.Document;
+import de.lutana.geodataextractor.util.ResultJson;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the documents processed, one JSON object per line.
+ *
+ * Each line is written and flushed as soon as a document is done, so the
+ * journal contains all completed documents even if the JVM crashes.
+ * A run can be resumed by reading the journal and skipping the documents in it.
+ *
+ * @author Matthias Mohr
+ * @see de.lutana.geodataextractor.util.ResultJson
+ */
+public class Journal implements Closeable {
+
+	private final File file;
+	private Writer writer;
+
+	/**
+	 * @param file File to read from and write to
+	 */
+	public Journal(File file) {
+		this.file = file;
+		this.writer = null;
+	}
+
+	/**
+	 * Reads the documents completed so far.
+	 *
+	 * Incomplete lines (e.g. after a crash while writing) are skipped.
+	 *
+	 * @return The documents with the locations of their figures, mapped by itself for lookups.
+	 * @throws IOException
+	 */
+	public Map<Document, Document> read() throws IOException {
+		Map<Document, Document> documents = new HashMap<>();
+		if (!this.file.exists()) {
+			return documents;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			int lineNo = 0;
+			while((line = reader.readLine()) != null) {
+				lineNo++;
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				try {
+					Document doc = ResultJson.read(line);
+					documents.put(doc, doc);
+				} catch (IOException e) {
+					LoggerFactory.getLogger(getClass()).warn("Skipping invalid line " + lineNo + " in journal " + this.file + ": " + e.getMessage());
+				}
+			}
+		}
+		return documents;
+	}
+
+	/**
+	 * Opens the journal for writing.
+	 *
+	 * @param append true to add to the existing journal, false to start a new one
+	 * @throws IOException
+	 */
+	public synchronized void open(boolean append) throws IOException {
+		this.close();
+		if (append) {
+			this.repairLastLine();
+		}
+		this.writer = Files.newBufferedWriter(this.file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	/**
+	 * Makes sure the journal ends with a line break, so that an incomplete line
+	 * from a crash doesn't spoil the first line appended.
+	 */
+	private void repairLastLine() throws IOException {
+		if (!this.file.exists() || this.file.length() == 0) {
+			return;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(this.file, "rw")) {
+			raf.seek(raf.length() - 1);
+			if (raf.read() != '\n') {
+				raf.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * Adds a completed document to the journal.
+	 *
+	 * @param document
+	 * @throws IOException
+	 */
+	public synchronized void append(Document document) throws IOException {
+		if (this.writer == null) {
+			throw new IOException("Journal is not open");
+		}
+		this.writer.write(ResultJson.toString(document));
+		this.writer.write('\n');
+		this.writer.flush();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.writer != null) {
+			this.writer.close();
+			this.writer = null;
+		}
+	}
+
+	/**
+	 * @return the journal file
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+}
@@ -0,0 +1,153 @@
+package de.lutana.geodataextractor;
+
+import de.lutana.geodataextractor.detector.TensorFlowMapDetector;
+import de.lutana.geodataextractor.detector.TensorFlowWorldMapDetector;
+import de.lutana.geodataextractor.recognizer.cv.TesseractOCR;
+import de.lutana.geodataextractor.recognizer.gazetteer.LuceneIndex;
+import de.lutana.geodataextractor.recognizer.nlp.StanfordExtractor;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Central place for the heavy components (models, indices) shared by all strategies and threads.
+ *
+ * The components are created lazily when they are requested the first time.
+ * Users of the registry (e.g. strategies and detectors) call retain() when they
+ * are created and release() on shutdown. Everybody who keeps a component must
+ * retain the registry, as the components are closed once the last user
+ * released the registry. Closed TensorFlow models throw an
+ * IllegalStateException, the next request loads new instances.
+ *
+ * @author Matthias Mohr
+ */
+public class ModelRegistry {
+
+	private static final ModelRegistry instance = new ModelRegistry();
+
+	private int references;
+	private StanfordExtractor stanfordExtractor;
+	private LuceneIndex geoNamesIndex;
+	private TensorFlowMapDetector tfMapDetector;
+	private TensorFlowWorldMapDetector tfWorldMapDetector;
+
+	public static ModelRegistry getInstance() {
+		return instance;
+	}
+
+	private ModelRegistry() {
+		this.references = 0;
+		this.stanfordExtractor = null;
+		this.geoNamesIndex = null;
+		this.tfMapDetector = null;
+		this.tfWorldMapDetector = null;
+	}
+
+	/**
+	 * Registers a new user of the components.
+	 */
+	public synchronized void retain() {
+		this.references++;
+	}
+
+	/**
+	 * Unregisters a user of the components, the components are closed when the last user is gone.
+	 */
+	public synchronized void release() {
+		if (this.references <= 0) {
+			return;
+		}
+		this.references--;
+		if (this.references == 0) {
+			this.close();
+		}
+	}
+
+	/**
+	 * @return the number of users of the components
+	 */
+	public synchronized int getReferences() {
+		return this.references;
+	}
+
+	private void close() {
+		LoggerFactory.getLogger(getClass()).debug("Closing the shared models.");
+		if (this.geoNamesIndex != null) {
+			this.geoNamesIndex.close();
+			this.geoNamesIndex = null;
+		}
+		if (this.tfMapDetector != null) {
+			this.tfMapDetector.close();
+			this.tfMapDetector = null;
+		}
+		if (this.tfWorldMapDetector != null) {
+			this.tfWorldMapDetector.close();
+			this.tfWorldMapDetector = null;
+		}
+		this.stanfordExtractor = null;
+		TesseractOCR.releaseAll();
+	}
+
+	/**
+	 * Returns the named entity recognizer for locations.
+	 *
+	 * @return
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public synchronized StanfordExtractor getStanfordExtractor() throws IOException, ClassNotFoundException {
+		if (this.stanfordExtractor == null) {
+			this.stanfordExtractor = new StanfordExtractor();
+		}
+		return this.stanfordExtractor;
+	}
+
+	/**
+	 * Returns the loaded gazetteer index, the index is created if it doesn't exist yet.
+	 *
+	 * @return
+	 */
+	public synchronized LuceneIndex getGeoNamesIndex() {
+		if (this.geoNamesIndex == null) {
+			LuceneIndex index = new LuceneIndex();
+			index.load();
+			this.geoNamesIndex = index;
+		}
+		return this.geoNamesIndex;
+	}
+
+	/**
+	 * @return the TensorFlow model to detect maps
+	 * @throws URISyntaxException
+	 */
+	public synchronized TensorFlowMapDetector getTensorFlowMapDetector() throws URISyntaxException {
+		if (this.tfMapDetector == null) {
+			this.tfMapDetector = TensorFlowMapDetector.create();
+		}
+		return this.tfMapDetector;
+	}
+
+	/**
+	 * @return the TensorFlow model to detect world maps
+	 * @throws URISyntaxException
+	 */
+	public synchronized TensorFlowWorldMapDetector getTensorFlowWorldMapDetector() throws URISyntaxException {
+		if (this.tfWorldMapDetector == null) {
+			this.tfWorldMapDetector = TensorFlowWorldMapDetector.create();
+		}
+		return this.tfWorldMapDetector;
+	}
+
+	/**
+	 * Returns the OCR engine for the current thread.
+	 *
+	 * Tesseract isn't thread-safe, so each thread gets its own engine.
+	 * The language data is only extracted once.
+	 *
+	 * @return
+	 */
+	public TesseractOCR getTesseractOCR() {
+		return TesseractOCR.getInstance();
+	}
+
+}
@@ -0,0 +1,206 @@
+package de.lutana.geodataextractor;
+
+import de.lutana.geodataextractor.entity.Document;
+import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.entity.FigureCollection;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.strategy.AbstractStrategy;
+import de.lutana.geodataextractor.strategy.DefaultStrategy;
+import de.lutana.geodataextractor.strategy.Strategy;
+import de.lutana.geodataextractor.util.ResultJson;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache for the locations detected for documents, addressed by the content of the documents.
+ *
+ * The key is made of the SHA-256 digest of the file content and a fingerprint
+ * of the strategy and its location resolver. Therefore the same file stored
+ * under different names is only processed once and changing the strategy
+ * doesn't return outdated results.
+ *
+ * Each entry is stored as JSON file (see ResultJson) in the cache folder.
+ * In contrast to Document.save(), which caches the parsed figures by path,
+ * a hit skips parsing and location detection completely.
+ *
+ * @author Matthias Mohr
+ */
+public class ResultCache {
+
+	/**
+	 * Version of the results, must be increased if changes in the code affect the results.
+	 */
+	public static final int VERSION = 2;
+
+	private final File folder;
+
+	/**
+	 * @param folder Folder to store the results in, is created if it doesn't exist.
+	 */
+	public ResultCache(File folder) {
+		this.folder = folder;
+	}
+
+	/**
+	 * Returns a textual fingerprint for the strategy and its configuration that affects the results.
+	 *
+	 * @param strategy
+	 * @return
+	 */
+	public static String getFingerprint(Strategy strategy) {
+		StringBuilder sb = new StringBuilder(strategy.getClass().getName());
+		sb.append(";version=").append(VERSION);
+		if (strategy instanceof AbstractStrategy) {
+			sb.append(";resolver=").append(((AbstractStrategy) strategy).getLocationResolver().getClass().getName());
+		}
+		if (strategy instanceof DefaultStrategy) {
+			DefaultStrategy defaultStrategy = (DefaultStrategy) strategy;
+			sb.append(";prefilter=").append(defaultStrategy.getPrefilter());
+			sb.append(";mapDetector=").append(defaultStrategy.getMapRecognizer());
+		}
+		sb.append(";fastOcr=").append(Config.isOcrFastModeEnabled());
+		sb.append(";pdfMetadata=").append(Config.getPdfMetadataMode());
+		return sb.toString();
+	}
+
+	/**
+	 * Restores the locations for the document from the cache.
+	 *
+	 * @param document
+	 * @param entry Cache entry for the document, see getEntry().
+	 * @return true on a cache hit, false otherwise.
+	 */
+	public boolean restore(Document document, File entry) {
+		if (entry == null || !entry.exists()) {
+			Metrics.count("cache.misses");
+			return false;
+		}
+		try {
+			String json = new String(Files.readAllBytes(entry.toPath()), StandardCharsets.UTF_8);
+			Document cached = ResultJson.read(json);
+			FigureCollection figures = cached.getFigures();
+			for(Figure figure : figures) {
+				figure.setDocument(document);
+			}
+			document.setFigures(figures);
+			LoggerFactory.getLogger(getClass()).debug("Restored " + document + " from the result cache.");
+			Metrics.count("cache.hits");
+			return true;
+		} catch (IOException e) {
+			LoggerFactory.getLogger(getClass()).warn("Reading " + entry + " from the result cache failed: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Stores the locations detected for the document in the cache.
+	 *
+	 * @param document
+	 * @param entry Cache entry for the document, see getEntry().
+	 */
+	public void store(Document document, File entry) {
+		if (entry == null) {
+			return;
+		}
+		// Results limited by a deadline are incomplete and would be returned even without a deadline later
+		for(Figure figure : document.getFigures()) {
+			if (!figure.getSkippedSteps().isEmpty()) {
+				return;
+			}
+		}
+		try {
+			Files.createDirectories(entry.getParentFile().toPath());
+			// Write to a temporary file first so that concurrent readers never see incomplete entries
+			File temp = File.createTempFile("entry", ".tmp", entry.getParentFile());
+			Files.write(temp.toPath(), ResultJson.toString(document).getBytes(StandardCharsets.UTF_8));
+			try {
+				Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			LoggerFactory.getLogger(getClass()).warn("Writing " + document + " to the result cache failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the cache entry for the document.
+	 *
+	 * The document is read completely to compute the digest, so the entry
+	 * should be kept for storing the results after a cache miss.
+	 *
+	 * @param document
+	 * @param strategy Strategy the results are computed with.
+	 * @return The file or null if the document can't be read.
+	 */
+	public File getEntry(Document document, Strategy strategy) {
+		String digest;
+		try {
+			digest = digest(document.getFile());
+		} catch (IOException e) {
+			LoggerFactory.getLogger(getClass()).warn("Computing the digest for " + document + " failed: " + e.getMessage());
+			return null;
+		}
+		// Use sub folders so that a single folder doesn't contain millions of files
+		File subFolder = new File(this.folder, digest.substring(0, 2));
+		String fingerprint = hash(getFingerprint(strategy)).substring(0, 16);
+		return new File(subFolder, digest + "-" + fingerprint + ".json");
+	}
+
+	/**
+	 * Computes the SHA-256 digest of the file content.
+	 *
+	 * @param file
+	 * @return Hex encoded digest
+	 * @throws IOException
+	 */
+	public static String digest(File file) throws IOException {
+		MessageDigest md = createDigest();
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			int read;
+			while((read = in.read(buffer)) != -1) {
+				md.update(buffer, 0, read);
+			}
+		}
+		return toHex(md.digest());
+	}
+
+	private static String hash(String text) {
+		MessageDigest md = createDigest();
+		return toHex(md.digest(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the cache folder
+	 */
+	public File getFolder() {
+		return this.folder;
+	}
+
+}
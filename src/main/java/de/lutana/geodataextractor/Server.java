@@ -0,0 +1,375 @@
+package de.lutana.geodataextractor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.lutana.geodataextractor.entity.Document;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.PrometheusMetricsReporter;
+import de.lutana.geodataextractor.util.FileExtension;
+import de.lutana.geodataextractor.util.ResultJson;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Long-running HTTP server that keeps the strategy and its models loaded between requests.
+ *
+ * Endpoints:
+ * - POST /extract?path=/path/to/file.pdf[&amp;page=1]: Extracts the locations from a file on the server.
+ *   Only available for files in the root folder, see setRoot().
+ * - POST /extract?name=file.pdf[&amp;page=1]: Extracts the locations from the file sent as request body.
+ *   The name is only used to choose the parser by its file extension.
+ * - GET /health: Returns OK while the server is running.
+ * - GET /metrics: Returns the time spent in each processing step in the Prometheus text format.
+ *
+ * The extraction endpoints return the result as JSON, see ResultJson.
+ * If more documents than allowed are processed at the same time, the
+ * request is rejected with status 503. Uploads larger than allowed are
+ * rejected with status 413.
+ *
+ * The server only listens on the loopback interface by default, see setBindAddress().
+ *
+ * @author Matthias Mohr
+ * @see de.lutana.geodataextractor.util.ResultJson
+ */
+public class Server {
+
+	private final GeodataExtractor extractor;
+	private final int port;
+	private final int concurrency;
+	private final Semaphore slots;
+	private String bindAddress;
+	private File root;
+	private long maxUploadSize;
+	private HttpServer httpServer;
+	private ExecutorService executor;
+	private Thread shutdownHook;
+
+	/**
+	 * Creates a server.
+	 *
+	 * @param extractor Extractor with the strategy to use for all requests
+	 * @param port Port to listen on, 0 for any free port
+	 * @param concurrency Number of documents processed at the same time, values lower than 1 are treated as 1
+	 */
+	public Server(GeodataExtractor extractor, int port, int concurrency) {
+		this.extractor = extractor;
+		this.port = port;
+		this.concurrency = Math.max(1, concurrency);
+		this.slots = new Semaphore(this.concurrency);
+		this.bindAddress = "127.0.0.1";
+		this.root = null;
+		this.maxUploadSize = 100L * 1024 * 1024;
+		this.httpServer = null;
+		this.executor = null;
+		this.shutdownHook = null;
+	}
+
+	/**
+	 * Starts the server, returns immediately.
+	 *
+	 * A shutdown hook stops the server gracefully once the JVM is asked to exit (e.g. Ctrl+C).
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void start() throws IOException {
+		this.httpServer = HttpServer.create(new InetSocketAddress(this.bindAddress, this.port), 0);
+		this.httpServer.createContext("/extract", this::handleExtract);
+		this.httpServer.createContext("/health", this::handleHealth);
+		this.httpServer.createContext("/metrics", this::handleMetrics);
+		// Some more threads than slots so that requests can be rejected quickly while all slots are in use
+		this.executor = Executors.newFixedThreadPool(this.concurrency + 2);
+		this.httpServer.setExecutor(this.executor);
+		this.httpServer.start();
+		this.shutdownHook = new Thread(this::stop, "server-shutdown");
+		Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+		LoggerFactory.getLogger(getClass()).info("Listening on " + this.bindAddress + ":" + this.getPort());
+	}
+
+	/**
+	 * Stops accepting requests, waits for running requests to finish and shuts down the strategy.
+	 */
+	public synchronized void stop() {
+		if (this.httpServer == null) {
+			return;
+		}
+		Logger logger = LoggerFactory.getLogger(getClass());
+		logger.info("Shutting down...");
+		// Stops accepting new connections and waits up to 10 seconds for the running exchanges
+		this.httpServer.stop(10);
+		this.executor.shutdown();
+		try {
+			// Documents might need much longer than 10 seconds
+			if (!this.executor.awaitTermination(5, TimeUnit.MINUTES)) {
+				logger.warn("Some requests didn't finish in time.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.extractor.shutdown();
+		this.httpServer = null;
+		this.executor = null;
+		if (this.shutdownHook != null && Thread.currentThread() != this.shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+			} catch (IllegalStateException e) {
+				// The JVM is shutting down already
+			}
+		}
+		this.shutdownHook = null;
+	}
+
+	private void handleHealth(HttpExchange exchange) throws IOException {
+		this.send(exchange, 200, "text/plain", "OK");
+	}
+
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Metrics.getInstance().report(new PrometheusMetricsReporter(), out);
+		this.send(exchange, 200, "text/plain; version=0.0.4", new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	private void handleExtract(HttpExchange exchange) throws IOException {
+		try {
+			if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+				this.sendError(exchange, 405, "Method not allowed, use POST.");
+				return;
+			}
+			if (!this.slots.tryAcquire()) {
+				this.sendError(exchange, 503, "Too many documents are processed at the moment, try again later.");
+				return;
+			}
+			try {
+				this.extract(exchange);
+			} finally {
+				this.slots.release();
+			}
+		} catch (RuntimeException e) {
+			LoggerFactory.getLogger(getClass()).error("Request failed: " + e);
+			// The response code is set once the headers are sent, afterwards the status can't be changed any longer
+			if (exchange.getResponseCode() == -1) {
+				this.sendError(exchange, 500, "Processing the document failed.");
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void extract(HttpExchange exchange) throws IOException {
+		Map<String, String> query = this.parseQuery(exchange.getRequestURI().getRawQuery());
+		Integer page = null;
+		if (query.containsKey("page")) {
+			try {
+				page = Integer.parseInt(query.get("page"));
+			} catch (NumberFormatException e) {
+				this.sendError(exchange, 400, "Invalid page number.");
+				return;
+			}
+		}
+
+		if (query.containsKey("path")) {
+			if (this.root == null) {
+				this.sendError(exchange, 403, "Files on the server can't be accessed, upload the file instead.");
+				return;
+			}
+			File file = new File(query.get("path")).getCanonicalFile();
+			// Canonical paths resolve .. and symbolic links, so the file can't be outside of the root folder
+			if (!file.toPath().startsWith(this.root.toPath())) {
+				this.sendError(exchange, 403, "Access to the file is not allowed.");
+				return;
+			}
+			if (!file.isFile()) {
+				this.sendError(exchange, 404, "File not found.");
+				return;
+			}
+			this.extract(exchange, file, page);
+		}
+		else if (query.containsKey("name")) {
+			String length = exchange.getRequestHeaders().getFirst("Content-Length");
+			if (length != null && this.isTooLarge(length)) {
+				this.sendError(exchange, 413, "The file is too large.");
+				return;
+			}
+			String extension = FileExtension.get(query.get("name"));
+			File folder = Config.getTempFolder("uploads");
+			File file = Files.createTempFile(folder.toPath(), "upload-", "." + extension).toFile();
+			try {
+				try (InputStream in = exchange.getRequestBody(); OutputStream out = new FileOutputStream(file)) {
+					// The Content-Length is missing for chunked uploads, so count the bytes while copying
+					if (!this.copy(in, out)) {
+						this.sendError(exchange, 413, "The file is too large.");
+						return;
+					}
+				}
+				this.extract(exchange, file, page);
+			} finally {
+				file.delete();
+				// Remove the extracted figures, nobody can access them anyway
+				FileUtils.deleteQuietly(new File(file.getAbsolutePath() + "-figures"));
+				FileUtils.deleteQuietly(Config.getTempFolder(file.getName()));
+			}
+		}
+		else {
+			this.sendError(exchange, 400, "Either the path or the name parameter is required.");
+		}
+	}
+
+	private void extract(HttpExchange exchange, File file, Integer page) throws IOException {
+		if (!this.extractor.getParserFactory().hasParser(file)) {
+			this.sendError(exchange, 415, "File type not supported.");
+			return;
+		}
+		Document document = this.extractor.runSingle(file, page);
+		if (document == null) {
+			this.sendError(exchange, 422, "Document could not be processed.");
+			return;
+		}
+		// Serialize before sending the headers, so that a failure can still be reported with status 500
+		ByteArrayOutputStream json = new ByteArrayOutputStream();
+		ResultJson.write(json, document);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(200, json.size());
+		try (OutputStream out = exchange.getResponseBody()) {
+			json.writeTo(out);
+		}
+	}
+
+	private boolean isTooLarge(String contentLength) {
+		try {
+			return Long.parseLong(contentLength.trim()) > this.maxUploadSize;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Copies the upload, but at most maxUploadSize bytes.
+	 *
+	 * @return false if the upload is larger than allowed.
+	 */
+	private boolean copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[8192];
+		long total = 0;
+		int read;
+		while((read = in.read(buffer)) != -1) {
+			total += read;
+			if (total > this.maxUploadSize) {
+				return false;
+			}
+			out.write(buffer, 0, read);
+		}
+		return true;
+	}
+
+	private Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> params = new HashMap<>();
+		if (query == null || query.isEmpty()) {
+			return params;
+		}
+		for(String pair : query.split("&")) {
+			int i = pair.indexOf('=');
+			if (i > 0) {
+				params.put(URLDecoder.decode(pair.substring(0, i), "UTF-8"), URLDecoder.decode(pair.substring(i + 1), "UTF-8"));
+			}
+			else if (!pair.isEmpty()) {
+				params.put(URLDecoder.decode(pair, "UTF-8"), "");
+			}
+		}
+		return params;
+	}
+
+	private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		this.send(exchange, status, "text/plain", message);
+	}
+
+	private void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Sets the address to listen on, must be called before start().
+	 *
+	 * @param bindAddress Host name or IP address, e.g. 0.0.0.0 for all network interfaces. Default: 127.0.0.1
+	 */
+	public void setBindAddress(String bindAddress) {
+		this.bindAddress = bindAddress;
+	}
+
+	/**
+	 * @return the address the server listens on
+	 */
+	public String getBindAddress() {
+		return this.bindAddress;
+	}
+
+	/**
+	 * Allows to process files on the server by path, but only in the given folder and its sub folders.
+	 *
+	 * @param root Folder or null to disallow access to files on the server (default).
+	 * @throws IOException
+	 */
+	public void setRoot(File root) throws IOException {
+		this.root = root != null ? root.getCanonicalFile() : null;
+	}
+
+	/**
+	 * @return the folder files can be processed from by path or null if not allowed
+	 */
+	public File getRoot() {
+		return this.root;
+	}
+
+	/**
+	 * @param maxUploadSize Maximum size of uploaded files in bytes. Default: 100 MB
+	 */
+	public void setMaxUploadSize(long maxUploadSize) {
+		this.maxUploadSize = maxUploadSize;
+	}
+
+	/**
+	 * @return the maximum size of uploaded files in bytes
+	 */
+	public long getMaxUploadSize() {
+		return this.maxUploadSize;
+	}
+
+	/**
+	 * @return the port the server listens on, the actual port if the server has been started with port 0
+	 */
+	public synchronized int getPort() {
+		if (this.httpServer != null) {
+			return this.httpServer.getAddress().getPort();
+		}
+		return this.port;
+	}
+
+	/**
+	 * @return the number of documents processed at the same time
+	 */
+	public int getConcurrency() {
+		return this.concurrency;
+	}
+
+}
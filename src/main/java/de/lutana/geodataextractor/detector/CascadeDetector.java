@@ -0,0 +1,180 @@
+package de.lutana.geodataextractor.detector;
+
+import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.recognizer.cv.CvGraphic;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detector that combines several signals, which are computed from the cheapest to the most expensive one.
+ * 
+ * Each stage computes a signal with a known range. After each stage the
+ * probability is bounded by combining the known signals with the extreme
+ * values of the missing signals. Once both bounds are on the same side of
+ * the threshold, the remaining stages can't change the decision any longer
+ * and are skipped. The probability returned in this case is the bound closest
+ * to the threshold, i.e. the lower bound for detected figures and the upper
+ * bound for rejected figures. So it's the least confident value that all
+ * stages together could have returned. Subclasses can also stop early by
+ * their own rules, see decide().
+ * 
+ * @author Matthias Mohr
+ */
+public abstract class CascadeDetector implements GraphicDetector {
+	
+	private final List<Stage> stages;
+	private float threshold;
+	
+	/**
+	 * @param threshold Probability from which on the figure is considered as detected.
+	 */
+	protected CascadeDetector(float threshold) {
+		this.stages = new ArrayList<>();
+		this.threshold = threshold;
+	}
+	
+	/**
+	 * Adds a stage, the stages are executed by cost in ascending order.
+	 * 
+	 * The combined probability must be monotonic in each signal.
+	 * 
+	 * @param name Name of the signal
+	 * @param cost Relative cost of the stage
+	 * @param min Minimum value of the signal
+	 * @param max Maximum value of the signal
+	 * @param signal Computes the signal
+	 */
+	protected void addStage(String name, double cost, float min, float max, Signal signal) {
+		this.stages.add(new Stage(name, cost, min, max, signal));
+		Collections.sort(this.stages, Comparator.comparingDouble(s -> s.cost));
+	}
+	
+	/**
+	 * Combines the signals to the probability.
+	 * 
+	 * @param signals Signals by name, signals that are not available are missing.
+	 * @return 
+	 */
+	protected abstract float combine(Map<String, Float> signals);
+	
+	/**
+	 * Allows to stop before all stages are executed, e.g. if a cheap signal is convincing enough.
+	 * 
+	 * @param signals The signals computed so far.
+	 * @return The probability to stop or null to continue.
+	 */
+	protected Float decide(Map<String, Float> signals) {
+		return null;
+	}
+	
+	@Override
+	public float detect(Figure f, CvGraphic g) {
+		Map<String, Float> signals = new HashMap<>();
+		for(int i = 0; i < this.stages.size(); i++) {
+			Float decision = this.decide(signals);
+			if (decision == null) {
+				decision = this.decideByBounds(signals, i);
+			}
+			if (decision != null) {
+				Metrics.count("cascade." + this.getClass().getSimpleName() + ".skipped." + this.stages.get(i).name);
+				return decision;
+			}
+			Stage stage = this.stages.get(i);
+			Float value = stage.signal.compute(f, g);
+			if (value != null) {
+				signals.put(stage.name, value);
+			}
+		}
+		return this.combine(signals);
+	}
+	
+	/**
+	 * Returns a probability if the missing stages can't change the decision.
+	 * 
+	 * @return The lower bound if detected, the upper bound if rejected or null to continue.
+	 */
+	private Float decideByBounds(Map<String, Float> signals, int firstMissing) {
+		int missing = this.stages.size() - firstMissing;
+		float lower = Float.MAX_VALUE;
+		float upper = -Float.MAX_VALUE;
+		Map<String, Float> assumed = new HashMap<>(signals);
+		// Try all combinations of the extreme values, there are only a few expensive stages
+		for(int mask = 0; mask < (1 << missing); mask++) {
+			for(int j = 0; j < missing; j++) {
+				Stage stage = this.stages.get(firstMissing + j);
+				assumed.put(stage.name, (mask & (1 << j)) != 0 ? stage.max : stage.min);
+			}
+			float p = this.combine(assumed);
+			lower = Math.min(lower, p);
+			upper = Math.max(upper, p);
+		}
+		if (lower >= this.threshold) {
+			return lower;
+		}
+		if (upper < this.threshold) {
+			return upper;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the probability from which on the figure is considered as detected
+	 */
+	public float getThreshold() {
+		return this.threshold;
+	}
+
+	/**
+	 * @param threshold the probability from which on the figure is considered as detected
+	 */
+	public void setThreshold(float threshold) {
+		this.threshold = threshold;
+	}
+	
+	/**
+	 * @return the names of the stages in the order they are executed
+	 */
+	public List<String> getStageNames() {
+		List<String> names = new ArrayList<>();
+		for(Stage stage : this.stages) {
+			names.add(stage.name);
+		}
+		return names;
+	}
+	
+	@FunctionalInterface
+	public interface Signal {
+		
+		/**
+		 * @param f
+		 * @param g
+		 * @return The signal or null if it's not available.
+		 */
+		Float compute(Figure f, CvGraphic g);
+		
+	}
+	
+	private static class Stage {
+		
+		private final String name;
+		private final double cost;
+		private final float min;
+		private final float max;
+		private final Signal signal;
+
+		public Stage(String name, double cost, float min, float max, Signal signal) {
+			this.name = name;
+			this.cost = cost;
+			this.min = min;
+			this.max = max;
+			this.signal = signal;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,169 @@
+package de.lutana.geodataextractor.detector;
+
+import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
+import de.lutana.geodataextractor.recognizer.cv.CvGraphic;
+import de.lutana.geodataextractor.util.ImageStatistics;
+import java.awt.image.BufferedImage;
+import java.util.regex.Pattern;
+
+/**
+ * Rejects figures that obviously aren't maps before the expensive detectors run.
+ * 
+ * The dimensions are read from the image header, so tiny figures (icons,
+ * equations) are rejected without decoding them. All other checks use the
+ * statistics of a thumbnail (see ImageStatistics), so their costs don't
+ * depend on the resolution of the figure:
+ * - blank: The brightness of the samples is nearly the same. A single thin
+ *   line crossing the figure is enough to keep it, e.g. outline maps.
+ * - photograph: The brightness is spread over the whole range (high entropy),
+ *   there are many colors and hardly any edges. Aerial and satellite images
+ *   are maps, too, so figures with a caption mentioning them are kept.
+ * 
+ * @author Matthias Mohr
+ */
+public class FigurePrefilter {
+	
+	public static final String TINY = "tiny";
+	public static final String ASPECT_RATIO = "aspect-ratio";
+	public static final String BLANK = "blank";
+	public static final String PHOTOGRAPH = "photograph";
+	
+	private static final Pattern MAP_IMAGE_PATTERN = Pattern.compile("\\b(maps?|aerial|satellite|ortho\\w*|imagery|landsat|sentinel|modis|remote(?:ly)?\\s+sens\\w*)\\b", Pattern.CASE_INSENSITIVE);
+	
+	private int minSize = 64;
+	private double maxAspectRatio = 10;
+	private int minContrast = 16;
+	private boolean rejectPhotographs = true;
+	private double minPhotoEntropy = 4;
+	private double minPhotoColorRatio = 0.03;
+	private double maxPhotoEdgeDensity = 0.02;
+	
+	/**
+	 * Checks the figure and records the reason in the figure if it's rejected.
+	 * 
+	 * @param figure
+	 * @param graphic
+	 * @return true if the figure is rejected, false if it might be a map.
+	 */
+	public boolean reject(Figure figure, CvGraphic graphic) {
+		String reason;
+		try (Timer.Sample sample = Metrics.time("prefilter")) {
+			reason = this.getRejectionReason(graphic);
+			if (PHOTOGRAPH.equals(reason) && figure.getCaption() != null && MAP_IMAGE_PATTERN.matcher(figure.getCaption()).find()) {
+				reason = null;
+			}
+		}
+		if (reason == null) {
+			return false;
+		}
+		Metrics.count("prefilter.rejected." + reason);
+		figure.setRejectionReason(reason);
+		return true;
+	}
+	
+	/**
+	 * Returns why the figure is rejected, only based on the image.
+	 * 
+	 * @param graphic
+	 * @return One of the constants of this class or null if the figure might be a map.
+	 */
+	public String getRejectionReason(CvGraphic graphic) {
+		// Dimensions from the image header, no need to decode the image
+		int width = graphic.getWidth();
+		int height = graphic.getHeight();
+		if (Math.min(width, height) < this.minSize) {
+			return TINY;
+		}
+		if ((double) Math.max(width, height) / Math.min(width, height) > this.maxAspectRatio) {
+			return ASPECT_RATIO;
+		}
+
+		BufferedImage image = graphic.getBufferedImage();
+		if (image == null) {
+			return null;
+		}
+		return this.getRejectionReason(new ImageStatistics(image));
+	}
+	
+	/**
+	 * Returns why a figure with the given statistics is rejected.
+	 * 
+	 * @param stats
+	 * @return BLANK, PHOTOGRAPH or null if the figure might be a map.
+	 */
+	public String getRejectionReason(ImageStatistics stats) {
+		if (stats.getContrast() < this.minContrast) {
+			return BLANK;
+		}
+		if (this.rejectPhotographs && stats.getEntropy() >= this.minPhotoEntropy && stats.getColorRatio() >= this.minPhotoColorRatio && stats.getEdgeDensity() <= this.maxPhotoEdgeDensity) {
+			return PHOTOGRAPH;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the minimum width and height of a figure in pixels
+	 */
+	public int getMinSize() {
+		return this.minSize;
+	}
+
+	/**
+	 * @param minSize the minimum width and height of a figure in pixels
+	 */
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	/**
+	 * @return the maximum ratio of the longer to the shorter side
+	 */
+	public double getMaxAspectRatio() {
+		return this.maxAspectRatio;
+	}
+
+	/**
+	 * @param maxAspectRatio the maximum ratio of the longer to the shorter side
+	 */
+	public void setMaxAspectRatio(double maxAspectRatio) {
+		this.maxAspectRatio = maxAspectRatio;
+	}
+
+	/**
+	 * @return the minimum difference between the darkest and the brightest sample, figures below are blank
+	 */
+	public int getMinContrast() {
+		return this.minContrast;
+	}
+
+	/**
+	 * @param minContrast the minimum difference between the darkest and the brightest sample, figures below are blank
+	 */
+	public void setMinContrast(int minContrast) {
+		this.minContrast = minContrast;
+	}
+
+	/**
+	 * @return whether photographs are rejected
+	 */
+	public boolean isRejectPhotographs() {
+		return this.rejectPhotographs;
+	}
+
+	/**
+	 * Figures with a caption about aerial or satellite images are never rejected as photographs.
+	 * 
+	 * @param rejectPhotographs whether photographs are rejected
+	 */
+	public void setRejectPhotographs(boolean rejectPhotographs) {
+		this.rejectPhotographs = rejectPhotographs;
+	}
+	
+	@Override
+	public String toString() {
+		return "FigurePrefilter(minSize=" + this.minSize + ",maxAspectRatio=" + this.maxAspectRatio + ",minContrast=" + this.minContrast + ",rejectPhotographs=" + this.rejectPhotographs + ",minPhotoEntropy=" + this.minPhotoEntropy + ",minPhotoColorRatio=" + this.minPhotoColorRatio + ",maxPhotoEdgeDensity=" + this.maxPhotoEdgeDensity + ")";
+	}
+	
+}
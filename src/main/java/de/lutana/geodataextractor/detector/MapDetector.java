@@ -1,5 +1,6 @@
 package de.lutana.geodataextractor.detector;
 
+import de.lutana.geodataextractor.ModelRegistry;
 import de.lutana.geodataextractor.recognizer.cv.CvGraphic;
 import de.lutana.geodataextractor.recognizer.cv.CvTableDetector;
 import de.lutana.geodataextractor.recognizer.cv.MorphologicalTableDetector;
@@ -9,53 +10,98 @@ import de.lutana.geodataextractor.util.GeoTools;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Map;
 import java.util.regex.Pattern;
 import org.opencv.core.Rect;
 import org.slf4j.LoggerFactory;
 
-public class MapDetector implements GraphicDetector {
+/**
+ * Detects maps by the caption and TensorFlow.
+ * 
+ * The caption is checked first so that TensorFlow is skipped if the caption
+ * already decides whether it's a map or not.
+ * 
+ * The TensorFlow model is shared through the ModelRegistry, which is retained
+ * until the detector is closed.
+ * 
+ * @author Matthias Mohr
+ */
+public class MapDetector extends CascadeDetector implements AutoCloseable {
+
+	private static final String MAP_CAPTION = "caption.map";
+	private static final String NOMAP_CAPTION = "caption.nomap";
+	private static final String VETO_CAPTION = "caption.veto";
+	private static final String TENSORFLOW = "tensorflow";
+
 
 	// ToDo: Compare with and without "plot(ted)"
 	// ToDo: check rvi|ndvi|vegetation\\s+index|
 	private static final Pattern MAP_PATTERN = Pattern.compile("\\b(maps?|mapviews?|ortho(?:photos?|photographs?|images?)|aerial\\s+photographs?|(?:floor|locality)\\s+plans?|cartograms?|(?:sattelite|landsat\\s+(?:tm|mss)|geoeye|worldview[\\s-]+\\d|spot\\s+\\d|aster|blackbridge|rapideye|eros\\s+[ab]|meteosat|base)\\s+image(?:ry|s)?|(?:true|false|natural)\\s+colou?r\\s+composite|rvi|ndvi|modis|(covering|showing)\\s+the\\s+(?:cit(?:y|ies)|countr?(?:y|ies)|villages?|town|continents?|earth|districts?|states?)|spatial\\s+(variability|distribution|extent|variation)|(albers|mercator|equal\\s+area|gall-peters|peters|equirectangular|cylindrical|eckert\\s+[iv]+|conic|polyconic|orthographic|stereographic|equidistant|conformal)\\s+projection)\\b", Pattern.CASE_INSENSITIVE);
 	private static final Pattern NOMAP_PATTERN = Pattern.compile("\\b((?:gap)?charts?|illustration|(dia|seismo|histo)grams?|tables?|(?<!aerial\\s{1,4}|ortho)(photos?|photographs?)|graphs?|curves?|pictures?|photos?|plot(s|ted)?|drafts?|gauges?|streamgraphs?|gapcharts?|gantt|(?:regression|dotted(?:\\s+\\w+)|dashed(?:\\s+\\w+)|solid(?:\\s+\\w+))\\s+lines?|velocity\\s+models?|(?:squares|linear|simple|polynomial)\\s+regressions?|seismic(?:[-\\s]+reflection)\\s+profiles?|(?<!in\\s{1,4})view\\s+of|over)\\b", Pattern.CASE_INSENSITIVE);
+	// Unambiguous non-map figures, for which Tensorflow is skipped, see setCaptionVeto()
+	private static final Pattern VETO_PATTERN = Pattern.compile("\\b((?:bar|pie|line|gantt|flow)?\\s*(?<!nautical\\s{1,4}|navigation(?:al)?\\s{1,4})charts?|histograms?|(?:box|scatter)\\s*plots?|diagrams?|(?<!water\\s{1,4})tables?)\\b", Pattern.CASE_INSENSITIVE);
 	
 	private float defaultProbability;
 	private TensorFlowMapDetector tfMapDetector;
 	private float patternOffset = 0.45f;
+	private boolean captionVeto = true;
+	private ModelRegistry models;
 	
 	public MapDetector(boolean rejectByDefault) {
+		super(0.4f);
 		this.defaultProbability = rejectByDefault ? 0 : 1;
+		this.models = ModelRegistry.getInstance();
+		this.models.retain();
 		try {
 			tfMapDetector = TensorFlowMapDetector.getInstance();
 		} catch (URISyntaxException ex) {
 			LoggerFactory.getLogger(getClass()).error("Loading TensorFlowMapDetector failed: " + ex.getMessage() + ". Continuing without map detection.");
 		}
+		this.addStage(MAP_CAPTION, 1, 0, 1, (f, g) -> MAP_PATTERN.matcher(f.getCaption()).find() ? 1f : 0f);
+		this.addStage(NOMAP_CAPTION, 1, 0, 1, (f, g) -> NOMAP_PATTERN.matcher(f.getCaption()).find() ? 1f : 0f);
+		this.addStage(VETO_CAPTION, 1, 0, 1, (f, g) -> VETO_PATTERN.matcher(f.getCaption()).find() ? 1f : 0f);
+		this.addStage(TENSORFLOW, 100, 0, 1, (f, g) -> this.tfMapDetector != null ? this.tfMapDetector.detect(f, g) : null);
 	}
 	
 	public void preload() throws URISyntaxException, IOException {
 		tfMapDetector.preload();
 	}
 	
+	/**
+	 * Releases the shared models, the detector can't be used afterwards.
+	 */
+	@Override
+	public synchronized void close() {
+		if (this.models != null) {
+			this.models.release();
+			this.models = null;
+		}
+	}
+	
 	@Override
-	public float detect(Figure f, CvGraphic cachedGraphic) {
-		Float result = null;
+	protected Float decide(Map<String, Float> signals) {
+		// Don't ask Tensorflow if the caption clearly speaks about a chart, table etc. and not about maps
+		if (this.captionVeto && isSet(signals, VETO_CAPTION) && signals.containsKey(MAP_CAPTION) && !isSet(signals, MAP_CAPTION)) {
+			return 0f;
+		}
+		return null;
+	}
 
+	@Override
+	protected float combine(Map<String, Float> signals) {
 		// Detect whether it's a map or not using Tensorflow
-		if (this.tfMapDetector != null) {
-			result = tfMapDetector.detect(f);
+		Float result = signals.get(TENSORFLOW);
+		if (result == null) {
+			return this.defaultProbability;
 		}
 
 		// Check whether they are speaking about map(s) in the caption
-		Matcher m = MAP_PATTERN.matcher(f.getCaption());
-		if (m.find()) {
+		if (isSet(signals, MAP_CAPTION)) {
 			result = Math.min(1, result + this.patternOffset);
 		}
 
 		// Check whether they are speaking about some non-map stuff in the caption
-		Matcher n = NOMAP_PATTERN.matcher(f.getCaption());
-		if (n.find()) {
+		if (isSet(signals, NOMAP_CAPTION)) {
 			result = Math.max(0, result - this.patternOffset);
 		}
 
@@ -63,12 +109,36 @@ public class MapDetector implements GraphicDetector {
 //			result = Math.max(0, result - 0.5f);
 //		}
 
-		return result == null ? this.defaultProbability : result;
+		return result;
+	}
+	
+	private static boolean isSet(Map<String, Float> signals, String name) {
+		Float value = signals.get(name);
+		return value != null && value > 0;
+	}
+
+	/**
+	 * @return whether Tensorflow is skipped if the caption speaks about charts, diagrams or tables, but not about maps
+	 */
+	public boolean isCaptionVeto() {
+		return this.captionVeto;
+	}
+
+	/**
+	 * @param captionVeto whether Tensorflow is skipped if the caption speaks about charts, diagrams or tables, but not about maps
+	 */
+	public void setCaptionVeto(boolean captionVeto) {
+		this.captionVeto = captionVeto;
 	}
 
 	@Override
 	public float detect(Figure f) {
-		return this.detect(f, new CvGraphic(f));
+		CvGraphic graphic = new CvGraphic(f);
+		try {
+			return this.detect(f, graphic);
+		} finally {
+			graphic.dispose();
+		}
 	}
 	
 	protected boolean containsTable(CvGraphic graphic) {
@@ -86,4 +156,9 @@ public class MapDetector implements GraphicDetector {
 		return false;
 	}
 	
+	@Override
+	public String toString() {
+		return "MapDetector(defaultProbability=" + this.defaultProbability + ",captionVeto=" + this.captionVeto + ")";
+	}
+	
 }
@@ -1,17 +1,32 @@
 package de.lutana.geodataextractor.detector;
 
+import de.lutana.geodataextractor.Config;
 import de.lutana.geodataextractor.entity.Figure;
 import de.lutana.geodataextractor.entity.Graphic;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
 import de.lutana.geodataextractor.recognizer.cv.CvGraphic;
+import de.lutana.geodataextractor.util.MicroBatcher;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.nio.file.Files;
+import java.io.InterruptedIOException;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.imageio.ImageIO;
 import org.tensorflow.Graph;
 import org.tensorflow.Session;
@@ -25,6 +40,17 @@ import org.tensorflow.Tensor;
  */
 public abstract class TensorFlowDualDetector implements GraphicDetector {
 	public static final String END_NODE = "final_result";
+	// Nodes added by the retrain script, the head can be run for several bottlenecks at once
+	public static final String BOTTLENECK_NODE = "pool_3/_reshape";
+	public static final String BOTTLENECK_INPUT_NODE = "input/BottleneckInputPlaceholder";
+	public static final String JPEG_INPUT_NODE = "DecodeJpeg/contents";
+	// Resized and normalized image, the input of the Inception network
+	public static final String IMAGE_INPUT_NODE = "Mul";
+	public static final int IMAGE_INPUT_SIZE = 299;
+	public static final float IMAGE_INPUT_MEAN = 128;
+	public static final float IMAGE_INPUT_STD = 128;
+	// Seconds to wait for a batched classification, so that the figure threads never hang forever
+	private static final long AWAIT_TIMEOUT = 60;
 
 	protected InputStream graphFile;
 	protected InputStream labelFile;
@@ -32,7 +58,13 @@ public abstract class TensorFlowDualDetector implements GraphicDetector {
 	protected String className;
 
 	protected List<String> labels;
-	protected byte[] graph;
+	protected Graph graph;
+	// Sessions are thread-safe, so all threads share a single session
+	protected volatile Session session;
+	protected MicroBatcher<float[], float[]> headBatcher;
+	protected int maxBatchSize;
+	protected long batchWindow;
+	private boolean closed;
 	
 	
 	protected TensorFlowDualDetector(InputStream graphFile, InputStream labelFile, String endNode, String className) {
@@ -42,10 +74,37 @@ public abstract class TensorFlowDualDetector implements GraphicDetector {
 		this.className = className;
 		this.labels = null;
 		this.graph = null;
+		this.session = null;
+		this.headBatcher = null;
+		this.maxBatchSize = 16;
+		this.batchWindow = 2;
+		this.closed = false;
+	}
+	
+	/**
+	 * Sets how the classification of concurrently processed figures is batched.
+	 * 
+	 * Only applies if the model is not loaded yet.
+	 * 
+	 * @param maxBatchSize Maximum number of figures per batch, 1 to disable batching
+	 * @param windowMillis Time to wait for further figures before a batch is classified
+	 */
+	public synchronized void setBatching(int maxBatchSize, long windowMillis) {
+		this.maxBatchSize = maxBatchSize;
+		this.batchWindow = windowMillis;
 	}
 
-	public void preload() throws IOException {
-		if (labels == null || graph == null) {
+	/**
+	 * Loads the model and creates the session, which is used for all images.
+	 * 
+	 * @throws IOException 
+	 * @throws IllegalStateException if the detector has been closed
+	 */
+	public synchronized void preload() throws IOException {
+		if (this.closed) {
+			throw new IllegalStateException("The TensorFlow model for " + this.className + " has been closed.");
+		}
+		if (labels == null || session == null) {
 			try (BufferedReader reader = new BufferedReader(new InputStreamReader(this.labelFile))) {
 				labels = new ArrayList<>();
 				for (;;) {
@@ -57,7 +116,77 @@ public abstract class TensorFlowDualDetector implements GraphicDetector {
 				}
 			}
 
-			graph = readFully(graphFile, -1, true);
+			// Importing the graph is expensive, so it's only done once
+			graph = new Graph();
+			graph.importGraphDef(readFully(graphFile, -1, true));
+			byte[] config = createConfig(Config.getTensorFlowIntraOpThreads(), Config.getTensorFlowInterOpThreads());
+			session = config.length > 0 ? new Session(graph, config) : new Session(graph);
+			if (this.supportsBatching() && this.maxBatchSize > 1) {
+				headBatcher = new MicroBatcher<>("tensorflow-" + this.className, this::classify, this.maxBatchSize, this.batchWindow);
+			}
+		}
+	}
+	
+	/**
+	 * Creates a serialized ConfigProto with the thread pool sizes.
+	 * 
+	 * Only these two fields are needed, so the protobuf classes are not required.
+	 * 
+	 * @param intraOpThreads 0 for the default
+	 * @param interOpThreads 0 for the default
+	 * @return 
+	 */
+	protected static byte[] createConfig(int intraOpThreads, int interOpThreads) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (intraOpThreads > 0) {
+			out.write(0x10); // Field 2 (intra_op_parallelism_threads), varint
+			writeVarint(out, intraOpThreads);
+		}
+		if (interOpThreads > 0) {
+			out.write(0x28); // Field 5 (inter_op_parallelism_threads), varint
+			writeVarint(out, interOpThreads);
+		}
+		return out.toByteArray();
+	}
+	
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+	
+	/**
+	 * Releases the model, the instance can't be used afterwards.
+	 * 
+	 * Running inferences are finished before the session is closed.
+	 * Afterwards all methods that need the model throw an IllegalStateException.
+	 */
+	public synchronized void close() {
+		this.closed = true;
+		this.labels = null;
+		if (this.headBatcher != null) {
+			this.headBatcher.close();
+			this.headBatcher = null;
+		}
+		if (this.session != null) {
+			this.session.close();
+			this.session = null;
+		}
+		if (this.graph != null) {
+			this.graph.close();
+			this.graph = null;
+		}
+		try {
+			if (this.graphFile != null) {
+				this.graphFile.close();
+			}
+			if (this.labelFile != null) {
+				this.labelFile.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
 	}
 	
@@ -102,13 +231,33 @@ public abstract class TensorFlowDualDetector implements GraphicDetector {
 		}
 	}
 
+	/**
+	 * Computes the probability for the graphic of a figure.
+	 * 
+	 * The bottleneck is cached in the graphic. The map and the world map
+	 * models are both retrained from the same Inception network, so the
+	 * second model only needs to run its own final layer.
+	 * 
+	 * @param f
+	 * @param g
+	 * @return 
+	 */
 	@Override
 	public float detect(Figure f, CvGraphic g) {
 		try {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			// JPEG is faster than PNG, but destroyes transparency
-			ImageIO.write(g.getBufferedImage(), "jpg", baos);
-			return this.detect(baos.toByteArray());
+			this.preload();
+			if (!this.supportsBatching()) {
+				return this.detect(g.getBufferedImage());
+			}
+			float[] bottleneck = g.getBottleneck();
+			if (bottleneck == null) {
+				bottleneck = this.computeBottleneck(g.getBufferedImage());
+				g.setBottleneck(bottleneck);
+			}
+			else {
+				Metrics.count("tensorflow.bottleneck.reused");
+			}
+			return this.detect(bottleneck);
 		} catch (IOException e) {
 			e.printStackTrace();
 			return -1;
@@ -116,36 +265,243 @@ public abstract class TensorFlowDualDetector implements GraphicDetector {
 	}
 	
 	public float detect(Graphic g) throws IOException {
-		byte[] imgData = Files.readAllBytes(g.getFile().toPath());
-		return this.detect(imgData);
+		return this.detect(g.getImage());
+	}
+	
+	/**
+	 * Computes the probability for a decoded image.
+	 * 
+	 * The image is resized and passed to the network directly, so it doesn't
+	 * need to be encoded as JPEG and decoded again by TensorFlow.
+	 * 
+	 * @param img
+	 * @return
+	 * @throws IOException 
+	 */
+	public float detect(BufferedImage img) throws IOException {
+		if (img == null) {
+			throw new IOException("Image can't be read.");
+		}
+		this.preload();
+		if (this.graph.operation(IMAGE_INPUT_NODE) == null) {
+			// Unknown network, let the graph decode the image
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ImageIO.write(toRgb(img, img.getWidth(), img.getHeight()), "jpg", baos);
+			return this.detect(baos.toByteArray());
+		}
+		try (Tensor image = createImageTensor(img)) {
+			return this.detect(IMAGE_INPUT_NODE, image);
+		}
 	}
 	
+	/**
+	 * Computes the probability for a JPEG encoded image.
+	 * 
+	 * @param imgData
+	 * @return
+	 * @throws IOException 
+	 */
 	public float detect(byte[] imgData) throws IOException {
 		this.preload();
 		try (Tensor image = Tensor.create(imgData)) {
-			float[] labelProbabilities = this.executeInceptionGraph(graph, image);
-			int indexMap = labels.indexOf(this.className);
-			if (indexMap != -1) {
-				return labelProbabilities[indexMap];
+			return this.detect(JPEG_INPUT_NODE, image);
+		}
+	}
+	
+	private float detect(String inputNode, Tensor image) throws IOException {
+		if (this.supportsBatching()) {
+			float[] bottleneck;
+			try (Timer.Sample sample = Metrics.time("tensorflow.inference")) {
+				bottleneck = this.computeBottleneck(inputNode, image);
+			}
+			return this.detect(bottleneck);
+		}
+		try (Timer.Sample sample = Metrics.time("tensorflow.inference")) {
+			return this.getProbability(this.executeInceptionGraph(this.session, inputNode, image));
+		}
+	}
+	
+	/**
+	 * Computes the probability for the bottleneck of an image, i.e. runs the final layer only.
+	 * 
+	 * @param bottleneck See computeBottleneck()
+	 * @return
+	 * @throws IOException 
+	 */
+	public float detect(float[] bottleneck) throws IOException {
+		this.preload();
+		MicroBatcher<float[], float[]> batcher = this.headBatcher;
+		if (batcher != null) {
+			// The head is run together with the figures of other threads
+			return this.getProbability(await(batcher.submit(bottleneck)));
+		}
+		return this.getProbability(this.classify(Collections.singletonList(bottleneck)).get(0));
+	}
+	
+	/**
+	 * Computes the output of the Inception network for the image, which is the input of the final layer.
+	 * 
+	 * Requires a graph that supports batching, see supportsBatching().
+	 * 
+	 * @param img
+	 * @return
+	 * @throws IOException 
+	 */
+	public float[] computeBottleneck(BufferedImage img) throws IOException {
+		if (img == null) {
+			throw new IOException("Image can't be read.");
+		}
+		this.preload();
+		try (Timer.Sample sample = Metrics.time("tensorflow.inference")) {
+			if (this.graph.operation(IMAGE_INPUT_NODE) == null) {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				ImageIO.write(toRgb(img, img.getWidth(), img.getHeight()), "jpg", baos);
+				try (Tensor image = Tensor.create(baos.toByteArray())) {
+					return this.computeBottleneck(JPEG_INPUT_NODE, image);
+				}
+			}
+			try (Tensor image = createImageTensor(img)) {
+				return this.computeBottleneck(IMAGE_INPUT_NODE, image);
+			}
+		}
+	}
+	
+	/**
+	 * Draws the image on a white background with the given size, which also removes transparency.
+	 */
+	private static BufferedImage toRgb(BufferedImage img, int width, int height) {
+		BufferedImage rgb = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D g = rgb.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		g.drawImage(img, 0, 0, width, height, null);
+		g.dispose();
+		return rgb;
+	}
+	
+	/**
+	 * Creates the input for the Inception network, the same as the graph computes from a JPEG.
+	 * 
+	 * @param img
+	 * @return Tensor with the shape [1, 299, 299, 3] and normalized RGB values
+	 */
+	protected static Tensor createImageTensor(BufferedImage img) {
+		BufferedImage resized = toRgb(img, IMAGE_INPUT_SIZE, IMAGE_INPUT_SIZE);
+		byte[] bgr = ((DataBufferByte) resized.getRaster().getDataBuffer()).getData();
+		FloatBuffer rgb = FloatBuffer.allocate(bgr.length);
+		for(int i = 0; i < bgr.length; i += 3) {
+			rgb.put(((bgr[i + 2] & 0xFF) - IMAGE_INPUT_MEAN) / IMAGE_INPUT_STD);
+			rgb.put(((bgr[i + 1] & 0xFF) - IMAGE_INPUT_MEAN) / IMAGE_INPUT_STD);
+			rgb.put(((bgr[i] & 0xFF) - IMAGE_INPUT_MEAN) / IMAGE_INPUT_STD);
+		}
+		rgb.flip();
+		return Tensor.create(new long[] {1, IMAGE_INPUT_SIZE, IMAGE_INPUT_SIZE, 3}, rgb);
+	}
+	
+	/**
+	 * Computes the probabilities for several images (JPEG encoded) at once.
+	 * 
+	 * The images are run through the Inception network one by one, but
+	 * the retrained head classifies all of them in a single run.
+	 * 
+	 * @param images
+	 * @return The probability for each image
+	 * @throws IOException 
+	 */
+	public float[] detect(List<byte[]> images) throws IOException {
+		this.preload();
+		float[] result = new float[images.size()];
+		if (!this.supportsBatching()) {
+			for(int i = 0; i < result.length; i++) {
+				result[i] = this.detect(images.get(i));
 			}
+			return result;
+		}
+		List<float[]> bottlenecks = new ArrayList<>(images.size());
+		for(byte[] imgData : images) {
+			try (Timer.Sample sample = Metrics.time("tensorflow.inference"); Tensor image = Tensor.create(imgData)) {
+				bottlenecks.add(this.computeBottleneck(JPEG_INPUT_NODE, image));
+			}
+		}
+		List<float[]> probabilities = this.classify(bottlenecks);
+		for(int i = 0; i < result.length; i++) {
+			result[i] = this.getProbability(probabilities.get(i));
+		}
+		return result;
+	}
+	
+	private static float[] await(CompletableFuture<float[]> future) throws IOException {
+		try {
+			return future.get(AWAIT_TIMEOUT, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			throw new IOException("The classification didn't finish within " + AWAIT_TIMEOUT + " seconds.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the classification.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	private float getProbability(float[] labelProbabilities) {
+		int indexMap = labels.indexOf(this.className);
+		if (indexMap != -1) {
+			return labelProbabilities[indexMap];
 		}
 		return 0;
 	}
+	
+	/**
+	 * @return true if the graph allows to run the head for several bottlenecks at once
+	 */
+	public boolean supportsBatching() {
+		return this.graph != null && this.graph.operation(BOTTLENECK_NODE) != null && this.graph.operation(BOTTLENECK_INPUT_NODE) != null;
+	}
+	
+	private float[] computeBottleneck(String inputNode, Tensor image) {
+		try (Tensor result = this.session.runner().feed(inputNode, image).fetch(BOTTLENECK_NODE).run().get(0)) {
+			final long[] rshape = result.shape();
+			return result.copyTo(new float[1][(int) rshape[1]])[0];
+		}
+	}
+	
+	private List<float[]> classify(List<float[]> bottlenecks) {
+		Metrics.count("tensorflow.batches");
+		try (Timer.Sample sample = Metrics.time("tensorflow.head"); Tensor input = Tensor.create(bottlenecks.toArray(new float[bottlenecks.size()][]));
+				Tensor result = this.session.runner().feed(BOTTLENECK_INPUT_NODE, input).fetch(this.endNode).run().get(0)) {
+			final long[] rshape = result.shape();
+			if (result.numDimensions() != 2 || rshape[0] != bottlenecks.size()) {
+				throw new RuntimeException(String.format("Expected model to produce a [%d N] shaped tensor where N is the number of labels, instead it produced one with shape %s", bottlenecks.size(), Arrays.toString(rshape)));
+			}
+			return Arrays.asList(result.copyTo(new float[bottlenecks.size()][(int) rshape[1]]));
+		}
+	}
 
-	private float[] executeInceptionGraph(byte[] graphDef, Tensor image) {
-		try (Graph g = new Graph()) {
-			g.importGraphDef(graphDef);
-			try (Session s = new Session(g); Tensor result = s.runner().feed("DecodeJpeg/contents", image).fetch(this.endNode).run().get(0)) {
-				final long[] rshape = result.shape();
-				if (result.numDimensions() != 2 || rshape[0] != 1) {
-					throw new RuntimeException(String.format("Expected model to produce a [1 N] shaped tensor where N is the number of labels, instead it produced one with shape %s", Arrays.toString(rshape)));
-				}
-				int nlabels = (int) rshape[1];
-				return result.copyTo(new float[1][nlabels])[0];
+	private float[] executeInceptionGraph(Session s, String inputNode, Tensor image) {
+		try (Tensor result = s.runner().feed(inputNode, image).fetch(this.endNode).run().get(0)) {
+			final long[] rshape = result.shape();
+			if (result.numDimensions() != 2 || rshape[0] != 1) {
+				throw new RuntimeException(String.format("Expected model to produce a [1 N] shaped tensor where N is the number of labels, instead it produced one with shape %s", Arrays.toString(rshape)));
 			}
+			int nlabels = (int) rshape[1];
+			return result.copyTo(new float[1][nlabels])[0];
 		}
 	}
 
+	/**
+	 * @return true if the model has been released, see close()
+	 */
+	public synchronized boolean isClosed() {
+		return this.closed;
+	}
+
 	/**
 	 * @return the endNode
 	 */
@@ -161,9 +517,9 @@ public abstract class TensorFlowDualDetector implements GraphicDetector {
 	}
 
 	/**
-	 * @return the graph
+	 * @return the graph, null if not loaded yet
 	 */
-	public byte[] getGraph() {
+	public Graph getGraph() {
 		return graph;
 	}
 
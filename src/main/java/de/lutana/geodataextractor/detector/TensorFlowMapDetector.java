@@ -1,5 +1,6 @@
 package de.lutana.geodataextractor.detector;
 
+import de.lutana.geodataextractor.ModelRegistry;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 
@@ -8,15 +9,28 @@ public class TensorFlowMapDetector extends TensorFlowDualDetector {
 	private static final String MAP_CLASS = "map";
 	private static final String LABEL_FILE = "map_labels.txt";
 	private static final String GRAPH_FILE = "map_graph.pb";
-	private static TensorFlowMapDetector instance;
 
+	/**
+	 * Returns the shared instance.
+	 * 
+	 * @return
+	 * @throws URISyntaxException 
+	 * @see de.lutana.geodataextractor.ModelRegistry
+	 */
 	public static TensorFlowMapDetector getInstance() throws URISyntaxException {
-		if (instance == null) {
-			InputStream graphFile = TensorFlowMapDetector.class.getClassLoader().getResourceAsStream("tensorflow/" + GRAPH_FILE);
-			InputStream labelFile = TensorFlowMapDetector.class.getClassLoader().getResourceAsStream("tensorflow/" + LABEL_FILE);
-			instance = new TensorFlowMapDetector(graphFile, labelFile, TensorFlowDualDetector.END_NODE, MAP_CLASS);
-		}
-		return instance;
+		return ModelRegistry.getInstance().getTensorFlowMapDetector();
+	}
+
+	/**
+	 * Creates a new instance, use getInstance() to get the shared instance.
+	 * 
+	 * @return
+	 * @throws URISyntaxException 
+	 */
+	public static TensorFlowMapDetector create() throws URISyntaxException {
+		InputStream graphFile = TensorFlowMapDetector.class.getClassLoader().getResourceAsStream("tensorflow/" + GRAPH_FILE);
+		InputStream labelFile = TensorFlowMapDetector.class.getClassLoader().getResourceAsStream("tensorflow/" + LABEL_FILE);
+		return new TensorFlowMapDetector(graphFile, labelFile, TensorFlowDualDetector.END_NODE, MAP_CLASS);
 	}
 	
 	protected TensorFlowMapDetector(InputStream graphFile, InputStream labelFile, String endNode, String className) throws URISyntaxException {
@@ -1,5 +1,6 @@
 package de.lutana.geodataextractor.detector;
 
+import de.lutana.geodataextractor.ModelRegistry;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 
@@ -8,15 +9,28 @@ public class TensorFlowWorldMapDetector extends TensorFlowDualDetector {
 	private static final String MAP_CLASS = "world";
 	private static final String LABEL_FILE = "worldmap_labels.txt";
 	private static final String GRAPH_FILE = "worldmap_graph.pb";
-	private static TensorFlowWorldMapDetector instance;
 
+	/**
+	 * Returns the shared instance.
+	 * 
+	 * @return
+	 * @throws URISyntaxException 
+	 * @see de.lutana.geodataextractor.ModelRegistry
+	 */
 	public static TensorFlowWorldMapDetector getInstance() throws URISyntaxException {
-		if (instance == null) {
-			InputStream graphFile = TensorFlowWorldMapDetector.class.getClassLoader().getResourceAsStream("tensorflow/" + GRAPH_FILE);
-			InputStream labelFile = TensorFlowWorldMapDetector.class.getClassLoader().getResourceAsStream("tensorflow/" + LABEL_FILE);
-			instance = new TensorFlowWorldMapDetector(graphFile, labelFile, TensorFlowDualDetector.END_NODE, MAP_CLASS);
-		}
-		return instance;
+		return ModelRegistry.getInstance().getTensorFlowWorldMapDetector();
+	}
+
+	/**
+	 * Creates a new instance, use getInstance() to get the shared instance.
+	 * 
+	 * @return
+	 * @throws URISyntaxException 
+	 */
+	public static TensorFlowWorldMapDetector create() throws URISyntaxException {
+		InputStream graphFile = TensorFlowWorldMapDetector.class.getClassLoader().getResourceAsStream("tensorflow/" + GRAPH_FILE);
+		InputStream labelFile = TensorFlowWorldMapDetector.class.getClassLoader().getResourceAsStream("tensorflow/" + LABEL_FILE);
+		return new TensorFlowWorldMapDetector(graphFile, labelFile, TensorFlowDualDetector.END_NODE, MAP_CLASS);
 	}
 	
 	protected TensorFlowWorldMapDetector(InputStream graphFile, InputStream labelFile, String endNode, String className) throws URISyntaxException {
@@ -1,18 +1,34 @@
 package de.lutana.geodataextractor.detector;
 
+import de.lutana.geodataextractor.ModelRegistry;
 import de.lutana.geodataextractor.recognizer.cv.CvGraphic;
 import de.lutana.geodataextractor.entity.Figure;
 import de.lutana.geodataextractor.recognizer.nlp.LocationExtractor;
 import de.lutana.geodataextractor.recognizer.nlp.LocationOccurrence;
-import de.lutana.geodataextractor.recognizer.nlp.StanfordExtractor;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Map;
 import java.util.regex.Pattern;
 import org.slf4j.LoggerFactory;
 
-public class WorldMapDetector implements GraphicDetector {
+/**
+ * Detects world maps by the caption, the locations in the caption and TensorFlow.
+ * 
+ * The cheap signals are computed first so that TensorFlow is skipped if they
+ * already decide whether it's a world map or not.
+ * 
+ * The TensorFlow model is shared through the ModelRegistry, which is retained
+ * until the detector is closed.
+ * 
+ * @author Matthias Mohr
+ */
+public class WorldMapDetector extends CascadeDetector implements AutoCloseable {
+
+	private static final String WORLDMAP_CAPTION = "caption.worldmap";
+	private static final String OTHER_CAPTION = "caption.other";
+	private static final String LOCATIONS = "locations";
+	private static final String TENSORFLOW = "tensorflow";
 
 	private static final Pattern WORLDMAP_PATTERN = Pattern.compile("\\b(global|international|world-?maps?|world|earth|worldwide|countries|continents)\\b", Pattern.CASE_INSENSITIVE);
 	private static final Pattern OTHER_PATTERN = Pattern.compile("\\b(roads?|buildings?|lakes?|rivers?|states?|city|cities|villages?|districts?|departments?|neighborhoods?|boroughs?|towns?|provinces?|townships?|sites?|area[^s]|country|(?:floor|locality)\\s+plans?|aerial\\s+photographs?|(?:gap)?charts?|illustration|(dia|seismo|histo)grams?|tables?|(?<!aerial\\s{1,4}|ortho)(photos?|photographs?)|graphs?|curves?|pictures?|photos?|plot(s|ted)?|drafts?|gauges?|streamgraphs?|gapcharts?|gantt|(?:regression|dotted(?:\\s+\\w+)|dashed(?:\\s+\\w+)|solid(?:\\s+\\w+))\\s+lines?|velocity\\s+models?|(?:squares|linear|simple|polynomial)\\s+regressions?|seismic(?:[-\\s]+reflection)\\s+profiles?|(?<!in\\s{1,4})view\\s+of|over)\\b", Pattern.CASE_INSENSITIVE);
@@ -24,22 +40,43 @@ public class WorldMapDetector implements GraphicDetector {
 	private float maxLocationOffset = 0.5f;
 	private TensorFlowWorldMapDetector tfWorldMapDetector;
 	private LocationExtractor locationExtractor;
+	private ModelRegistry models;
 	
 	public WorldMapDetector() {
 		this(true);
 	}
 	
 	public WorldMapDetector(boolean rejectByDefault) {
+		this(rejectByDefault, getSharedLocationExtractor());
+	}
+	
+	/**
+	 * @param rejectByDefault
+	 * @param locationExtractor Extractor for locations in the caption, null to skip the caption improvements.
+	 */
+	public WorldMapDetector(boolean rejectByDefault, LocationExtractor locationExtractor) {
+		super(0.5f);
 		this.defaultProbability = rejectByDefault ? 0 : 1;
+		this.models = ModelRegistry.getInstance();
+		this.models.retain();
 		try {
 			tfWorldMapDetector = TensorFlowWorldMapDetector.getInstance();
 		} catch (URISyntaxException ex) {
 			LoggerFactory.getLogger(getClass()).error("Loading TensorFlowWorldMapDetector failed: " + ex.getMessage() + ". Continuing without world map detection.");
 		}
+		this.locationExtractor = locationExtractor;
+		this.addStage(WORLDMAP_CAPTION, 1, 0, 1, (f, g) -> WORLDMAP_PATTERN.matcher(f.getCaption()).find() ? 1f : 0f);
+		this.addStage(OTHER_CAPTION, 1, 0, 1, (f, g) -> OTHER_PATTERN.matcher(f.getCaption()).find() ? 1f : 0f);
+		this.addStage(LOCATIONS, 10, 0, this.maxLocationOffset, (f, g) -> this.computeLocationOffset(f));
+		this.addStage(TENSORFLOW, 100, 0, 1, (f, g) -> this.tfWorldMapDetector != null ? this.tfWorldMapDetector.detect(f, g) : null);
+	}
+	
+	private static LocationExtractor getSharedLocationExtractor() {
 		try {
-			this.locationExtractor = new StanfordExtractor();
+			return ModelRegistry.getInstance().getStanfordExtractor();
 		} catch (ClassCastException | IOException | ClassNotFoundException ex) {
-			LoggerFactory.getLogger(getClass()).error("Loading StanfordExtractor failed: " + ex.getMessage() + ". Continuing without caption improvements for world map detection.");
+			LoggerFactory.getLogger(WorldMapDetector.class).error("Loading StanfordExtractor failed: " + ex.getMessage() + ". Continuing without caption improvements for world map detection.");
+			return null;
 		}
 	}
 	
@@ -47,42 +84,66 @@ public class WorldMapDetector implements GraphicDetector {
 		tfWorldMapDetector.preload();
 	}
 	
+	/**
+	 * Releases the shared models, the detector can't be used afterwards.
+	 */
 	@Override
-	public float detect(Figure f, CvGraphic cachedGraphic) {
-		Float result = null;
+	public synchronized void close() {
+		if (this.models != null) {
+			this.models.release();
+			this.models = null;
+		}
+	}
+	
+	private Float computeLocationOffset(Figure f) {
+		if (this.locationExtractor == null) {
+			return null;
+		}
+		// Check for location names
+		List<LocationOccurrence> locations = this.locationExtractor.extractLocationNames(f.getCaption());
+		// For each location found add an offset of locationOffset, but limit it at maxLocationOffset.
+		return Math.min(this.maxLocationOffset, locations.size() * this.locationOffset);
+	}
 
+	@Override
+	protected float combine(Map<String, Float> signals) {
 		// Detect whether it's a map or not using Tensorflow
-		if (this.tfWorldMapDetector != null) {
-			result = tfWorldMapDetector.detect(f);
+		Float result = signals.get(TENSORFLOW);
+		if (result == null) {
+			return this.defaultProbability;
 		}
 
 		// Check whether they are speaking about world map(s) in the caption
-		Matcher m = WORLDMAP_PATTERN.matcher(f.getCaption());
-		if (m.find()) {
+		if (isSet(signals, WORLDMAP_CAPTION)) {
 			result = Math.min(1, result + this.patternOffset);
 		}
 
 		// Check whether they are speaking about some non-world-map stuff in the caption
-		Matcher n = OTHER_PATTERN.matcher(f.getCaption());
-		if (n.find()) {
+		if (isSet(signals, OTHER_CAPTION)) {
 			result = Math.max(0, result - this.patternOffset);
 		}
 		
-		// Check for location names
-		List<LocationOccurrence> locations = locationExtractor.extractLocationNames(f.getCaption());
-		if (!locations.isEmpty()) {
-			// For each location found add an offset of locationOffset, but limit it at maxLocationOffset.
-			float offset = Math.min(this.maxLocationOffset, locations.size() * this.locationOffset);
-			// Remove the offset calculated
-			result = Math.max(0, result - offset);
+		// Remove the offset calculated for the location names
+		if (isSet(signals, LOCATIONS)) {
+			result = Math.max(0, result - signals.get(LOCATIONS));
 		}
 
-		return result == null ? this.defaultProbability : result;
+		return result;
+	}
+	
+	private static boolean isSet(Map<String, Float> signals, String name) {
+		Float value = signals.get(name);
+		return value != null && value > 0;
 	}
 
 	@Override
 	public float detect(Figure f) {
-		return this.detect(f, new CvGraphic(f));
+		CvGraphic graphic = new CvGraphic(f);
+		try {
+			return this.detect(f, graphic);
+		} finally {
+			graphic.dispose();
+		}
 	}
 	
 }
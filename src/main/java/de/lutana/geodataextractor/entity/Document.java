@@ -22,9 +22,11 @@ public class Document implements Located {
 	protected File file;
 	protected Map<String, String> texts;
 	protected FigureCollection figures;
+	private String path;
 
 	public Document(File file) {
 		this.file = file;
+		this.path = null;
 		this.texts = new HashMap<>();
 		this.figures = new FigureCollection();
 	}
@@ -41,6 +43,7 @@ public class Document implements Located {
 	 */
 	public void setFile(File file) {
 		this.file = file;
+		this.path = null;
 	}
 	
 	public Collection<String> getTexts() {
@@ -231,14 +234,19 @@ public class Document implements Located {
 		return this.figures.getLocation();
 	}
 
+	/**
+	 * Returns the absolute and normalized path, which identifies the document.
+	 * 
+	 * Computed once and without accessing the file system (e.g. symlinks are not resolved),
+	 * so that comparing and hashing documents is cheap.
+	 * 
+	 * @return 
+	 */
 	private String getPath() {
-		String path;
-		try {
-			path = this.file.getCanonicalPath();
-		} catch(IOException e) {
-			path = this.file.getPath();
+		if (this.path == null) {
+			this.path = this.file.toPath().toAbsolutePath().normalize().toString();
 		}
-		return path;
+		return this.path;
 	}
 	
 	@Override
@@ -5,11 +5,15 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import de.lutana.geodataextractor.util.Deadline;
 import de.lutana.geodataextractor.util.FileExtension;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Defines a figure, containing an optional caption, a graphic and an optional document context.
@@ -23,6 +27,9 @@ public class Figure extends Locatable {
 	protected Document document;
 	protected String index;
 	protected Integer page;
+	protected Deadline deadline;
+	protected List<String> skippedSteps;
+	protected String rejectionReason;
 	
 	/**
 	 * An empty figure relating to a document.
@@ -36,6 +43,8 @@ public class Figure extends Locatable {
 		this.index = index;
 		this.page = 1;
 		this.caption = "";
+		this.deadline = Deadline.NONE;
+		this.skippedSteps = new ArrayList<>();
 		this.setGraphicFile(graphic);
 	}
 	
@@ -48,7 +57,9 @@ public class Figure extends Locatable {
 		this.index = figure.index;
 		this.page = figure.page;
 		this.caption = figure.caption;
-		this.setGraphicFile(figure.getGraphicFile());
+		this.deadline = Deadline.NONE;
+		this.skippedSteps = new ArrayList<>();
+		this.graphic = figure.graphic;
 	}
 
 	/**
@@ -106,6 +117,15 @@ public class Figure extends Locatable {
 		this.graphic = new Graphic(graphic);
 	}
 
+	/**
+	 * Sets the graphic, e.g. an image kept in memory.
+	 * 
+	 * @param graphic the graphic to set
+	 */
+	public void setGraphic(Graphic graphic) {
+		this.graphic = graphic;
+	}
+
 	/**
 	 * Returns the file where the figure has been taken from, e.g. the PDF file.
 	 * 
@@ -163,6 +183,62 @@ public class Figure extends Locatable {
 		this.page = page;
 	}
 
+	/**
+	 * Returns the time until the locations for this figure should be detected.
+	 * 
+	 * @return the deadline, never null
+	 */
+	public Deadline getDeadline() {
+		return this.deadline;
+	}
+
+	/**
+	 * Sets the time until the locations for this figure should be detected.
+	 * 
+	 * Strategies skip expensive steps if the remaining time is too short.
+	 * 
+	 * @param deadline the deadline, null for no deadline
+	 */
+	public void setDeadline(Deadline deadline) {
+		this.deadline = deadline != null ? deadline : Deadline.NONE;
+	}
+
+	/**
+	 * Returns the names of the steps that have been skipped to meet the deadline.
+	 * 
+	 * The location of the figure might be less accurate if steps have been skipped.
+	 * 
+	 * @return the skipped steps
+	 */
+	public List<String> getSkippedSteps() {
+		return Collections.unmodifiableList(this.skippedSteps);
+	}
+
+	/**
+	 * Records that a step has been skipped to meet the deadline.
+	 * 
+	 * @param step the name of the step
+	 */
+	public void addSkippedStep(String step) {
+		this.skippedSteps.add(step);
+	}
+
+	/**
+	 * Returns why the figure has been rejected before the map detection, see FigurePrefilter.
+	 * 
+	 * @return the reason or null if the figure hasn't been rejected
+	 */
+	public String getRejectionReason() {
+		return this.rejectionReason;
+	}
+
+	/**
+	 * @param rejectionReason why the figure has been rejected before the map detection
+	 */
+	public void setRejectionReason(String rejectionReason) {
+		this.rejectionReason = rejectionReason;
+	}
+
 	/**
 	 * Loads all figure data from disk.
 	 * 
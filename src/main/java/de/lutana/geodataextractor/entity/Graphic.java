@@ -1,27 +1,205 @@
 package de.lutana.geodataextractor.entity;
 
+import de.lutana.geodataextractor.Config;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import org.slf4j.LoggerFactory;
 
+/**
+ * A graphic, stored in a file or kept in memory.
+ * 
+ * Graphics created from an image are kept in memory as long as the memory
+ * limit (see Config.getGraphicMemoryLimit()) allows it, so parsers can hand
+ * them over to the recognizers without encoding and decoding them again.
+ * Otherwise or once a file is requested, the image is written to the file.
+ * 
+ * @author Matthias Mohr
+ */
 public class Graphic {
 	
+	private static final Cleaner cleaner = Cleaner.create();
+	private static final AtomicLong memoryUsage = new AtomicLong(0);
+	
 	protected File file;
+	private BufferedImage image;
+	private boolean stored;
+	private Cleaner.Cleanable reservation;
+	private final Graphic source;
 	
 	public Graphic(File file) {
 		this.file = file;
+		this.image = null;
+		this.stored = true;
+		this.reservation = null;
+		this.source = null;
+	}
+	
+	/**
+	 * Creates a graphic from an image.
+	 * 
+	 * @param image Decoded image
+	 * @param file File to write the image to as PNG if it can't be kept in memory or a file is requested.
+	 */
+	public Graphic(BufferedImage image, File file) {
+		this.file = file;
+		this.image = image;
+		this.stored = false;
+		this.reservation = null;
+		this.source = null;
+		long bytes = getMemorySize(image);
+		if (reserve(bytes)) {
+			// Give the memory back once the graphic is garbage collected, even if it is never written to disk
+			this.reservation = cleaner.register(this, () -> memoryUsage.addAndGet(-bytes));
+		}
+		else {
+			this.spill();
+		}
+	}
+	
+	/**
+	 * Creates a view on another graphic, e.g. to add image processing capabilities.
+	 * 
+	 * @param graphic 
+	 */
+	protected Graphic(Graphic graphic) {
+		this.file = graphic.file;
+		this.image = null;
+		this.stored = true;
+		this.reservation = null;
+		this.source = graphic.source != null ? graphic.source : graphic;
+	}
+	
+	private static long getMemorySize(BufferedImage image) {
+		// Approximation, most images have 3 or 4 bytes per pixel
+		return (long) image.getWidth() * image.getHeight() * 4;
+	}
+	
+	private static boolean reserve(long bytes) {
+		long limit = Config.getGraphicMemoryLimit();
+		while(true) {
+			long current = memoryUsage.get();
+			if (current + bytes > limit) {
+				return false;
+			}
+			if (memoryUsage.compareAndSet(current, current + bytes)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * @return the memory currently used by graphics kept in memory in bytes
+	 */
+	public static long getMemoryUsage() {
+		return memoryUsage.get();
 	}
 
 	/**
+	 * Returns the file, the image is written to it first if it's only kept in memory.
+	 * 
 	 * @return The file
 	 */
 	public File getFile() {
-		return file;
+		if (this.source != null) {
+			return this.source.getFile();
+		}
+		synchronized(this) {
+			if (!this.stored) {
+				this.store();
+			}
+		}
+		return this.file;
 	}
 
 	/**
 	 * @param file The file to set
 	 */
-	public void setFile(File file) {
+	public synchronized void setFile(File file) {
+		if (this.source != null) {
+			throw new UnsupportedOperationException("Can't change the file of a view.");
+		}
 		this.file = file;
+		this.stored = true;
+		this.release();
+	}
+
+	/**
+	 * Returns the decoded image.
+	 * 
+	 * Images kept in memory are returned directly, otherwise the file is decoded.
+	 * 
+	 * @return The image or null if it can't be read.
+	 */
+	public BufferedImage getImage() {
+		if (this.source != null) {
+			return this.source.getImage();
+		}
+		synchronized(this) {
+			if (this.image != null) {
+				return this.image;
+			}
+		}
+		if (this.file == null) {
+			return null;
+		}
+		try {
+			return ImageIO.read(this.file);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if the image is kept in memory, false if it needs to be read from the file.
+	 */
+	public boolean isInMemory() {
+		if (this.source != null) {
+			return this.source.isInMemory();
+		}
+		synchronized(this) {
+			return this.image != null;
+		}
+	}
+
+	/**
+	 * Writes the image to the file and frees the memory.
+	 */
+	public void spill() {
+		if (this.source != null) {
+			this.source.spill();
+			return;
+		}
+		synchronized(this) {
+			if (!this.stored) {
+				this.store();
+			}
+			this.release();
+		}
+	}
+	
+	private void store() {
+		try {
+			ImageIO.write(this.image, "png", this.file);
+			this.stored = true;
+		} catch (IOException e) {
+			LoggerFactory.getLogger(getClass()).error("Writing graphic to " + this.file + " failed: " + e.getMessage());
+		}
+	}
+	
+	private void release() {
+		if (!this.stored) {
+			return; // Never drop the only copy of the image
+		}
+		this.image = null;
+		if (this.reservation != null) {
+			this.reservation.clean();
+			this.reservation = null;
+		}
 	}
 	
 	@Override
@@ -3,6 +3,8 @@ package de.lutana.geodataextractor.entity;
 import de.lutana.geodataextractor.entity.locationresolver.HeatmapResolver;
 import de.lutana.geodataextractor.entity.locationresolver.LocationResolver;
 import de.lutana.geodataextractor.entity.locationresolver.UnionResolver;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
@@ -40,7 +42,9 @@ public class LocationCollection implements Located, Collection<Location> {
 	}
 	
 	public Location resolveLocation(LocationResolver resolver) {
-		return resolver.resolve(this);
+		try (Timer.Sample sample = Metrics.time("resolver." + resolver.getClass().getSimpleName())) {
+			return resolver.resolve(this);
+		}
 	}
 	
 	public Location get(int index) {
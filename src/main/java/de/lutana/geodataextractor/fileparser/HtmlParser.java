@@ -3,6 +3,8 @@ package de.lutana.geodataextractor.fileparser;
 import de.lutana.geodataextractor.Config;
 import de.lutana.geodataextractor.entity.Document;
 import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
 import de.lutana.geodataextractor.util.FileExtension;
 import java.io.BufferedOutputStream;
 import java.io.File;
@@ -34,7 +36,7 @@ public class HtmlParser implements Parser {
 	 */
 	@Override
 	public void parse(Document document) throws ParserException {
-		try {
+		try (Timer.Sample sample = Metrics.time("parser.html")) {
 			File docFile = document.getFile();
 			org.jsoup.nodes.Document doc = Jsoup.parse(docFile, "UTF-8");
 
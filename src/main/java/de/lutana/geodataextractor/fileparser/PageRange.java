@@ -0,0 +1,84 @@
+package de.lutana.geodataextractor.fileparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A continuous range of pages, e.g. to parse only parts of a document.
+ * 
+ * Pages are numbered the same way as in Figure.getPage().
+ * 
+ * @author Matthias Mohr
+ */
+public class PageRange {
+
+	private final int first;
+	private final int last;
+
+	/**
+	 * @param first First page to include
+	 * @param last Last page to include
+	 */
+	public PageRange(int first, int last) {
+		if (last < first) {
+			throw new IllegalArgumentException("The last page must not be before the first page.");
+		}
+		this.first = first;
+		this.last = last;
+	}
+
+	/**
+	 * Creates a range containing a single page.
+	 * 
+	 * @param page
+	 * @return 
+	 */
+	public static PageRange of(int page) {
+		return new PageRange(page, page);
+	}
+
+	/**
+	 * @return the first page
+	 */
+	public int getFirst() {
+		return this.first;
+	}
+
+	/**
+	 * @return the last page
+	 */
+	public int getLast() {
+		return this.last;
+	}
+
+	/**
+	 * Checks whether the page is in the range.
+	 * 
+	 * @param page
+	 * @return 
+	 */
+	public boolean contains(Integer page) {
+		return page != null && page >= this.first && page <= this.last;
+	}
+
+	/**
+	 * Returns the pages in the range that exist in a document with the given page numbers.
+	 * 
+	 * @param min Number of the first page in the document
+	 * @param max Number of the last page in the document
+	 * @return 
+	 */
+	public List<Integer> getPages(int min, int max) {
+		List<Integer> pages = new ArrayList<>();
+		for(int i = Math.max(min, this.first); i <= Math.min(max, this.last); i++) {
+			pages.add(i);
+		}
+		return pages;
+	}
+
+	@Override
+	public String toString() {
+		return this.first == this.last ? "page " + this.first : "pages " + this.first + "-" + this.last;
+	}
+
+}
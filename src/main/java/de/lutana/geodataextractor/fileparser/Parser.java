@@ -29,4 +29,18 @@ public interface Parser {
 	 */
 	public void parse(Document document) throws ParserException;
 	
+	/**
+	 * Parses figures from the given pages of a document only.
+	 * 
+	 * Parsers that can't select pages parse the whole document, so callers
+	 * still need to filter the figures by page.
+	 * 
+	 * @param document
+	 * @param pages Pages to parse, null to parse all pages.
+	 * @throws de.lutana.geodataextractor.fileparser.ParserException
+	 */
+	public default void parse(Document document, PageRange pages) throws ParserException {
+		this.parse(document);
+	}
+	
 }
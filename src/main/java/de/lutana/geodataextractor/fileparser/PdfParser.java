@@ -3,10 +3,15 @@ package de.lutana.geodataextractor.fileparser;
 import de.lutana.geodataextractor.Config;
 import de.lutana.geodataextractor.entity.Document;
 import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.entity.Graphic;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import javax.imageio.ImageIO;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
 import org.allenai.pdffigures2.FigureExtractor;
 import org.allenai.pdffigures2.RasterizedFigure;
 import org.allenai.pdffigures2.SectionedTextBuilder.PdfText;
@@ -17,6 +22,7 @@ import pl.edu.icm.cermine.exception.AnalysisException;
 import pl.edu.icm.cermine.metadata.model.DocumentMetadata;
 import pl.edu.icm.cermine.tools.timeout.TimeoutException;
 import scala.Option;
+import scala.collection.JavaConverters;
 import scala.collection.Iterator;
 
 /**
@@ -38,6 +44,23 @@ public class PdfParser implements Parser {
 	 */
 	@Override
 	public void parse(Document document) throws ParserException {
+		this.parse(document, null);
+	}
+
+	/**
+	 * Parses contents from the given pages of PDF documents.
+	 *
+	 * Only the selected pages are analyzed and rasterized by PDFFigures.
+	 * The metadata of the whole document is not extracted by CERMINE in this
+	 * case, the title and abstract are taken from the PDF metadata and the
+	 * selected pages instead.
+	 *
+	 * @param document File referencing an PDF based document
+	 * @param pages Pages to parse, null to parse all pages
+	 * @throws de.lutana.geodataextractor.fileparser.ParserException
+	 */
+	@Override
+	public void parse(Document document, PageRange pages) throws ParserException {
 		int dpi = 300;
 		boolean allowOcr = true;
 		boolean ignoreWhiteGraphics = true;
@@ -46,22 +69,32 @@ public class PdfParser implements Parser {
 		boolean cleanRasterizedFigureRegions = true;
 		Option None = scala.Option.apply(null); // This is None, the scala way to use null
 
-		// Get title and abstract using CERMINE
+		// Read the file only once, PDFBox and CERMINE both parse it from memory
+		byte[] data;
 		try {
-			ContentExtractor extractor = new ContentExtractor();
-			extractor.setPDF(new FileInputStream(document.getFile()));
-			DocumentMetadata meta = extractor.getMetadata();
-			document.setTitle(meta.getTitle());
-			document.setDescription(meta.getAbstrakt());
-		} catch (IOException | AnalysisException | TimeoutException ex) {
-			ex.printStackTrace();
-		} catch (AssertionError er) {}
+			data = Files.readAllBytes(document.getFile().toPath());
+		} catch (IOException ex) {
+			throw new ParserException(ex);
+		}
 
-		PDDocument pdfBoxDoc = null;
-		try {
-			pdfBoxDoc = PDDocument.load(document.getFile());
+		// CERMINE always analyzes the whole document, so it's only used for complete documents
+		MetadataMode metadataMode = pages == null ? Config.getPdfMetadataMode() : MetadataMode.NEVER;
+		if (metadataMode == MetadataMode.ALWAYS) {
+			this.parseMetadata(document, data);
+		}
+
+		try (PDDocument pdfBoxDoc = PDDocument.load(data)) {
 			FigureExtractor figExtractor = new FigureExtractor(allowOcr, ignoreWhiteGraphics, detectSectionTitlesFirst, rebuildParagraphs, cleanRasterizedFigureRegions);
-			FigureExtractor.DocumentWithRasterizedFigures figures = figExtractor.getRasterizedFiguresWithText(pdfBoxDoc, dpi, None, None);
+			Option pageSelection = None;
+			if (pages != null) {
+				// PDFFigures counts pages from 0, like PDFBox
+				List<Integer> pageList = pages.getPages(0, pdfBoxDoc.getNumberOfPages() - 1);
+				pageSelection = Option.apply(JavaConverters.asScalaBufferConverter(pageList).asScala());
+			}
+			FigureExtractor.DocumentWithRasterizedFigures figures;
+			try (Timer.Sample sample = Metrics.time("parser.pdf.pdffigures")) {
+				figures = figExtractor.getRasterizedFiguresWithText(pdfBoxDoc, dpi, pageSelection, None);
+			}
 			
 			// Get alternative title
 			if (document.getTitle().isEmpty()) {
@@ -87,21 +120,64 @@ public class PdfParser implements Parser {
 				String figName = rfigure.figure().name();
 
 				File tempFile = new File(Config.getTempFolder(document.getFile().getName()), "pg"+page+"-fig" + figName + ".png");
-				ImageIO.write(rfigure.bufferedImage(), "png", tempFile);
 
 				Figure figure = document.addFigure(tempFile, figName, page);
 				figure.setCaption(rfigure.figure().caption());
-				figure.setGraphicFile(tempFile);
+				// Keep the rendered image in memory, it's only written to the file if needed
+				figure.setGraphic(new Graphic(rfigure.bufferedImage(), tempFile));
 			}
-			pdfBoxDoc.close();
 		} catch (IOException ex) {
-			if (pdfBoxDoc != null) {
-				try {
-					pdfBoxDoc.close();
-				} catch(IOException e) {}
-			}
 			throw new ParserException(ex);
 		}
+
+		if (metadataMode == MetadataMode.FALLBACK && (document.getTitle().isEmpty() || document.getDescription().isEmpty())) {
+			String title = document.getTitle();
+			String description = document.getDescription();
+			this.parseMetadata(document, data);
+			// Keep what has been found before if CERMINE doesn't find anything
+			if (document.getTitle().isEmpty()) {
+				document.setTitle(title);
+			}
+			if (document.getDescription().isEmpty()) {
+				document.setDescription(description);
+			}
+		}
+	}
+
+	/**
+	 * Gets title and abstract using CERMINE.
+	 * 
+	 * @param document
+	 * @param data Content of the PDF file
+	 */
+	protected void parseMetadata(Document document, byte[] data) {
+		try (Timer.Sample sample = Metrics.time("parser.pdf.cermine"); InputStream in = new ByteArrayInputStream(data)) {
+			ContentExtractor extractor = new ContentExtractor();
+			extractor.setPDF(in);
+			DocumentMetadata meta = extractor.getMetadata();
+			document.setTitle(meta.getTitle());
+			document.setDescription(meta.getAbstrakt());
+		} catch (IOException | AnalysisException | TimeoutException ex) {
+			ex.printStackTrace();
+		} catch (AssertionError er) {}
+	}
+
+	/**
+	 * Defines when CERMINE is used to extract the title and the abstract.
+	 */
+	public enum MetadataMode {
+		/**
+		 * Always use CERMINE, which gives the best results, but is slow.
+		 */
+		ALWAYS,
+		/**
+		 * Use CERMINE only if the PDF metadata and PDFFigures don't provide title and abstract.
+		 */
+		FALLBACK,
+		/**
+		 * Never use CERMINE.
+		 */
+		NEVER
 	}
 
 	/**
@@ -0,0 +1,47 @@
+package de.lutana.geodataextractor.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events, e.g. the number of processed documents.
+ *
+ * @author Matthias Mohr
+ */
+public class Counter {
+
+	private final String name;
+	private final LongAdder count;
+
+	public Counter(String name) {
+		this.name = name;
+		this.count = new LongAdder();
+	}
+
+	public void increment() {
+		this.count.increment();
+	}
+
+	public void add(long value) {
+		this.count.add(value);
+	}
+
+	/**
+	 * @return the name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the current count
+	 */
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	@Override
+	public String toString() {
+		return this.name + ": " + this.getCount();
+	}
+
+}
@@ -0,0 +1,50 @@
+package de.lutana.geodataextractor.metrics;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the metrics as JSON.
+ *
+ * Example:
+ * {"timers": {"ocr.tesseract": {"count": 12, "total": 3480.2, "mean": 290.0, "p50": 250.3, "p95": 480.1, "p99": 498.0, "max": 501.7}}, "counters": {"documents.processed": 3}}
+ *
+ * All times are in milliseconds.
+ *
+ * @author Matthias Mohr
+ */
+public class JsonMetricsReporter implements MetricsReporter {
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	@Override
+	public void report(Metrics metrics, OutputStream out) throws IOException {
+		try (JsonGenerator g = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+			g.useDefaultPrettyPrinter();
+			g.writeStartObject();
+			g.writeObjectFieldStart("timers");
+			for(Timer timer : metrics.getTimers().values()) {
+				g.writeObjectFieldStart(timer.getName());
+				g.writeNumberField("count", timer.getCount());
+				g.writeNumberField("total", timer.getTotalTime());
+				g.writeNumberField("mean", timer.getMeanTime());
+				g.writeNumberField("p50", timer.getPercentile(0.5));
+				g.writeNumberField("p95", timer.getPercentile(0.95));
+				g.writeNumberField("p99", timer.getPercentile(0.99));
+				g.writeNumberField("max", timer.getMaxTime());
+				g.writeEndObject();
+			}
+			g.writeEndObject();
+			g.writeObjectFieldStart("counters");
+			for(Counter counter : metrics.getCounters().values()) {
+				g.writeNumberField(counter.getName(), counter.getCount());
+			}
+			g.writeEndObject();
+			g.writeEndObject();
+		}
+	}
+
+}
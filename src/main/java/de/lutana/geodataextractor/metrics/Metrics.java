@@ -0,0 +1,113 @@
+package de.lutana.geodataextractor.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects timers and counters for the processing steps of all threads.
+ *
+ * Example:
+ * try (Timer.Sample sample = Metrics.time("ocr.tesseract")) {
+ *     // Do the work
+ * }
+ * Metrics.count("documents.processed");
+ *
+ * Names consist of words separated by dots, starting with the component
+ * that is measured. The collected values can be written in
+ * different formats using a MetricsReporter.
+ *
+ * @author Matthias Mohr
+ */
+public class Metrics {
+
+	private static final Metrics instance = new Metrics();
+
+	private final Map<String, Timer> timers;
+	private final Map<String, Counter> counters;
+
+	public static Metrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts measuring the time for the named timer, stops when the sample is closed.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public static Timer.Sample time(String name) {
+		return instance.timer(name).start();
+	}
+
+	/**
+	 * Increments the named counter by one.
+	 *
+	 * @param name
+	 */
+	public static void count(String name) {
+		instance.counter(name).increment();
+	}
+
+	private Metrics() {
+		this.timers = new ConcurrentHashMap<>();
+		this.counters = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Returns the timer with the given name, it is created if it doesn't exist yet.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public Timer timer(String name) {
+		return this.timers.computeIfAbsent(name, Timer::new);
+	}
+
+	/**
+	 * Returns the counter with the given name, it is created if it doesn't exist yet.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public Counter counter(String name) {
+		return this.counters.computeIfAbsent(name, Counter::new);
+	}
+
+	/**
+	 * @return all timers sorted by name
+	 */
+	public SortedMap<String, Timer> getTimers() {
+		return new TreeMap<>(this.timers);
+	}
+
+	/**
+	 * @return all counters sorted by name
+	 */
+	public SortedMap<String, Counter> getCounters() {
+		return new TreeMap<>(this.counters);
+	}
+
+	/**
+	 * Writes the current values using the given reporter.
+	 *
+	 * @param reporter
+	 * @param out
+	 * @throws IOException
+	 */
+	public void report(MetricsReporter reporter, OutputStream out) throws IOException {
+		reporter.report(this, out);
+	}
+
+	/**
+	 * Removes all timers and counters.
+	 */
+	public void reset() {
+		this.timers.clear();
+		this.counters.clear();
+	}
+
+}
@@ -0,0 +1,15 @@
+package de.lutana.geodataextractor.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the collected metrics in a specific format.
+ *
+ * @author Matthias Mohr
+ */
+public interface MetricsReporter {
+
+	public void report(Metrics metrics, OutputStream out) throws IOException;
+
+}
@@ -0,0 +1,52 @@
+package de.lutana.geodataextractor.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the metrics in the Prometheus text format.
+ *
+ * Timers are written as histograms in seconds, counters as counters.
+ * The names are prefixed with "geodataextractor_" and dots are replaced with
+ * underscores, e.g. the timer "ocr.tesseract" becomes "geodataextractor_ocr_tesseract_seconds".
+ *
+ * @author Matthias Mohr
+ * @see https://prometheus.io/docs/instrumenting/exposition_formats/
+ */
+public class PrometheusMetricsReporter implements MetricsReporter {
+
+	public static final String PREFIX = "geodataextractor_";
+
+	@Override
+	public void report(Metrics metrics, OutputStream out) throws IOException {
+		Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+		for(Timer timer : metrics.getTimers().values()) {
+			String name = toName(timer.getName()) + "_seconds";
+			w.write("# TYPE " + name + " histogram\n");
+			long[] counts = timer.getBucketCounts();
+			long cumulative = 0;
+			for(int i = 0; i < Timer.BUCKETS.length; i++) {
+				cumulative += counts[i];
+				w.write(name + "_bucket{le=\"" + (Timer.BUCKETS[i] / 1000) + "\"} " + cumulative + "\n");
+			}
+			cumulative += counts[Timer.BUCKETS.length];
+			w.write(name + "_bucket{le=\"+Inf\"} " + cumulative + "\n");
+			w.write(name + "_sum " + (timer.getTotalTime() / 1000) + "\n");
+			w.write(name + "_count " + cumulative + "\n");
+		}
+		for(Counter counter : metrics.getCounters().values()) {
+			String name = toName(counter.getName()) + "_total";
+			w.write("# TYPE " + name + " counter\n");
+			w.write(name + " " + counter.getCount() + "\n");
+		}
+		w.flush();
+	}
+
+	private static String toName(String name) {
+		return PREFIX + name.replaceAll("[^a-zA-Z0-9_]", "_");
+	}
+
+}
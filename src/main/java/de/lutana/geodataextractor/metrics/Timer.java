@@ -0,0 +1,176 @@
+package de.lutana.geodataextractor.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of the durations of a processing step.
+ *
+ * The durations are counted in fixed buckets (in milliseconds), so recording
+ * is cheap and thread-safe, but percentiles are only estimates within the
+ * bounds of a bucket.
+ *
+ * @author Matthias Mohr
+ */
+public class Timer {
+
+	/**
+	 * Upper bounds of the buckets in milliseconds, the last bucket has no upper bound.
+	 */
+	public static final double[] BUCKETS = new double[] {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000};
+
+	private final String name;
+	private final LongAdder[] buckets;
+	private final LongAdder count;
+	private final LongAdder sumNanos;
+	private final AtomicLong maxNanos;
+
+	public Timer(String name) {
+		this.name = name;
+		this.buckets = new LongAdder[BUCKETS.length + 1];
+		for(int i = 0; i < this.buckets.length; i++) {
+			this.buckets[i] = new LongAdder();
+		}
+		this.count = new LongAdder();
+		this.sumNanos = new LongAdder();
+		this.maxNanos = new AtomicLong(0);
+	}
+
+	/**
+	 * Starts a new measurement, it is recorded when the sample is closed.
+	 *
+	 * @return
+	 */
+	public Sample start() {
+		return new Sample(this);
+	}
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos Duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		double millis = nanos / 1000000d;
+		int i = 0;
+		while(i < BUCKETS.length && millis > BUCKETS[i]) {
+			i++;
+		}
+		this.buckets[i].increment();
+		this.count.increment();
+		this.sumNanos.add(nanos);
+		this.maxNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	/**
+	 * @return the name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the number of recorded durations
+	 */
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	/**
+	 * @return the sum of all durations in milliseconds
+	 */
+	public double getTotalTime() {
+		return this.sumNanos.sum() / 1000000d;
+	}
+
+	/**
+	 * @return the longest duration in milliseconds
+	 */
+	public double getMaxTime() {
+		return this.maxNanos.get() / 1000000d;
+	}
+
+	/**
+	 * @return the mean duration in milliseconds
+	 */
+	public double getMeanTime() {
+		long n = this.getCount();
+		return n > 0 ? this.getTotalTime() / n : 0;
+	}
+
+	/**
+	 * Returns the number of durations in each bucket, see BUCKETS for the bounds.
+	 *
+	 * @return
+	 */
+	public long[] getBucketCounts() {
+		long[] counts = new long[this.buckets.length];
+		for(int i = 0; i < counts.length; i++) {
+			counts[i] = this.buckets[i].sum();
+		}
+		return counts;
+	}
+
+	/**
+	 * Estimates a percentile by interpolating within the matching bucket.
+	 *
+	 * @param p Percentile between 0 and 1, e.g. 0.95
+	 * @return Duration in milliseconds
+	 */
+	public double getPercentile(double p) {
+		long[] counts = this.getBucketCounts();
+		long total = 0;
+		for(long c : counts) {
+			total += c;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		double rank = p * total;
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0 && seen + counts[i] >= rank) {
+				double lower = i > 0 ? BUCKETS[i - 1] : 0;
+				double upper = i < BUCKETS.length ? BUCKETS[i] : this.getMaxTime();
+				double value = lower + (upper - lower) * (rank - seen) / counts[i];
+				return Math.min(value, this.getMaxTime());
+			}
+			seen += counts[i];
+		}
+		return this.getMaxTime();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d calls, %.1f ms total, %.1f ms mean, %.1f ms p95, %.1f ms max", this.name, this.getCount(), this.getTotalTime(), this.getMeanTime(), this.getPercentile(0.95), this.getMaxTime());
+	}
+
+	/**
+	 * A running measurement, use it with try-with-resources.
+	 */
+	public static class Sample implements AutoCloseable {
+
+		private final Timer timer;
+		private final long start;
+		private boolean stopped;
+
+		private Sample(Timer timer) {
+			this.timer = timer;
+			this.start = System.nanoTime();
+			this.stopped = false;
+		}
+
+		/**
+		 * Stops the measurement and records the duration, subsequent calls are ignored.
+		 */
+		@Override
+		public void close() {
+			if (!this.stopped) {
+				this.stopped = true;
+				this.timer.record(System.nanoTime() - this.start);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,243 @@
+package de.lutana.geodataextractor.pipeline;
+
+import de.lutana.geodataextractor.ResultCache;
+import de.lutana.geodataextractor.entity.Document;
+import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.entity.LocationCollection;
+import de.lutana.geodataextractor.strategy.AbstractStrategy;
+import de.lutana.geodataextractor.util.Deadline;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes documents in four stages, each with its own threads and a bounded queue:
+ *
+ * 1. parse: Parses the document (or loads it from the cache).
+ * 2. text: Detects the locations in the texts of the document.
+ * 3. figures: Collects the location candidates for each figure.
+ * 4. resolve: Resolves the figure locations once all figures of a document are done.
+ *
+ * This way parsing the next document overlaps with OCR and inference on the
+ * previous documents and each stage can be sized according to its costs.
+ *
+ * @author Matthias Mohr
+ */
+public class Pipeline {
+
+	private final AbstractStrategy strategy;
+	private final Predicate<Document> parser;
+	private final BiConsumer<Document, Boolean> output;
+	private ResultCache resultCache;
+
+	private final PipelineStage<Document> parseStage;
+	private final PipelineStage<DocumentJob> textStage;
+	private final PipelineStage<FigureJob> figureStage;
+	private final PipelineStage<DocumentJob> resolveStage;
+
+	/**
+	 * Creates a new pipeline.
+	 *
+	 * @param strategy Strategy used to detect the locations
+	 * @param parser Parses a document, returns false on failure
+	 * @param output Receives each document after it has been processed and whether it was successful, might be called concurrently
+	 * @param parseThreads Number of threads parsing documents
+	 * @param textThreads Number of threads detecting locations in the document texts
+	 * @param figureThreads Number of threads detecting locations in figures
+	 * @param resolveThreads Number of threads resolving the figure locations
+	 */
+	public Pipeline(AbstractStrategy strategy, Predicate<Document> parser, BiConsumer<Document, Boolean> output, int parseThreads, int textThreads, int figureThreads, int resolveThreads) {
+		this.strategy = strategy;
+		this.parser = parser;
+		this.output = output;
+		this.resultCache = null;
+		this.parseStage = new PipelineStage<>("parse", parseThreads, parseThreads * 2, this::parse);
+		this.textStage = new PipelineStage<>("text", textThreads, textThreads * 2, this::recognizeText);
+		// Figures are queued per document, so the queue should take at least the figures of a usual document
+		this.figureStage = new PipelineStage<>("figures", figureThreads, Math.max(32, figureThreads * 4), this::recognizeFigure);
+		this.resolveStage = new PipelineStage<>("resolve", resolveThreads, resolveThreads * 2, this::resolve);
+	}
+
+	/**
+	 * Sets the cache for the results.
+	 *
+	 * Documents found in the cache are passed to the output right away,
+	 * all other documents are stored in the cache once they are done.
+	 *
+	 * @param resultCache the cache or null to disable the cache
+	 */
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * Processes the documents and waits until all of them are done.
+	 *
+	 * @param documents
+	 */
+	public void run(Iterable<Document> documents) {
+		Logger logger = LoggerFactory.getLogger(getClass());
+		this.resolveStage.start();
+		this.figureStage.start();
+		this.textStage.start();
+		this.parseStage.start();
+		try {
+			for(Document document : documents) {
+				this.parseStage.put(document);
+			}
+			// Each stage only feeds the next stage, so once a stage is finished all items for the next stage are queued
+			for(PipelineStage<?> stage : this.getStages()) {
+				stage.finish();
+			}
+		} catch (InterruptedException e) {
+			for(PipelineStage<?> stage : this.getStages()) {
+				stage.abort();
+			}
+			Thread.currentThread().interrupt();
+		}
+		for(PipelineStage<?> stage : this.getStages()) {
+			logger.info(stage.toString());
+		}
+	}
+
+	/**
+	 * Returns the stages in the order they are executed, e.g. to gather statistics.
+	 *
+	 * @return
+	 */
+	public List<PipelineStage<?>> getStages() {
+		return Arrays.asList(this.parseStage, this.textStage, this.figureStage, this.resolveStage);
+	}
+
+	private void parse(Document document) throws InterruptedException {
+		File cacheEntry = null;
+		if (this.resultCache != null) {
+			cacheEntry = this.resultCache.getEntry(document, this.strategy);
+			if (this.resultCache.restore(document, cacheEntry)) {
+				this.output.accept(document, true);
+				return;
+			}
+		}
+		boolean parsed = false;
+		try {
+			parsed = this.parser.test(document);
+		} finally {
+			if (parsed) {
+				this.textStage.put(new DocumentJob(document, cacheEntry));
+			}
+			else {
+				this.output.accept(document, false);
+			}
+		}
+	}
+
+	private void recognizeText(DocumentJob job) throws InterruptedException {
+		LoggerFactory.getLogger(getClass()).info("## Document: " + job.document);
+		List<Figure> figures = job.document.getFigures();
+		job.deadline = Deadline.in(this.strategy.getDocumentTimeBudget());
+		try {
+			job.documentLocations = this.strategy.getDocumentLocations(job.document);
+		} finally {
+			if (job.documentLocations == null) {
+				job.failed = true;
+			}
+			if (job.failed || figures.isEmpty()) {
+				this.resolveStage.put(job);
+			}
+			else {
+				job.pendingFigures.set(figures.size());
+				for(Figure figure : figures) {
+					this.figureStage.put(new FigureJob(job, figure));
+				}
+			}
+		}
+	}
+
+	private void recognizeFigure(FigureJob job) throws InterruptedException {
+		LoggerFactory.getLogger(getClass()).info("# " + job.figure);
+		job.figure.setDeadline(this.strategy.getFigureDeadline(job.document.deadline));
+		try {
+			// Same steps as AbstractStrategy.extractFigureLocations(), but the locations are resolved in the resolve stage
+			LocationCollection figureLocations = this.strategy.recognizeFigureLocations(job.figure, job.document.documentLocations);
+			if (figureLocations != null) {
+				job.document.figureLocations.put(job.figure, figureLocations);
+			}
+		} catch (RuntimeException | Error e) {
+			job.document.failed = true;
+			throw e;
+		} finally {
+			// The last figure of a document passes it on
+			if (job.document.pendingFigures.decrementAndGet() == 0) {
+				this.resolveStage.put(job.document);
+			}
+		}
+	}
+
+	private void resolve(DocumentJob job) {
+		boolean success = false;
+		try {
+			for(Map.Entry<Figure, LocationCollection> entry : job.figureLocations.entrySet()) {
+				this.strategy.resolveFigureLocation(entry.getKey(), entry.getValue());
+			}
+			// Incomplete results must not be cached
+			if (this.resultCache != null && !job.failed) {
+				this.resultCache.store(job.document, job.cacheEntry);
+			}
+			success = !job.failed;
+		} finally {
+			this.output.accept(job.document, success);
+		}
+	}
+
+	private static class DocumentJob {
+
+		private final Document document;
+		private final File cacheEntry;
+		private volatile LocationCollection documentLocations;
+		private volatile Deadline deadline;
+		private final Map<Figure, LocationCollection> figureLocations;
+		private final AtomicInteger pendingFigures;
+		private volatile boolean failed;
+
+		public DocumentJob(Document document, File cacheEntry) {
+			this.document = document;
+			this.cacheEntry = cacheEntry;
+			this.failed = false;
+			this.documentLocations = null;
+			this.deadline = Deadline.NONE;
+			this.figureLocations = new ConcurrentHashMap<>();
+			this.pendingFigures = new AtomicInteger(0);
+		}
+
+		@Override
+		public String toString() {
+			return this.document.toString();
+		}
+
+	}
+
+	private static class FigureJob {
+
+		private final DocumentJob document;
+		private final Figure figure;
+
+		public FigureJob(DocumentJob document, Figure figure) {
+			this.document = document;
+			this.figure = figure;
+		}
+
+		@Override
+		public String toString() {
+			return this.figure.toString();
+		}
+
+	}
+
+}
@@ -0,0 +1,200 @@
+package de.lutana.geodataextractor.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single stage of a pipeline with its own worker threads and a bounded input queue.
+ *
+ * Adding an item blocks while the queue is full, so a fast stage can't run
+ * too far ahead of a slow stage (back-pressure).
+ *
+ * @author Matthias Mohr
+ * @param <T> Type of the items processed by this stage
+ */
+public class PipelineStage<T> {
+
+	/**
+	 * Processes a single item, usually by passing it on to the next stage.
+	 *
+	 * @param <T> Type of the items processed
+	 */
+	@FunctionalInterface
+	public interface Worker<T> {
+		public void process(T item) throws InterruptedException;
+	}
+
+	private final String name;
+	private final int threads;
+	private final BlockingQueue<T> queue;
+	private final Worker<T> worker;
+	private final List<Thread> workerThreads;
+	private volatile boolean closed;
+
+	private final AtomicInteger maxQueueDepth;
+	private final AtomicLong processed;
+	private final AtomicLong failed;
+	private final AtomicLong busyNanos;
+
+	/**
+	 * Creates a new stage.
+	 *
+	 * @param name Name of the stage, used for thread names and logging
+	 * @param threads Number of worker threads, values lower than 1 are treated as 1
+	 * @param capacity Number of items that can be queued before adding blocks, values lower than 1 are treated as 1
+	 * @param worker Processes the items
+	 */
+	public PipelineStage(String name, int threads, int capacity, Worker<T> worker) {
+		this.name = name;
+		this.threads = Math.max(1, threads);
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+		this.worker = worker;
+		this.workerThreads = new ArrayList<>();
+		this.closed = false;
+		this.maxQueueDepth = new AtomicInteger(0);
+		this.processed = new AtomicLong(0);
+		this.failed = new AtomicLong(0);
+		this.busyNanos = new AtomicLong(0);
+	}
+
+	/**
+	 * Starts the worker threads.
+	 */
+	public synchronized void start() {
+		for(int i = 0; i < this.threads; i++) {
+			Thread thread = new Thread(this::work, this.name + "-" + i);
+			thread.setDaemon(true);
+			thread.start();
+			this.workerThreads.add(thread);
+		}
+	}
+
+	/**
+	 * Adds an item to the queue, waits while the queue is full.
+	 *
+	 * @param item
+	 * @throws InterruptedException
+	 */
+	public void put(T item) throws InterruptedException {
+		this.queue.put(item);
+		this.maxQueueDepth.accumulateAndGet(this.queue.size(), Math::max);
+	}
+
+	/**
+	 * Waits until all queued items are processed and stops the worker threads.
+	 *
+	 * No items must be added after calling this method.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void finish() throws InterruptedException {
+		this.closed = true;
+		for(Thread thread : this.workerThreads) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * Stops the worker threads immediately, queued items are discarded.
+	 */
+	public void abort() {
+		this.closed = true;
+		this.queue.clear();
+		for(Thread thread : this.workerThreads) {
+			thread.interrupt();
+		}
+	}
+
+	private void work() {
+		while(true) {
+			T item;
+			try {
+				item = this.queue.poll(100, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (item == null) {
+				if (this.closed) {
+					return;
+				}
+				continue;
+			}
+
+			long start = System.nanoTime();
+			try {
+				this.worker.process(item);
+			} catch (InterruptedException e) {
+				return;
+			} catch (RuntimeException | Error e) {
+				this.failed.incrementAndGet();
+				LoggerFactory.getLogger(getClass()).error("Stage " + this.name + " failed to process " + item + ": " + e);
+			} finally {
+				this.busyNanos.addAndGet(System.nanoTime() - start);
+				this.processed.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @return the name of the stage
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the number of worker threads
+	 */
+	public int getThreads() {
+		return this.threads;
+	}
+
+	/**
+	 * @return the number of items currently waiting in the queue
+	 */
+	public int getQueueDepth() {
+		return this.queue.size();
+	}
+
+	/**
+	 * @return the highest number of items that have been waiting in the queue at the same time
+	 */
+	public int getMaxQueueDepth() {
+		return this.maxQueueDepth.get();
+	}
+
+	/**
+	 * @return the number of items processed, including failed items
+	 */
+	public long getProcessed() {
+		return this.processed.get();
+	}
+
+	/**
+	 * @return the number of items that failed to be processed
+	 */
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+	/**
+	 * Returns the time the worker threads spent on processing items, summed up over all threads.
+	 *
+	 * @return time in milliseconds
+	 */
+	public long getBusyTime() {
+		return TimeUnit.NANOSECONDS.toMillis(this.busyNanos.get());
+	}
+
+	@Override
+	public String toString() {
+		return this.name + ": " + this.threads + " threads, " + this.getProcessed() + " processed, " + this.getFailed() + " failed, queue depth " + this.getQueueDepth() + " (max. " + this.getMaxQueueDepth() + "), busy " + this.getBusyTime() + " ms";
+	}
+
+}
@@ -3,9 +3,13 @@ package de.lutana.geodataextractor.recognizer;
 import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.LineSegment;
+import de.lutana.geodataextractor.ModelRegistry;
 import de.lutana.geodataextractor.recognizer.coordinates.CoordinateFromText;
+import de.lutana.geodataextractor.entity.Figure;
 import de.lutana.geodataextractor.entity.Location;
 import de.lutana.geodataextractor.entity.LocationCollection;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
 import de.lutana.geodataextractor.recognizer.coordinates.CoordinateList;
 import de.lutana.geodataextractor.recognizer.coordinates.CoordinateParser;
 import de.lutana.geodataextractor.recognizer.cv.CvException;
@@ -38,8 +42,7 @@ public class CoordinateGraphicRecognizer implements GraphicRecognizer {
 	public boolean recognize(CvGraphic graphic, LocationCollection locations, double weight) {
 		Logger logger = LoggerFactory.getLogger(this.getClass());
 	
-		// ToDo: Settings are affected globally, this might have side-effects when used in threads, ...
-		TesseractOCR.getInstance().optimizeForCoordinates();
+		TesseractOCR ocr = ModelRegistry.getInstance().getTesseractOCR();
 		
 		BufferedImage img = graphic.getBufferedImage();
 		int width = img.getWidth();
@@ -51,12 +54,17 @@ public class CoordinateGraphicRecognizer implements GraphicRecognizer {
 		}
 
 		List<Word> words = new ArrayList<>();
+		// Each thread has its own OCR engine, so changing the settings doesn't affect other threads
 		try {
+			ocr.optimizeForCoordinates();
 			for(Rect rect : rects) {
 				int margin = Math.round(rect.height / 4);
 				rect = GeoTools.addMargin(rect, margin, margin, width, height);
 				BufferedImage subImg = img.getSubimage(rect.x, rect.y, rect.width, rect.height);
-				List<Word> subWords = TesseractOCR.getInstance().getWords(subImg, TessPageIteratorLevel.RIL_WORD);
+				List<Word> subWords;
+				try (Timer.Sample sample = Metrics.time("ocr.tesseract")) {
+					subWords = ocr.getWords(subImg, TessPageIteratorLevel.RIL_WORD);
+				}
 				// The bbox from Tesseract relates to the sub image(!).
 				// To get the bbox for the whole image add the offset/position of the sub image to the detected bbox.
 				for(Word w : subWords) {
@@ -123,10 +131,12 @@ public class CoordinateGraphicRecognizer implements GraphicRecognizer {
 		Location location = coords.getLocation();
 		if (location != null) {
 			boolean improved = false;
-			try {
-				improved = this.improveLocationUsingAxes(graphic, coords, location);
-			} catch (CvException e) {
-				e.printStackTrace();
+			if (this.hasTimeForAxes(graphic)) {
+				try {
+					improved = this.improveLocationUsingAxes(graphic, coords, location);
+				} catch (CvException e) {
+					e.printStackTrace();
+				}
 			}
 			location.setWeight(weight);
 			logger.debug("Parsed location " + location + " from graphical coordinates." + (improved ? " Using CV imrprovements." : ""));
@@ -136,10 +146,36 @@ public class CoordinateGraphicRecognizer implements GraphicRecognizer {
 		return false;
 	}
 	
+	/**
+	 * Checks whether the deadline of the figure leaves enough time for detecting the axes.
+	 * 
+	 * Axes detection (inpainting, clustering, Hough transform) is the most
+	 * expensive part, so it is skipped first if the time runs low.
+	 * 
+	 * @param graphic
+	 * @return 
+	 */
+	protected boolean hasTimeForAxes(CvGraphic graphic) {
+		Figure figure = graphic.getFigure();
+		if (figure == null || figure.getDeadline().isUnlimited()) {
+			return true;
+		}
+		Timer timer = Metrics.getInstance().timer("cv.axes");
+		double estimate = timer.getCount() > 0 ? timer.getMeanTime() : 2000;
+		if (figure.getDeadline().allows(estimate)) {
+			return true;
+		}
+		figure.addSkippedStep("cv.axes");
+		return false;
+	}
+	
 	public boolean improveLocationUsingAxes(CvGraphic img, CoordinateList coords, Location baseLocation) {
 		// Do countour finding to get the axes
-		CvLineDetector lp = new MapAxesLineDetector(img);
-		List<LineSegment> lines = lp.detect();
+		List<LineSegment> lines;
+		try (Timer.Sample sample = Metrics.time("cv.axes")) {
+			CvLineDetector lp = new MapAxesLineDetector(img);
+			lines = lp.detect();
+		}
 		if (lines.isEmpty()) {
 			return false;
 		}
@@ -1,7 +1,10 @@
 package de.lutana.geodataextractor.recognizer;
 
+import de.lutana.geodataextractor.ModelRegistry;
 import de.lutana.geodataextractor.entity.Location;
 import de.lutana.geodataextractor.entity.LocationCollection;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
 import de.lutana.geodataextractor.recognizer.cv.CvGraphic;
 import de.lutana.geodataextractor.util.GeoTools;
 import de.lutana.geodataextractor.recognizer.cv.TesseractOCR;
@@ -34,8 +37,7 @@ public class GeoNamesGraphicRecognizer implements GraphicRecognizer {
 	public boolean recognize(CvGraphic graphic, LocationCollection locations, double weight) {
 		Logger logger = LoggerFactory.getLogger(this.getClass());
 		
-		// ToDo: Settings are affected globally, this might have side-effects when used in threads, ...
-		TesseractOCR.getInstance().optimizeForGeoNames();
+		TesseractOCR ocr = ModelRegistry.getInstance().getTesseractOCR();
 
 		BufferedImage img = graphic.getBufferedImage();
 
@@ -45,12 +47,17 @@ public class GeoNamesGraphicRecognizer implements GraphicRecognizer {
 		}
 
 		List<Word> words = new ArrayList<>();
+		// Each thread has its own OCR engine, so changing the settings doesn't affect other threads
 		try {
+			ocr.optimizeForGeoNames();
 			for(Rect rect : rects) {
 				int margin = Math.round(rect.height / 4);
 				rect = GeoTools.addMargin(rect, margin, margin, img.getWidth(), img.getHeight());
 				BufferedImage subImg = img.getSubimage(rect.x, rect.y, rect.width, rect.height);
-				List<Word> parts = TesseractOCR.getInstance().getWords(subImg, TessPageIteratorLevel.RIL_BLOCK);
+				List<Word> parts;
+				try (Timer.Sample sample = Metrics.time("ocr.tesseract")) {
+					parts = ocr.getWords(subImg, TessPageIteratorLevel.RIL_BLOCK);
+				}
 				// The bbox from Tesseract relates to the sub image(!).
 				// To get the bbox for the whole image add the offset/position of the sub image to the detected bbox.
 				for(Word w : parts) {
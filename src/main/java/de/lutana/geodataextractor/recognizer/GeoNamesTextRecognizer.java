@@ -1,11 +1,11 @@
 package de.lutana.geodataextractor.recognizer;
 
+import de.lutana.geodataextractor.ModelRegistry;
 import de.lutana.geodataextractor.recognizer.gazetteer.GeoName;
 import de.lutana.geodataextractor.recognizer.gazetteer.LuceneIndex;
 import de.lutana.geodataextractor.recognizer.nlp.Demonyms;
 import de.lutana.geodataextractor.recognizer.nlp.LocationExtractor;
 import de.lutana.geodataextractor.recognizer.nlp.LocationOccurrence;
-import de.lutana.geodataextractor.recognizer.nlp.StanfordExtractor;
 import de.lutana.geodataextractor.entity.Location;
 import de.lutana.geodataextractor.entity.LocationCollection;
 import de.lutana.geodataextractor.util.GeoAbbrev;
@@ -27,9 +27,13 @@ public class GeoNamesTextRecognizer implements TextRecognizer {
 	private int maxContextWindow;
 
 	public GeoNamesTextRecognizer(LuceneIndex index) throws IOException, ClassNotFoundException {
+		this(index, ModelRegistry.getInstance().getStanfordExtractor());
+	}
+
+	public GeoNamesTextRecognizer(LuceneIndex index, LocationExtractor extractor) {
 		this.index = index;
 		this.geoAbbrev = new GeoAbbrev();
-		this.extractor = new StanfordExtractor();
+		this.extractor = extractor;
 		this.fuzzyIfNoResultsMode = true;
 		this.maxContextWindow = 5;
 	}
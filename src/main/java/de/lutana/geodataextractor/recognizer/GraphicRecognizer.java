@@ -6,6 +6,9 @@ import de.lutana.geodataextractor.entity.LocationCollection;
 /**
  * Interface for different location information recognition approaches based on graphics.
  * 
+ * Implementations must be safe to use from several threads at the same time,
+ * as the figures of a document might be processed in parallel.
+ * 
  * @author Matthias Mohr
  */
 public interface GraphicRecognizer {
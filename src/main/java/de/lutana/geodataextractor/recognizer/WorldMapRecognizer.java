@@ -6,9 +6,17 @@ import de.lutana.geodataextractor.entity.LocationCollection;
 import de.lutana.geodataextractor.detector.WorldMapDetector;
 import org.slf4j.LoggerFactory;
 
-public class WorldMapRecognizer implements GraphicRecognizer {
+public class WorldMapRecognizer implements GraphicRecognizer, AutoCloseable {
 	
-	private final WorldMapDetector detector = new WorldMapDetector();
+	private final WorldMapDetector detector;
+	
+	public WorldMapRecognizer() {
+		this(new WorldMapDetector());
+	}
+	
+	public WorldMapRecognizer(WorldMapDetector detector) {
+		this.detector = detector;
+	}
 
 	@Override
 	public boolean recognize(CvGraphic graphic, LocationCollection locations, double weight) {
@@ -27,4 +35,12 @@ public class WorldMapRecognizer implements GraphicRecognizer {
 		return false;
 	}
 	
+	/**
+	 * Closes the detector, see WorldMapDetector.close().
+	 */
+	@Override
+	public void close() {
+		this.detector.close();
+	}
+	
 }
@@ -2,11 +2,16 @@ package de.lutana.geodataextractor.recognizer.cv;
 
 import de.lutana.geodataextractor.entity.Figure;
 import de.lutana.geodataextractor.entity.Graphic;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import org.opencv.core.Mat;
 import org.opencv.core.Rect;
 import org.openimaj.image.FImage;
@@ -14,32 +19,57 @@ import org.openimaj.image.ImageUtilities;
 import org.openimaj.image.pixel.statistics.HistogramModel;
 import org.openimaj.image.text.extraction.swt.LineCandidate;
 
+/**
+ * Graphic with the representations needed for image processing.
+ * 
+ * The image is decoded once, all other representations (Mat, grayscale Mat,
+ * FImage) are derived from it when they are requested the first time.
+ * Files are decoded by OpenCV if the Mat is requested first.
+ * The dimensions are read from the image header if the image hasn't been
+ * decoded yet. Call dispose() once the graphic is not needed any longer.
+ * 
+ * @author Matthias Mohr
+ */
 public class CvGraphic extends Graphic {
 	
 	private BufferedImage bImage = null;
 	private FImage fImage = null;
 	private Mat mat = null;
+	private Mat grayMat = null;
+	private int width = -1;
+	private int height = -1;
 	private Figure figure = null;
 
 	private List<LineCandidate> textLines = null;
 	private Integer backgroundBrightness = null;
+	private float[] bottleneck = null;
 	
 	public CvGraphic(File file) {
 		super(file);
 	}
 	
 	public CvGraphic(Figure figure) {
-		super(figure.getGraphicFile());
+		super(figure.getGraphic());
 		this.figure = figure;
 	}
 	
 	/**
-	 * Releases images stored in memory.
+	 * Releases images stored in memory, including the native memory of the Mats.
 	 */
-	public void dispose() {
+	public synchronized void dispose() {
+		if (this.grayMat != null && this.grayMat != this.mat) {
+			this.grayMat.release();
+		}
+		if (this.mat != null) {
+			this.mat.release();
+		}
+		this.grayMat = null;
+		this.mat = null;
+		this.fImage = null;
 		this.bImage = null;
 		this.textLines = null;
 		this.backgroundBrightness = null;
+		this.bottleneck = null;
 	}
 	
 	public Figure getFigure() {
@@ -50,41 +80,140 @@ public class CvGraphic extends Graphic {
 		this.figure = figure;
 	}
 	
-	public BufferedImage getBufferedImage() {
-		try {
-			this.bImage = ImageIO.read(this.file);
-		} catch (IOException e) {
-			e.printStackTrace();
+	/**
+	 * Returns the decoded image, don't modify it.
+	 * 
+	 * @return 
+	 */
+	public synchronized BufferedImage getBufferedImage() {
+		if (this.bImage == null) {
+			if (this.mat != null && !this.isInMemory()) {
+				// Decoded by OpenCV already, don't decode it a second time
+				this.bImage = OpenCV.getInstance().toBufferedImage(this.mat);
+			}
+			else {
+				this.bImage = this.getImage();
+			}
+			if (this.bImage != null) {
+				this.width = this.bImage.getWidth();
+				this.height = this.bImage.getHeight();
+			}
 		}
 		return this.bImage;
 	}
 	
-	public FImage getFImage() {
+	/**
+	 * Returns the image as grayscale FImage, don't modify it.
+	 * 
+	 * @return 
+	 */
+	public synchronized FImage getFImage() {
 		if (this.fImage == null) {
 			this.fImage = ImageUtilities.createFImage(this.getBufferedImage());
 		}
 		return this.fImage;
 	}
 	
-	public Mat getMat() {
+	/**
+	 * Returns the image as Mat, don't modify it.
+	 * 
+	 * @return 
+	 */
+	public synchronized Mat getMat() {
 		if (this.mat == null) {
-			this.mat = OpenCV.getInstance().toMat(this.getBufferedImage());
+			OpenCV cv = OpenCV.getInstance();
+			Mat decoded = null;
+			if (this.bImage == null && !this.isInMemory()) {
+				// Let OpenCV decode the file, which avoids converting the pixels
+				decoded = cv.readMat(this.getFile());
+			}
+			if (decoded == null) {
+				decoded = cv.toMat(this.getBufferedImage());
+			}
+			// The Mats are cached, so they must survive the scope they are created in
+			this.mat = MatScope.detach(decoded);
 		}
 		return this.mat;
 	}
 	
-	public int getWidth() {
-		return this.getBufferedImage().getWidth();
+	/**
+	 * Returns the image as grayscale Mat, don't modify it.
+	 * 
+	 * Might be the same Mat as returned by getMat() for grayscale images.
+	 * 
+	 * @return 
+	 */
+	public synchronized Mat getGrayMat() {
+		if (this.grayMat == null) {
+			this.grayMat = MatScope.detach(OpenCV.getInstance().toGrayscale(this.getMat()));
+		}
+		return this.grayMat;
+	}
+	
+	public synchronized int getWidth() {
+		if (this.width < 0) {
+			this.readDimensions();
+		}
+		return this.width;
+	}
+	
+	public synchronized int getHeight() {
+		if (this.height < 0) {
+			this.readDimensions();
+		}
+		return this.height;
+	}
+	
+	private void readDimensions() {
+		if (this.mat != null) {
+			this.width = this.mat.cols();
+			this.height = this.mat.rows();
+			return;
+		}
+		if (this.bImage == null && !this.isInMemory()) {
+			// Read the header only, there's no need to decode the whole image
+			try (ImageInputStream in = ImageIO.createImageInputStream(this.getFile())) {
+				Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+				if (readers != null && readers.hasNext()) {
+					ImageReader reader = readers.next();
+					try {
+						reader.setInput(in);
+						this.width = reader.getWidth(0);
+						this.height = reader.getHeight(0);
+						return;
+					} finally {
+						reader.dispose();
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		BufferedImage img = this.getBufferedImage();
+		this.width = img.getWidth();
+		this.height = img.getHeight();
 	}
 	
-	public int getHeight() {
-		return this.getBufferedImage().getHeight();
+	/**
+	 * Returns the output of the Inception network shared by the TensorFlow detectors.
+	 * 
+	 * @return the bottleneck or null if not computed yet
+	 * @see de.lutana.geodataextractor.detector.TensorFlowDualDetector
+	 */
+	public synchronized float[] getBottleneck() {
+		return this.bottleneck;
+	}
+	
+	public synchronized void setBottleneck(float[] bottleneck) {
+		this.bottleneck = bottleneck;
 	}
 	
 	public List<LineCandidate> getTextLines() {
 		if (this.textLines == null) {
-			StrokeWidthTransformTextDetector swt = new StrokeWidthTransformTextDetector(this);
-			this.textLines = swt.detectLines();
+			try (Timer.Sample sample = Metrics.time("cv.swt")) {
+				StrokeWidthTransformTextDetector swt = new StrokeWidthTransformTextDetector(this);
+				this.textLines = swt.detectLines();
+			}
 		}
 		return this.textLines;
 	}
@@ -63,36 +63,38 @@ public class GradientTextDetector extends CvTextDetector {
 	@Override
 	public List<Rect> detect() {
 		List<Rect> rectangles = new ArrayList<>();
-		
-		Mat gray = OpenCV.getInstance().toGrayscale(this.img.getMat());
-		// morphological gradient
-		Mat grad = new Mat();
-		Mat morphKernel = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(3, 3));
-		Imgproc.morphologyEx(gray, grad, Imgproc.MORPH_GRADIENT, morphKernel);
-		// binarize
-		Mat bw = new Mat();
-		Imgproc.threshold(grad, bw, 0.0, 255.0, Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);
-		// connect horizontally oriented regions
-		Mat connected = new Mat();
-		morphKernel = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(9, 1));
-		Imgproc.morphologyEx(bw, connected, Imgproc.MORPH_CLOSE, morphKernel);
-		// find contours
-		Mat mask = Mat.zeros(bw.size(), CvType.CV_8UC1);
-		Mat hierarchy = new Mat();
-		List<MatOfPoint> contours = new ArrayList<>();
-		Imgproc.findContours(connected, contours, hierarchy, Imgproc.RETR_CCOMP, Imgproc.CHAIN_APPROX_SIMPLE, new Point(0, 0));
-		// filter contours
-		for (int idx = 0; idx < contours.size(); idx++) {
-			Rect rect = Imgproc.boundingRect(contours.get(idx));
-			Mat maskROI = new Mat(mask, rect);
-			// fill the contour
-			Imgproc.drawContours(mask, contours, idx, new Scalar(255, 255, 255), Core.FILLED);
-			// ratio of non-zero pixels in the filled region
-			double r = (double) Core.countNonZero(maskROI) / (rect.width * rect.height);
+		try (MatScope scope = MatScope.open()) {
+			Mat gray = this.img.getGrayMat();
+			// morphological gradient
+			Mat grad = MatScope.create(gray.rows(), gray.cols(), gray.type());
+			Mat morphKernel = MatScope.track(Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(3, 3)));
+			Imgproc.morphologyEx(gray, grad, Imgproc.MORPH_GRADIENT, morphKernel);
+			// binarize
+			Mat bw = MatScope.create(gray.rows(), gray.cols(), CvType.CV_8UC1);
+			Imgproc.threshold(grad, bw, 0.0, 255.0, Imgproc.THRESH_BINARY | Imgproc.THRESH_OTSU);
+			// connect horizontally oriented regions
+			Mat connected = MatScope.create(gray.rows(), gray.cols(), CvType.CV_8UC1);
+			morphKernel = MatScope.track(Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(9, 1)));
+			Imgproc.morphologyEx(bw, connected, Imgproc.MORPH_CLOSE, morphKernel);
+			// find contours
+			Mat mask = MatScope.track(Mat.zeros(bw.size(), CvType.CV_8UC1));
+			Mat hierarchy = MatScope.track(new Mat());
+			List<MatOfPoint> contours = new ArrayList<>();
+			Imgproc.findContours(connected, contours, hierarchy, Imgproc.RETR_CCOMP, Imgproc.CHAIN_APPROX_SIMPLE, new Point(0, 0));
+			MatScope.trackAll(contours);
+			// filter contours
+			for (int idx = 0; idx < contours.size(); idx++) {
+				Rect rect = Imgproc.boundingRect(contours.get(idx));
+				Mat maskROI = MatScope.track(new Mat(mask, rect));
+				// fill the contour
+				Imgproc.drawContours(mask, contours, idx, new Scalar(255, 255, 255), Core.FILLED);
+				// ratio of non-zero pixels in the filled region
+				double r = (double) Core.countNonZero(maskROI) / (rect.width * rect.height);
 
-			// these two conditions alone are not very robust. better to use something like the number of significant peaks in a horizontal projection as a third condition
-			if (r > threshold && (rect.height > sizeConstraint.height && rect.width > sizeConstraint.width)) {
-				rectangles.add(rect);
+				// these two conditions alone are not very robust. better to use something like the number of significant peaks in a horizontal projection as a third condition
+				if (r > threshold && (rect.height > sizeConstraint.height && rect.width > sizeConstraint.width)) {
+					rectangles.add(rect);
+				}
 			}
 		}
 		return rectangles;
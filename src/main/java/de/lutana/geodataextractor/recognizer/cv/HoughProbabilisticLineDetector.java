@@ -35,7 +35,7 @@ public class HoughProbabilisticLineDetector extends CvLineDetector {
 	}
 	
 	public static List<LineSegment> detect(Mat mat, int pixelPrecision, double radeanPrecision, int threshold, double minLineLength, double maxLineGap) {
-		Mat lines = new Mat();
+		Mat lines = MatScope.track(new Mat());
 		Imgproc.HoughLinesP(mat, lines, pixelPrecision, radeanPrecision, threshold, minLineLength, maxLineGap);
 
 		List<LineSegment> list = new ArrayList<>();
@@ -101,9 +101,12 @@ public class HoughProbabilisticLineDetector extends CvLineDetector {
 	 */
 	@Override
 	public List<LineSegment> detect() {
-		Mat source = img.getMat();
-		Mat edges = OpenCV.getInstance().cannyAdaptive(source);
-		List<LineSegment> lines = detect(edges, pixelPrecision, radeanPrecision, threshold, minLineLength, maxLineGap);
+		List<LineSegment> lines;
+		try (MatScope scope = MatScope.open()) {
+			Mat source = img.getMat();
+			Mat edges = OpenCV.getInstance().cannyAdaptive(source);
+			lines = detect(edges, pixelPrecision, radeanPrecision, threshold, minLineLength, maxLineGap);
+		}
 		if (angleTolerance != null && distanceTolerance != null) {
 			mergeSimilarLines(lines, angleTolerance, distanceTolerance);
 		}
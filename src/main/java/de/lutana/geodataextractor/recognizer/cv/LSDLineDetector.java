@@ -25,20 +25,22 @@ public class LSDLineDetector extends CvLineDetector {
 	 * @return
 	 */
 	public List<LineSegment> detect() {
-		Mat gray = OpenCV.getInstance().toGrayscale(img.getMat());
-		MatOfFloat4 lines = new MatOfFloat4();
-		LineSegmentDetector lsd = Imgproc.createLineSegmentDetector();
-		lsd.detect(gray, lines);
-		List<LineSegment> list = new ArrayList<>();
-		for(int i = 0; i < lines.rows(); i++) {
-			double[] val = lines.get(i, 0);
-			LineSegment l = new LineSegment(val[0], val[1], val[2], val[3]);
-			if (l.getLength() >= minSize) {
-				list.add(l);
+		try (MatScope scope = MatScope.open()) {
+			Mat gray = img.getGrayMat();
+			MatOfFloat4 lines = MatScope.track(new MatOfFloat4());
+			LineSegmentDetector lsd = Imgproc.createLineSegmentDetector();
+			lsd.detect(gray, lines);
+			List<LineSegment> list = new ArrayList<>();
+			for(int i = 0; i < lines.rows(); i++) {
+				double[] val = lines.get(i, 0);
+				LineSegment l = new LineSegment(val[0], val[1], val[2], val[3]);
+				if (l.getLength() >= minSize) {
+					list.add(l);
+				}
 			}
-		}
 
-		return list;
+			return list;
+		}
 	}
 
 	/**
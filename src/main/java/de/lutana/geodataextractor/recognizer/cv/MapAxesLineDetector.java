@@ -19,6 +19,8 @@ import org.opencv.photo.Photo;
  */
 public class MapAxesLineDetector extends CvLineDetector {
 	
+	private static final int MAX_CLUSTER_SAMPLES = 100000;
+	
 	private final int dim;
 	
 	public MapAxesLineDetector(CvGraphic img) {
@@ -32,14 +34,15 @@ public class MapAxesLineDetector extends CvLineDetector {
 	 */
 	@Override
 	public List<LineSegment> detect() throws CvException {
+		try (MatScope scope = MatScope.open()) {
 			Mat src = this.img.getMat();
 			Mat dest;
 			if (src.channels() == 4) {
-				dest = new Mat();
+				dest = MatScope.create(src.rows(), src.cols(), CvType.CV_8UC3);
 				Imgproc.cvtColor(src, dest, Imgproc.COLOR_BGRA2BGR);
 			}
 			else {
-				dest = src.clone();
+				dest = MatScope.track(src.clone());
 			}
 
 			OpenCV cv = OpenCV.getInstance();
@@ -60,7 +63,7 @@ public class MapAxesLineDetector extends CvLineDetector {
 			dest = cv.cannyAdaptive(dest);
 
 			// Merge nearby edges
-			Mat structure = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(5, 5));
+			Mat structure = MatScope.track(Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(5, 5)));
 			Imgproc.dilate(dest, dest, structure, new Point(-1, -1), 1);
 
 			// Detect lines using HoughP Transform
@@ -73,12 +76,13 @@ public class MapAxesLineDetector extends CvLineDetector {
 			HoughProbabilisticLineDetector.mergeSimilarLines(lines, Math.PI / 36, dim); // PI / 36 = five degrees
 
 			return lines;
+		}
 	}
 	
 	public void removeText(Mat source) {
 		// create mask
 		List<Rect> boxes = img.getTextBoxes();
-		Mat mask = Mat.zeros(source.size(), CvType.CV_8UC1);
+		Mat mask = MatScope.track(Mat.zeros(source.size(), CvType.CV_8UC1));
 		for(Rect box : boxes) {
 			Imgproc.rectangle(mask, box.tl(), box.br(), new Scalar(255,255,255), Core.FILLED);
 		}
@@ -86,31 +90,68 @@ public class MapAxesLineDetector extends CvLineDetector {
 		Photo.inpaint(source, mask, source, 3, Photo.INPAINT_TELEA);
 	}
 	
+	/**
+	 * Reduces the colours of the image to k colours using k-means clustering.
+	 * 
+	 * The clusters are computed on a subsample of the pixels, afterwards
+	 * each pixel gets the colour of the nearest cluster center.
+	 * 
+	 * @param cutout
+	 * @param k
+	 * @return 
+	 */
 	public Mat cluster(Mat cutout, int k) {
-		Mat samples = cutout.reshape(1, cutout.cols() * cutout.rows());
-		Mat samples32f = new Mat();
-		samples.convertTo(samples32f, CvType.CV_32F, 1.0 / 255.0);
+		if (!cutout.isContinuous()) {
+			cutout = MatScope.track(cutout.clone());
+		}
+		int channels = cutout.channels();
+		int pixels = (int) cutout.total();
+		byte[] data = new byte[pixels * channels];
+		cutout.get(0, 0, data);
+
+		// Fit the clusters on a subsample, a fraction of the pixels represents the colours of a figure well enough
+		int step = Math.max(1, pixels / MAX_CLUSTER_SAMPLES);
+		int count = (pixels + step - 1) / step;
+		float[] samples = new float[count * channels];
+		for(int i = 0, s = 0; i < pixels; i += step) {
+			for(int c = 0; c < channels; c++) {
+				samples[s++] = (data[i * channels + c] & 0xFF) / 255f;
+			}
+		}
+		Mat samples32f = MatScope.track(new Mat(count, channels, CvType.CV_32F));
+		samples32f.put(0, 0, samples);
 		
-		Mat labels = new Mat();
+		Mat labels = MatScope.track(new Mat());
 		TermCriteria criteria = new TermCriteria(TermCriteria.COUNT, 100, 1);
-		Mat centers = new Mat();
+		Mat centers = MatScope.track(new Mat());
 		Core.kmeans(samples32f, k, labels, criteria, 1, Core.KMEANS_PP_CENTERS, centers);
 
-		centers.convertTo(centers, CvType.CV_8UC1, 255.0);
-		centers.reshape(3);
-
-		Mat newImg = new Mat(cutout.rows(), cutout.cols(), cutout.type());
-		int rows = 0;
-		for(int y = 0; y < cutout.rows(); y++) {
-			for(int x = 0; x < cutout.cols(); x++) {
-				int label = (int)labels.get(rows, 0)[0];
-				int r = (int)centers.get(label, 2)[0];
-				int g = (int)centers.get(label, 1)[0];
-				int b = (int)centers.get(label, 0)[0];
-				newImg.put(y, x, b, g, r);
-				rows++;
+		float[] center = new float[k * channels];
+		centers.get(0, 0, center);
+		byte[] colors = new byte[k * channels];
+		for(int i = 0; i < colors.length; i++) {
+			colors[i] = (byte) Math.max(0, Math.min(255, Math.rint(center[i] * 255)));
+		}
+
+		// Replace each pixel with the colour of the nearest cluster center
+		for(int i = 0; i < data.length; i += channels) {
+			int label = 0;
+			float minDist = Float.MAX_VALUE;
+			for(int l = 0; l < k; l++) {
+				float dist = 0;
+				for(int c = 0; c < channels; c++) {
+					float d = (data[i + c] & 0xFF) / 255f - center[l * channels + c];
+					dist += d * d;
+				}
+				if (dist < minDist) {
+					minDist = dist;
+					label = l;
+				}
 			}
+			System.arraycopy(colors, label * channels, data, i, channels);
 		}
+		Mat newImg = MatScope.create(cutout.rows(), cutout.cols(), cutout.type());
+		newImg.put(0, 0, data);
 		return newImg;
 	}
 
@@ -0,0 +1,188 @@
+package de.lutana.geodataextractor.recognizer.cv;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.opencv.core.Mat;
+
+/**
+ * Reuses the native buffers of Mats across figures.
+ * 
+ * Each thread has its own pool, so the locks are uncontended. Mats are
+ * pooled by size and type, which usually fits as most intermediate Mats
+ * have the size of the figure. The limit is shared by all threads, so the
+ * idle native memory doesn't grow with the number of threads. Mats that
+ * don't fit into the pool any longer are released. Use MatScope.create()
+ * to get Mats from the pool and clearAll() once the worker threads are done.
+ * 
+ * @author Matthias Mohr
+ */
+public class MatPool {
+	
+	private static final ThreadLocal<MatPool> pools = ThreadLocal.withInitial(MatPool::create);
+	// Pools of all threads, the pools of finished threads are removed by clearAll() and releaseFinished()
+	private static final Set<MatPool> all = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+	private static final AtomicLong totalSize = new AtomicLong();
+	private static volatile long limit = 64L * 1024 * 1024;
+	
+	private final Thread owner;
+	private final Map<String, Deque<Mat>> free;
+	private long size;
+	
+	private MatPool() {
+		this.owner = Thread.currentThread();
+		this.free = new HashMap<>();
+		this.size = 0;
+	}
+	
+	private static MatPool create() {
+		MatPool pool = new MatPool();
+		all.add(pool);
+		return pool;
+	}
+	
+	/**
+	 * @return the pool of the current thread
+	 */
+	public static MatPool get() {
+		return pools.get();
+	}
+	
+	/**
+	 * Sets the maximum size of the pooled buffers of all threads together.
+	 * 
+	 * @param bytes 0 to disable pooling
+	 */
+	public static void setLimit(long bytes) {
+		limit = bytes;
+	}
+	
+	public static long getLimit() {
+		return limit;
+	}
+	
+	/**
+	 * @return the size of the pooled buffers of all threads in bytes
+	 */
+	public static long getTotalSize() {
+		return totalSize.get();
+	}
+	
+	/**
+	 * Releases the pooled Mats of all threads, e.g. once the worker threads are shut down.
+	 */
+	public static void clearAll() {
+		for(MatPool pool : getPools()) {
+			pool.clear();
+			if (!pool.owner.isAlive()) {
+				all.remove(pool);
+			}
+		}
+	}
+	
+	/**
+	 * Releases the pools of threads that have finished, their Mats can't be reused any longer.
+	 */
+	private static void releaseFinished() {
+		for(MatPool pool : getPools()) {
+			if (!pool.owner.isAlive()) {
+				pool.clear();
+				all.remove(pool);
+			}
+		}
+	}
+	
+	private static List<MatPool> getPools() {
+		synchronized(all) {
+			return new ArrayList<>(all);
+		}
+	}
+	
+	private static String getKey(int rows, int cols, int type) {
+		return rows + "x" + cols + ":" + type;
+	}
+	
+	private static long getBytes(Mat mat) {
+		return mat.total() * mat.elemSize();
+	}
+	
+	/**
+	 * Returns a pooled Mat or creates a new one.
+	 * 
+	 * @param rows
+	 * @param cols
+	 * @param type
+	 * @return 
+	 */
+	public synchronized Mat take(int rows, int cols, int type) {
+		Deque<Mat> mats = this.free.get(getKey(rows, cols, type));
+		if (mats != null && !mats.isEmpty()) {
+			Mat mat = mats.pop();
+			long bytes = getBytes(mat);
+			this.size -= bytes;
+			totalSize.addAndGet(-bytes);
+			return mat;
+		}
+		return new Mat(rows, cols, type);
+	}
+	
+	/**
+	 * Gives a Mat back to the pool, it must not be used afterwards.
+	 * 
+	 * @param mat 
+	 */
+	public synchronized void recycle(Mat mat) {
+		// OpenCV might have replaced the buffer if it was used as destination for another size
+		if (mat.empty() || !mat.isContinuous() || mat.dims() != 2) {
+			mat.release();
+			return;
+		}
+		long bytes = getBytes(mat);
+		if (bytes > limit) {
+			mat.release();
+			return;
+		}
+		if (totalSize.get() + bytes > limit) {
+			// Buffers of the current figure are more likely to be reused than old ones
+			this.clear();
+			releaseFinished();
+			if (totalSize.get() + bytes > limit) {
+				// The other threads use the budget
+				mat.release();
+				return;
+			}
+		}
+		this.free.computeIfAbsent(getKey(mat.rows(), mat.cols(), mat.type()), k -> new ArrayDeque<>()).push(mat);
+		this.size += bytes;
+		totalSize.addAndGet(bytes);
+	}
+	
+	/**
+	 * @return the size of the pooled buffers in bytes
+	 */
+	public synchronized long getSize() {
+		return this.size;
+	}
+	
+	/**
+	 * Releases all pooled Mats of this pool.
+	 */
+	public synchronized void clear() {
+		for(Deque<Mat> mats : this.free.values()) {
+			for(Mat mat : mats) {
+				mat.release();
+			}
+		}
+		this.free.clear();
+		totalSize.addAndGet(-this.size);
+		this.size = 0;
+	}
+	
+}
@@ -0,0 +1,152 @@
+package de.lutana.geodataextractor.recognizer.cv;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import org.opencv.core.Mat;
+
+/**
+ * Releases the native memory of all Mats created within a block.
+ * 
+ * Mats are tiny Java objects holding large native buffers, so the garbage
+ * collector doesn't feel the need to collect them. Therefore all temporary
+ * Mats should be released once they are not needed any longer:
+ * 
+ * <pre>
+ * try (MatScope scope = MatScope.open()) {
+ *     Mat gray = MatScope.create(rows, cols, CvType.CV_8UC1);
+ *     Mat edges = MatScope.track(new Mat());
+ *     ...
+ * }
+ * </pre>
+ * 
+ * Scopes are bound to the thread that opened them and can be nested, Mats are
+ * added to the innermost scope. Without an open scope tracking does nothing,
+ * so code using the scopes also works without them.
+ * Mats created by create() are given back to the MatPool of the thread
+ * instead of being released.
+ * 
+ * @author Matthias Mohr
+ */
+public final class MatScope implements AutoCloseable {
+	
+	private static final ThreadLocal<Deque<MatScope>> scopes = ThreadLocal.withInitial(ArrayDeque::new);
+	
+	private final Set<Mat> mats;
+	private final Set<Mat> pooled;
+	
+	private MatScope() {
+		this.mats = Collections.newSetFromMap(new IdentityHashMap<>());
+		this.pooled = Collections.newSetFromMap(new IdentityHashMap<>());
+	}
+	
+	/**
+	 * Opens a new scope for the current thread.
+	 * 
+	 * @return 
+	 */
+	public static MatScope open() {
+		MatScope scope = new MatScope();
+		scopes.get().push(scope);
+		return scope;
+	}
+	
+	private static MatScope current() {
+		return scopes.get().peek();
+	}
+	
+	/**
+	 * Adds the Mat to the current scope.
+	 * 
+	 * @param <T>
+	 * @param mat
+	 * @return The given Mat
+	 */
+	public static <T extends Mat> T track(T mat) {
+		MatScope scope = current();
+		if (scope != null && mat != null && !scope.pooled.contains(mat)) {
+			scope.mats.add(mat);
+		}
+		return mat;
+	}
+	
+	/**
+	 * Adds all Mats to the current scope, e.g. contours.
+	 * 
+	 * @param <T>
+	 * @param mats
+	 * @return The given Mats
+	 */
+	public static <T extends Collection<? extends Mat>> T trackAll(T mats) {
+		for(Mat mat : mats) {
+			track(mat);
+		}
+		return mats;
+	}
+	
+	/**
+	 * Returns a Mat of the given size and type from the pool of the current thread.
+	 * 
+	 * The content of the Mat is undefined, so it should only be used as destination.
+	 * Without an open scope a new Mat is created.
+	 * 
+	 * @param rows
+	 * @param cols
+	 * @param type
+	 * @return 
+	 */
+	public static Mat create(int rows, int cols, int type) {
+		MatScope scope = current();
+		if (scope == null) {
+			return new Mat(rows, cols, type);
+		}
+		Mat mat = MatPool.get().take(rows, cols, type);
+		scope.pooled.add(mat);
+		return mat;
+	}
+	
+	/**
+	 * Removes the Mat from all scopes of the current thread, e.g. to cache it.
+	 * 
+	 * The caller is responsible for releasing the Mat.
+	 * 
+	 * @param <T>
+	 * @param mat
+	 * @return The given Mat
+	 */
+	public static <T extends Mat> T detach(T mat) {
+		for(MatScope scope : scopes.get()) {
+			scope.mats.remove(mat);
+			scope.pooled.remove(mat);
+		}
+		return mat;
+	}
+	
+	/**
+	 * @return the number of Mats in this scope
+	 */
+	public int size() {
+		return this.mats.size() + this.pooled.size();
+	}
+
+	/**
+	 * Releases all Mats of the scope and closes it.
+	 */
+	@Override
+	public void close() {
+		scopes.get().remove(this);
+		MatPool pool = MatPool.get();
+		for(Mat mat : this.pooled) {
+			pool.recycle(mat);
+		}
+		for(Mat mat : this.mats) {
+			mat.release();
+		}
+		this.pooled.clear();
+		this.mats.clear();
+	}
+	
+}
@@ -48,13 +48,14 @@ public class MorphologicalLineDetector extends CvLineDetector {
 	public List<LineSegment> detect() {
 		OpenCV cv = OpenCV.getInstance();
 
-		// Convert to black and white image
-		Mat bw = cv.toMonotoneAdaptive(this.img.getMat(), true);
-
 		List<LineSegment> lines = new ArrayList<>();
-		this.getLines(bw, OpenCV.MorphologicalDirection.HORIZONTAL, lines);
-		this.getLines(bw, OpenCV.MorphologicalDirection.VERTICAL, lines);
-		
+		try (MatScope scope = MatScope.open()) {
+			// Convert to black and white image
+			Mat bw = cv.toMonotoneAdaptive(this.img.getMat(), true);
+
+			this.getLines(bw, OpenCV.MorphologicalDirection.HORIZONTAL, lines);
+			this.getLines(bw, OpenCV.MorphologicalDirection.VERTICAL, lines);
+		}
 		return lines;
 	}
 	
@@ -65,14 +66,15 @@ public class MorphologicalLineDetector extends CvLineDetector {
 	
 	private void extractLines(Mat srcImg, OpenCV.MorphologicalDirection direction, List<LineSegment> list) throws IllegalArgumentException {
 		// Find external contour
-		Mat hierarchy = new Mat();
+		Mat hierarchy = MatScope.track(new Mat());
 		List<MatOfPoint> contours = new ArrayList<>();
 		Imgproc.findContours(srcImg, contours, hierarchy, Imgproc.RETR_CCOMP,Imgproc.CHAIN_APPROX_SIMPLE, new Point(0, 0));
+		MatScope.trackAll(contours);
 
 		for(MatOfPoint c : contours) {
 			// Get Polygon
-			MatOfPoint2f contour = new MatOfPoint2f(c.toArray());
-			MatOfPoint2f contour_poly = new MatOfPoint2f();
+			MatOfPoint2f contour = MatScope.track(new MatOfPoint2f(c.toArray()));
+			MatOfPoint2f contour_poly = MatScope.track(new MatOfPoint2f());
 			Imgproc.approxPolyDP(contour, contour_poly, 3d, false); // TODO: Check params
 			
 			double length = Imgproc.arcLength(contour, true);
@@ -82,7 +84,7 @@ public class MorphologicalLineDetector extends CvLineDetector {
 			}
 			
 			// Get bounding rectangle for each polygon
-			Rect rect = Imgproc.boundingRect(new MatOfPoint(contour_poly.toArray()));
+			Rect rect = Imgproc.boundingRect(MatScope.track(new MatOfPoint(contour_poly.toArray())));
 			// The found contour is too large to be a useful line
 			if (rect.area() > srcImg.size().area() / 100) {
 				continue;
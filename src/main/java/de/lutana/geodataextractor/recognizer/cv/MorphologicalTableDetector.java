@@ -38,15 +38,19 @@ public class MorphologicalTableDetector extends CvTableDetector {
 	@Override
 	public List<Rect> detect() {
 		List<Rect> rectangles = new ArrayList<>();
-		rectangles.addAll(this.detectTablesWithBorders());
-		rectangles.addAll(this.detectTablesWithGhostBorders());
+		try (MatScope scope = MatScope.open()) {
+			rectangles.addAll(this.detectTablesWithBorders());
+		}
+		try (MatScope scope = MatScope.open()) {
+			rectangles.addAll(this.detectTablesWithGhostBorders());
+		}
 		return rectangles;
 	}
 	
 	public List<Rect> detectTablesWithGhostBorders() {
 		OpenCV cv = OpenCV.getInstance();
 
-		Mat gray = cv.toGrayscale(this.img.getMat());
+		Mat gray = MatScope.track(this.img.getGrayMat().clone());
 
 		// Convert to black and white image
 		Imgproc.adaptiveThreshold(gray, gray, 255, Imgproc.ADAPTIVE_THRESH_MEAN_C, Imgproc.THRESH_BINARY, 15, -2);
@@ -60,7 +64,7 @@ public class MorphologicalTableDetector extends CvTableDetector {
 	public List<Rect> detectTablesWithBorders() {
 		OpenCV cv = OpenCV.getInstance();
 
-		Mat gray = cv.toGrayscale(this.img.getMat());
+		Mat gray = MatScope.track(this.img.getGrayMat().clone());
 		Core.bitwise_not(gray, gray);
 
 		// Convert to black and white image
@@ -82,17 +86,18 @@ public class MorphologicalTableDetector extends CvTableDetector {
 		vertical = cv.closeGaps(vertical, this.minCellSize, Imgproc.MORPH_RECT);
 
 		// create a mask which includes the tables
-		Mat mask = new Mat();
+		Mat mask = MatScope.create(image.rows(), image.cols(), image.type());
 		Core.bitwise_or(horizontal, vertical, mask);
 
 		// find the joints between the lines of the tables, we will use this information in order to descriminate tables from pictures (tables will contain more than 4 joints while a picture only 4 (i.e. at the corners))
-		Mat joints = new Mat();
+		Mat joints = MatScope.create(image.rows(), image.cols(), image.type());
 		Core.bitwise_and(horizontal, vertical, joints);
 
 		// Find external contours from the mask, which most probably will belong to tables or to images
-		Mat hierarchy = new Mat();
+		Mat hierarchy = MatScope.track(new Mat());
 		List<MatOfPoint> contours = new ArrayList<>();
 		Imgproc.findContours(mask, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE, new Point(0, 0));
+		MatScope.trackAll(contours);
 
 		for(MatOfPoint c : contours) {
 			// find the area of each contour
@@ -103,17 +108,18 @@ public class MorphologicalTableDetector extends CvTableDetector {
 				continue;
 			}
 
-			MatOfPoint2f contour = new MatOfPoint2f(c.toArray());
-			MatOfPoint2f contours_poly = new MatOfPoint2f();
+			MatOfPoint2f contour = MatScope.track(new MatOfPoint2f(c.toArray()));
+			MatOfPoint2f contours_poly = MatScope.track(new MatOfPoint2f());
 			Imgproc.approxPolyDP(contour, contours_poly, 3d, true);
-			Rect boundRect = Imgproc.boundingRect(new MatOfPoint(contours_poly.toArray()));
+			Rect boundRect = Imgproc.boundingRect(MatScope.track(new MatOfPoint(contours_poly.toArray())));
 
 			// find the number of joints that each table has
-			Mat roi = joints.submat(boundRect);
+			Mat roi = MatScope.track(joints.submat(boundRect));
 
-			Mat joints_hierarchy = new Mat();
+			Mat joints_hierarchy = MatScope.track(new Mat());
 			List<MatOfPoint> joints_contours = new ArrayList<>();
 			Imgproc.findContours(roi, joints_contours, joints_hierarchy, Imgproc.RETR_CCOMP, Imgproc.CHAIN_APPROX_SIMPLE);
+			MatScope.trackAll(joints_contours);
 
 			// if the number is lower than 12 it's most likely not a table (at least 2x3 table expected)
 			if(joints_contours.size() < 12)
@@ -3,27 +3,28 @@ package de.lutana.geodataextractor.recognizer.cv;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.DataBufferByte;
-import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.WritableRaster;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfInt;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
-import org.slf4j.LoggerFactory;
 
 public class OpenCV {
 
 	private static OpenCV instance = null;
 	private JImageFrame debugWindow;
 
-	public static OpenCV getInstance() {
+	public static synchronized OpenCV getInstance() {
 		if (instance == null) {
 			instance = new OpenCV();
 		}
@@ -41,15 +42,15 @@ public class OpenCV {
 	}
 	
 	public Mat sharpenGaussian(Mat source) {
-        Mat destination = new Mat(source.rows(), source.cols(), source.type());
+		Mat destination = MatScope.create(source.rows(), source.cols(), source.type());
 		Imgproc.GaussianBlur(source, destination, new Size(0,0), 10);
 		Core.addWeighted(source, 1.5, destination, -0.5, 0, destination);
 		return destination;
 	}
 	
 	public Mat closeGaps(Mat source, Size size, int shape) {
-		Mat dest = new Mat(source.rows(), source.cols(), source.type());
-		Mat structure = Imgproc.getStructuringElement(shape, size);
+		Mat dest = MatScope.create(source.rows(), source.cols(), source.type());
+		Mat structure = MatScope.track(Imgproc.getStructuringElement(shape, size));
 		Imgproc.dilate(source, dest, structure, new Point(-1, -1), 1);
 		Imgproc.erode(dest, dest, structure, new Point(-1, -1), 1);
 		return dest;
@@ -67,7 +68,7 @@ public class OpenCV {
 	}
 	
 	public Mat createLineMask(Mat srcImg, MorphologicalDirection direction, int scale) {
-		Mat resultImg = srcImg.clone();
+		Mat resultImg = MatScope.track(srcImg.clone());
 
 		// Specify size on axis
 		Size size;
@@ -79,7 +80,7 @@ public class OpenCV {
 		}
 
 		// Create structure element for extracting horizontal lines through morphology operations
-		Mat structure = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, size);
+		Mat structure = MatScope.track(Imgproc.getStructuringElement(Imgproc.MORPH_RECT, size));
 
 		// Apply morphology operation
 		Imgproc.erode(resultImg, resultImg, structure, new Point(-1, -1), 1);
@@ -96,41 +97,58 @@ public class OpenCV {
 	 */
 	public Mat cannyAdaptive(Mat source) {
 		Mat gray = toGrayscale(source);
+		if (gray == source) {
+			gray = MatScope.track(source.clone());
+		}
 		Imgproc.blur(gray, gray, new Size(5,5));
-		double CannyAccThresh = Imgproc.threshold(gray, new Mat(), 0, 255, Imgproc.THRESH_OTSU);
-		Mat edges = new Mat();
+		double CannyAccThresh = Imgproc.threshold(gray, MatScope.create(gray.rows(), gray.cols(), gray.type()), 0, 255, Imgproc.THRESH_OTSU);
+		Mat edges = MatScope.create(gray.rows(), gray.cols(), CvType.CV_8UC1);
 		Imgproc.Canny(gray, edges, 0.1*CannyAccThresh, CannyAccThresh);
 		return edges;
 	}
 	
 	public Mat toMonotoneAdaptive(Mat source, boolean inverse) {
 		Mat dest = toGrayscale(source);
+		if (dest == source) {
+			dest = MatScope.track(source.clone());
+		}
 		Imgproc.medianBlur(dest, dest, 5);
 		Imgproc.adaptiveThreshold(dest, dest, 255, Imgproc.ADAPTIVE_THRESH_GAUSSIAN_C, inverse ? Imgproc.THRESH_BINARY_INV : Imgproc.THRESH_BINARY, 9, 0);
 		return dest;
 	}
 
 	public Mat toMonotoneCustom(Mat source, boolean inverse) {
-		Mat img = source.clone();
+		Mat img = MatScope.track(source.clone());
 		
 		if (source.channels() >= 3) {
-			final double[] white = new double[] {255,255,255};
-
-			for (int y = 0; y < img.rows(); ++y) {
-				for (int x = 0; x < img.cols(); ++x) {
-					double[] bgr = img.get(y, x);
-					if (bgr[0] != 0 && bgr[1] != 0 && bgr[2] != 0) {
-						double r = bgr[2] / 25;
-						double g = bgr[1] / 25;
-						double b = bgr[0] / 25;
-						if (r > 3 || g > 3 || b > 3) {
-							img.put(y, x, white);
-						} else if (r != g || g != b || b != r) {
-							img.put(y, x, white);
-						}
-					}
-				}
+			// Make everything white except black and dark gray pixels
+			List<Mat> channels = new ArrayList<>();
+			Core.split(img, channels);
+			MatScope.trackAll(channels);
+			Mat b = channels.get(0);
+			Mat g = channels.get(1);
+			Mat r = channels.get(2);
+			// Pixels with a channel being 0 are kept
+			Mat mask = MatScope.create(img.rows(), img.cols(), CvType.CV_8UC1);
+			Mat temp = MatScope.create(img.rows(), img.cols(), CvType.CV_8UC1);
+			Core.min(b, g, mask);
+			Core.min(mask, r, mask);
+			Core.compare(mask, Scalar.all(0), mask, Core.CMP_NE);
+			// Replace pixels that are bright (a channel above 75) or colored (channels differ)
+			Mat replace = MatScope.create(img.rows(), img.cols(), CvType.CV_8UC1);
+			Core.max(b, g, replace);
+			Core.max(replace, r, replace);
+			Core.compare(replace, Scalar.all(75), replace, Core.CMP_GT);
+			Core.compare(b, g, temp, Core.CMP_NE);
+			Core.bitwise_or(replace, temp, replace);
+			Core.compare(g, r, temp, Core.CMP_NE);
+			Core.bitwise_or(replace, temp, replace);
+			Core.bitwise_and(mask, replace, mask);
+			// Alpha channels are not changed
+			for(int i = 0; i < 3; i++) {
+				channels.get(i).setTo(Scalar.all(255), mask);
 			}
+			Core.merge(channels, img);
 		}
 
 		img = toGrayscale(img);
@@ -147,7 +165,7 @@ public class OpenCV {
 	public Mat toGrayscale(Mat srcImg) {
 		int channels = srcImg.channels();
 		if (channels >= 3) {
-			Mat gray = new Mat();
+			Mat gray = MatScope.create(srcImg.rows(), srcImg.cols(), CvType.CV_8UC1);
 			Imgproc.cvtColor(srcImg, gray, channels == 4 ? Imgproc.COLOR_BGRA2GRAY : Imgproc.COLOR_BGR2GRAY);
 			return gray;
 		} else {
@@ -156,87 +174,97 @@ public class OpenCV {
 	}
 
 	/**
+	 * Converts the image to a Mat, color images are converted to CV_8UC3 (BGR).
+	 * 
+	 * The pixels are copied once. Only images stored as bytes in the order
+	 * used by OpenCV are passed through directly, all other images are
+	 * converted while copying. Alpha channels are dropped.
 	 *
 	 * @param bi
 	 * @return
-	 * @see
-	 * https://stackoverflow.com/questions/33403526/how-to-match-the-color-models-of-bufferedimage-and-mat
 	 */
 	public Mat toMat(BufferedImage bi) {
-		int curCVtype = CvType.CV_8UC4; //Default type
-		boolean supportedType = true;
+		int width = bi.getWidth();
+		int height = bi.getHeight();
+		WritableRaster raster = bi.getRaster();
+		// Sub images share the buffer of their parent, so the buffer can't be used directly
+		boolean direct = raster.getParent() == null && raster.getDataBuffer().getNumBanks() == 1;
 
-		switch (bi.getType()) {
-			case BufferedImage.TYPE_3BYTE_BGR:
-				curCVtype = CvType.CV_8UC3;
-				break;
-			case BufferedImage.TYPE_BYTE_GRAY:
-			case BufferedImage.TYPE_BYTE_BINARY:
-				curCVtype = CvType.CV_8UC1;
-				break;
-			case BufferedImage.TYPE_INT_BGR:
-			case BufferedImage.TYPE_INT_RGB:
-				curCVtype = CvType.CV_32SC3;
-				break;
-			case BufferedImage.TYPE_INT_ARGB:
-			case BufferedImage.TYPE_INT_ARGB_PRE:
-				curCVtype = CvType.CV_32SC4;
-				break;
-			case BufferedImage.TYPE_USHORT_GRAY:
-				curCVtype = CvType.CV_16UC1;
-				break;
-			case BufferedImage.TYPE_4BYTE_ABGR:
-			case BufferedImage.TYPE_4BYTE_ABGR_PRE:
-				curCVtype = CvType.CV_8UC4;
-				break;
-			default:
-				// BufferedImage.TYPE_BYTE_INDEXED;
-				// BufferedImage.TYPE_CUSTOM;
-				LoggerFactory.getLogger(getClass()).warn("Unsupported format:" + bi.getType());
-				supportedType = false;
+		Mat mat;
+		if (direct && bi.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+			mat = MatScope.track(new Mat(height, width, CvType.CV_8UC3));
+			mat.put(0, 0, ((DataBufferByte) raster.getDataBuffer()).getData());
 		}
-
-		//Convert to Mat
-		Mat mat = new Mat(bi.getHeight(), bi.getWidth(), curCVtype);
-		if (supportedType) {
-			// Insert pixel buffer directly
-			byte[] pixels = ((DataBufferByte) bi.getRaster().getDataBuffer()).getData();
-			mat.put(0, 0, pixels);
-		} else {
-			// Convert to RGB first
-			int height = bi.getHeight();
-			int width = bi.getWidth();
-			int[] pixels = bi.getRGB(0, 0, width - 1, height - 1, null, 0, width);
-
-			// Convert ints to bytes
-			ByteBuffer byteBuffer = ByteBuffer.allocate(pixels.length * 4);
-			IntBuffer intBuffer = byteBuffer.asIntBuffer();
-			intBuffer.put(pixels);
-
-			byte[] pixelBytes = byteBuffer.array();
-
-			mat.put(0, 0, pixelBytes);
-
-			// Reorder the channels for Opencv BGRA format from
-			// BufferedImage ARGB format
-			Mat imgMix = mat.clone();
-			ArrayList<Mat> imgSrc = new ArrayList<>();
-			imgSrc.add(imgMix);
-
-			ArrayList<Mat> imgDest = new ArrayList<>();
-			imgDest.add(mat);
-
-			int[] fromTo = {0, 3, 1, 2, 2, 1, 3, 0}; //Each pair is a channel swap
-			Core.mixChannels(imgSrc, imgDest, new MatOfInt(fromTo));
+		else if (direct && bi.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+			mat = MatScope.track(new Mat(height, width, CvType.CV_8UC1));
+			mat.put(0, 0, ((DataBufferByte) raster.getDataBuffer()).getData());
+		}
+		else if (direct && bi.getType() == BufferedImage.TYPE_USHORT_GRAY) {
+			mat = MatScope.track(new Mat(height, width, CvType.CV_16UC1));
+			mat.put(0, 0, ((DataBufferUShort) raster.getDataBuffer()).getData());
+		}
+		else if (direct && bi.getType() == BufferedImage.TYPE_4BYTE_ABGR) {
+			byte[] abgr = ((DataBufferByte) raster.getDataBuffer()).getData();
+			byte[] bgr = new byte[width * height * 3];
+			for(int i = 0, j = 0; j < bgr.length; i += 4, j += 3) {
+				bgr[j] = abgr[i + 1];
+				bgr[j + 1] = abgr[i + 2];
+				bgr[j + 2] = abgr[i + 3];
+			}
+			mat = MatScope.track(new Mat(height, width, CvType.CV_8UC3));
+			mat.put(0, 0, bgr);
+		}
+		else if (direct && (bi.getType() == BufferedImage.TYPE_INT_RGB || bi.getType() == BufferedImage.TYPE_INT_ARGB || bi.getType() == BufferedImage.TYPE_INT_BGR)) {
+			int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+			mat = MatScope.track(new Mat(height, width, CvType.CV_8UC3));
+			mat.put(0, 0, toBgr(pixels, pixels.length, bi.getType() == BufferedImage.TYPE_INT_BGR));
+		}
+		else {
+			// Everything else (indexed, binary, premultiplied, custom and sub images) is converted by Java2D row by row
+			mat = MatScope.track(new Mat(height, width, CvType.CV_8UC3));
+			int[] row = new int[width];
+			for(int y = 0; y < height; y++) {
+				bi.getRGB(0, y, width, 1, row, 0, width);
+				mat.put(y, 0, toBgr(row, width, false));
+			}
 		}
 		return mat;
 	}
+	
+	private static byte[] toBgr(int[] pixels, int length, boolean swap) {
+		byte[] bgr = new byte[length * 3];
+		for(int i = 0, j = 0; i < length; i++, j += 3) {
+			int p = pixels[i];
+			byte r = (byte) (p >> 16);
+			byte g = (byte) (p >> 8);
+			byte b = (byte) p;
+			bgr[j] = swap ? r : b;
+			bgr[j + 1] = g;
+			bgr[j + 2] = swap ? b : r;
+		}
+		return bgr;
+	}
+	
+	/**
+	 * Decodes the file directly into a Mat, color images are decoded to CV_8UC3 (BGR).
+	 * 
+	 * @param file
+	 * @return The Mat or null if the file can't be decoded by OpenCV.
+	 */
+	public Mat readMat(File file) {
+		Mat mat = Imgcodecs.imread(file.getAbsolutePath(), Imgcodecs.IMREAD_COLOR);
+		if (mat.empty()) {
+			mat.release();
+			return null;
+		}
+		return MatScope.track(mat);
+	}
 
 	public void showImage(BufferedImage bImage) {
 		this.showImage(bImage, "");
 	}
 
-	public void showImage(BufferedImage bImage, String title) {
+	public synchronized void showImage(BufferedImage bImage, String title) {
 		// Clone image
 		ColorModel cm = bImage.getColorModel();
 		BufferedImage bImage2 = new BufferedImage(cm, bImage.copyData(null), cm.isAlphaPremultiplied(), null);
@@ -277,9 +305,10 @@ public class OpenCV {
 	/**
 	 * Convert Mat to BufferedImage.
 	 *
-	 * According to
-	 * http://answers.opencv.org/question/10344/opencv-java-load-image-to-gui/
-	 * this is pretty fast.
+	 * Supported are the types created by toMat() (CV_8UC1, CV_8UC3, CV_16UC1),
+	 * CV_8UC4 and for debugging CV_32F (0-1) and CV_32S with 1, 3 or 4 channels.
+	 * CV_32S values are saturated to 0-255, they are not multiplied by 255 any
+	 * longer. Alpha channels are dropped.
 	 *
 	 * @param m
 	 * @return
@@ -287,45 +316,65 @@ public class OpenCV {
 	public BufferedImage toBufferedImage(Mat m) {
 		int mType = m.type();
 		int biType;
-		int convertTo = -1;
+		Mat temp = null;
 		if (mType == CvType.CV_8UC3) {
 			biType = BufferedImage.TYPE_3BYTE_BGR;
 		}
 		else if (mType == CvType.CV_8UC1) {
 			biType = BufferedImage.TYPE_BYTE_GRAY;
 		}
+		else if (mType == CvType.CV_16UC1) {
+			biType = BufferedImage.TYPE_USHORT_GRAY;
+		}
+		else if (mType == CvType.CV_8UC4) {
+			biType = BufferedImage.TYPE_3BYTE_BGR;
+			temp = new Mat();
+			Imgproc.cvtColor(m, temp, Imgproc.COLOR_BGRA2BGR);
+		}
 		else if (mType == CvType.CV_32F) {
 			biType = BufferedImage.TYPE_BYTE_GRAY;
-			convertTo = CvType.CV_8UC1;
+			temp = new Mat();
+			m.convertTo(temp, CvType.CV_8UC1, 255);
 		}
 		else if (mType == CvType.CV_32SC1) {
 			biType = BufferedImage.TYPE_BYTE_GRAY;
-			convertTo = CvType.CV_8UC1;
+			temp = new Mat();
+			m.convertTo(temp, CvType.CV_8UC1);
 		}
 		else if (mType == CvType.CV_32SC3) {
-			biType = BufferedImage.TYPE_INT_RGB;
-			convertTo = CvType.CV_8UC3;
+			biType = BufferedImage.TYPE_3BYTE_BGR;
+			temp = new Mat();
+			m.convertTo(temp, CvType.CV_8UC3);
 		}
 		else if (mType == CvType.CV_32SC4) {
-			biType = BufferedImage.TYPE_INT_ARGB;
-			convertTo = CvType.CV_8UC3;
+			biType = BufferedImage.TYPE_3BYTE_BGR;
+			Mat bgra = new Mat();
+			m.convertTo(bgra, CvType.CV_8UC4);
+			temp = new Mat();
+			Imgproc.cvtColor(bgra, temp, Imgproc.COLOR_BGRA2BGR);
+			bgra.release();
 		}
 		else {
 			throw new UnsupportedOperationException(String.format("Unsupported Mat type %d, channels %d, depth %d", m.type(), m.channels(), m.depth()));
 		}
-		
-		if (convertTo != -1) {
-			Mat temp = new Mat();
-			m.convertTo(temp, convertTo, 255);
+		if (temp == null && !m.isContinuous()) {
+			temp = m.clone();
+		}
+		if (temp != null) {
 			m = temp;
 		}
 
-		int bufferSize = m.channels() * m.cols() * m.rows();
-		byte[] b = new byte[bufferSize];
-		m.get(0, 0, b); // get all the pixels
+		// Copy the pixels directly into the buffer of the image
 		BufferedImage image = new BufferedImage(m.cols(), m.rows(), biType);
-		final byte[] targetPixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
-		System.arraycopy(b, 0, targetPixels, 0, b.length);
+		if (biType == BufferedImage.TYPE_USHORT_GRAY) {
+			m.get(0, 0, ((DataBufferUShort) image.getRaster().getDataBuffer()).getData());
+		}
+		else {
+			m.get(0, 0, ((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+		}
+		if (temp != null) {
+			temp.release();
+		}
 		return image;
 	}
 	
@@ -5,6 +5,8 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Map;
+import java.util.WeakHashMap;
 import net.sourceforge.tess4j.ITessAPI;
 import net.sourceforge.tess4j.TessAPI;
 import net.sourceforge.tess4j.Tesseract;
@@ -28,26 +30,60 @@ public class TesseractOCR extends Tesseract {
 	
 	public static File dataFolder = null;
 
-	private static TesseractOCR instance = null;
+	// Tess4J's Tesseract isn't thread-safe and the OCR settings are changed per request, so every thread gets its own engine.
+	// Not a ThreadLocal, so that the engines of all threads can be released at once. Engines of finished threads are dropped by the GC.
+	private static final Map<Thread, TesseractOCR> instances = new WeakHashMap<>();
 	
+	/**
+	 * Returns the OCR engine for the current thread.
+	 * 
+	 * @return 
+	 */
 	public static TesseractOCR getInstance() {
-		if (instance == null) {
-			instance = new TesseractOCR();
+		Thread thread = Thread.currentThread();
+		synchronized (instances) {
+			TesseractOCR ocr = instances.get(thread);
+			if (ocr != null) {
+				return ocr;
+			}
+		}
+		// Created outside of the lock, the engine runs a test OCR to choose the mode
+		TesseractOCR ocr = new TesseractOCR();
+		ocr.setDatapath(getDataFolder().getAbsolutePath());
+		ocr.setOcrEngineMode(Config.isOcrFastModeEnabled());
+		synchronized (instances) {
+			instances.put(thread, ocr);
+		}
+		return ocr;
+	}
+	
+	/**
+	 * Drops the engines of all threads, new engines are created on the next request.
+	 * 
+	 * Engines that are in use right now can still be used until the OCR is finished.
+	 */
+	public static void releaseAll() {
+		synchronized (instances) {
+			instances.clear();
+		}
+	}
+	
+	private static synchronized File getDataFolder() {
+		if (dataFolder == null) {
 			// Extract language data and copy custom rules
-			dataFolder = LoadLibs.extractTessResources("tessdata"); // Maven build bundles English data
-			extractCustomTessResources(dataFolder);
-			instance.setDatapath(dataFolder.getAbsolutePath());
-			instance.setOcrEngineMode(Config.isOcrFastModeEnabled());
+			File folder = LoadLibs.extractTessResources("tessdata"); // Maven build bundles English data
+			extractCustomTessResources(folder);
+			dataFolder = folder;
 		}
-		return instance;
+		return dataFolder;
 	}
 	
 	private void setDefaults() {
-		instance.setPageSegMode(TessAPI.TessPageSegMode.PSM_SINGLE_LINE);
+		this.setPageSegMode(TessAPI.TessPageSegMode.PSM_SINGLE_LINE);
 		// Avoid word list/dictionaries as geonaames and coordinates are not in those lists
-		instance.setTessVariable("load_system_dawg", "false");
-		instance.setTessVariable("load_freq_dawg", "false");
-		instance.setTessVariable("tessedit_char_whitelist", "");
+		this.setTessVariable("load_system_dawg", "false");
+		this.setTessVariable("load_freq_dawg", "false");
+		this.setTessVariable("tessedit_char_whitelist", "");
 	}
 	
 	public void optimizeForGeoNames() {
@@ -57,7 +93,7 @@ public class TesseractOCR extends Tesseract {
 	public void optimizeForCoordinates() {
 		this.setDefaults();
 		// Limit characters to the ones used for coordinates, especially to avoid confusion between - and _, dot and comma, ° and o etc.
-		instance.setTessVariable("tessedit_char_whitelist", "-.°'\"1234567890ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+		this.setTessVariable("tessedit_char_whitelist", "-.°'\"1234567890ABCDEFGHIJKLMNOPQRSTUVWXYZ");
 	}
 
 	private static void extractCustomTessResources(File tessDataFolder) {
@@ -1,6 +1,8 @@
 package de.lutana.geodataextractor.recognizer.gazetteer;
 
 import de.lutana.geodataextractor.entity.Location;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -67,7 +69,7 @@ public class LuceneIndex {
 		this.countryCodeMapping = null;
 	}
 
-	public boolean load() {
+	public synchronized boolean load() {
 		if (indexSearcher != null) {
 			return true;
 		}
@@ -217,7 +219,9 @@ public class LuceneIndex {
 	}
 
 	public List<GeoName> find(String locationName, boolean fuzzyIfNoResults, int limitResults) {
-		return this.find(locationName, fuzzyIfNoResults, limitResults, false);
+		try (Timer.Sample sample = Metrics.time("gazetteer.lucene")) {
+			return this.find(locationName, fuzzyIfNoResults, limitResults, false);
+		}
 	}
 
 	private List<GeoName> find(String locationName, boolean fuzzyIfNoResults, int limitResults, boolean fuzzy) {
@@ -10,7 +10,7 @@ public class Demonyms {
     /**
      * Set of demonyms to filter out from extracted location names.
      */
-    private static HashSet<String> demonyms;
+    private static volatile HashSet<String> demonyms;
 	
     /**
      * Various named entity recognizers tend to mistakenly extract
@@ -25,23 +25,33 @@ public class Demonyms {
     public static boolean isDemonym(LocationOccurrence extractedLocation) {
         // lazy load set of demonyms
         if (demonyms == null) {
-            // populate set of demonyms to filter out from results, source:
-            // http://en.wikipedia.org/wiki/List_of_adjectival_and_demonymic_forms_for_countries_and_nations
-            demonyms = new HashSet<>();
-
-            BufferedReader br = new BufferedReader(new InputStreamReader(Demonyms.class.getClassLoader().getResourceAsStream("clavin/Demonyms.txt")));
-
-            String line;
-            try {
-                while ((line = br.readLine()) != null) {
-                    demonyms.add(line);
-				}
-                br.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            load();
         }
 
         return demonyms.contains(extractedLocation.getText());
     }
+
+    private static synchronized void load() {
+        if (demonyms != null) {
+            return;
+        }
+
+        // populate set of demonyms to filter out from results, source:
+        // http://en.wikipedia.org/wiki/List_of_adjectival_and_demonymic_forms_for_countries_and_nations
+        HashSet<String> set = new HashSet<>();
+
+        BufferedReader br = new BufferedReader(new InputStreamReader(Demonyms.class.getClassLoader().getResourceAsStream("clavin/Demonyms.txt")));
+
+        String line;
+        try {
+            while ((line = br.readLine()) != null) {
+                set.add(line);
+            }
+            br.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        // Publish the set only once it is complete, other threads might read it concurrently
+        demonyms = set;
+    }
 }
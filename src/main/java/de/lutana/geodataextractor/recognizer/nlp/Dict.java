@@ -7,25 +7,34 @@ import java.util.HashSet;
 
 public class Dict {
 
-    private static HashSet<String> dict;
+    private static volatile HashSet<String> dict;
 
     public static boolean contains(String word) {
         // lazy load the dictionary taken from http://app.aspell.net/create (SCOWL size 35, American and British English)
         if (dict == null) {
-            dict = new HashSet<>();
-
-            BufferedReader br = new BufferedReader(new InputStreamReader(Dict.class.getClassLoader().getResourceAsStream("dict/en.txt")));
-            String line;
-            try {
-                while ((line = br.readLine()) != null) {
-                    dict.add(line.toLowerCase());
-				}
-                br.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            load();
         }
 
         return dict.contains(word.toLowerCase());
     }
+
+    private static synchronized void load() {
+        if (dict != null) {
+            return;
+        }
+
+        HashSet<String> words = new HashSet<>();
+        BufferedReader br = new BufferedReader(new InputStreamReader(Dict.class.getClassLoader().getResourceAsStream("dict/en.txt")));
+        String line;
+        try {
+            while ((line = br.readLine()) != null) {
+                words.add(line.toLowerCase());
+            }
+            br.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        // Publish the set only once it is complete, other threads might read it concurrently
+        dict = words;
+    }
 }
@@ -30,6 +30,8 @@ package de.lutana.geodataextractor.recognizer.nlp;
  *
  *###################################################################*/
 
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
 import edu.stanford.nlp.ie.AbstractSequenceClassifier;
 import edu.stanford.nlp.ie.crf.CRFClassifier;
 import edu.stanford.nlp.pipeline.DefaultPaths;
@@ -93,7 +95,9 @@ public class StanfordExtractor implements LocationExtractor {
             throw new IllegalArgumentException("text input to extractLocationNames should not be null");
 
         // extract entities as <Entity Type, Start Index, Stop Index>
-        return convertNERtoCLAVIN(namedEntityRecognizer.classifyToCharacterOffsets(text), text);
+        try (Timer.Sample sample = Metrics.time("nlp.stanford")) {
+            return convertNERtoCLAVIN(namedEntityRecognizer.classifyToCharacterOffsets(text), text);
+        }
     }
 
     /**
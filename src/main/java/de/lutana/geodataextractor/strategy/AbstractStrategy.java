@@ -6,15 +6,31 @@ import de.lutana.geodataextractor.entity.FigureCollection;
 import de.lutana.geodataextractor.entity.Location;
 import de.lutana.geodataextractor.entity.LocationCollection;
 import de.lutana.geodataextractor.entity.locationresolver.LocationResolver;
+import de.lutana.geodataextractor.recognizer.cv.MatPool;
+import de.lutana.geodataextractor.util.Deadline;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public abstract class AbstractStrategy implements Strategy {
 
 	private LocationResolver locationResolver;
+	private int figureThreads;
+	private ExecutorService figureExecutor;
+	private long documentTimeBudget;
+	private long figureTimeBudget;
 	
 	public AbstractStrategy(LocationResolver locationResolver) {
 		this.locationResolver = locationResolver;
+		this.figureThreads = 1;
+		this.figureExecutor = null;
+		this.documentTimeBudget = 0;
+		this.figureTimeBudget = 0;
 	}
 	
 	public LocationResolver getLocationResolver() {
@@ -25,36 +41,214 @@ public abstract class AbstractStrategy implements Strategy {
 		this.locationResolver = locationResolver;
 	}
 
+	/**
+	 * Returns the number of figures of a document processed in parallel.
+	 *
+	 * @return the number of threads
+	 */
+	public int getFigureThreads() {
+		return this.figureThreads;
+	}
+
+	/**
+	 * Sets the number of figures of a document processed in parallel.
+	 *
+	 * Defaults to 1, which processes the figures one after another in the
+	 * calling thread. The worker threads are shared by all documents executed
+	 * with this strategy and stopped in shutdown().
+	 *
+	 * @param figureThreads the number of threads, values lower than 1 are treated as 1
+	 */
+	public synchronized void setFigureThreads(int figureThreads) {
+		this.figureThreads = Math.max(1, figureThreads);
+		if (this.figureExecutor != null) {
+			this.figureExecutor.shutdown();
+			this.figureExecutor = null;
+		}
+	}
+
+	/**
+	 * Sets the time available for each document and each of its figures.
+	 *
+	 * If the time runs low, expensive steps are skipped for the remaining
+	 * figures, see Figure.getSkippedSteps(). Steps that have already been
+	 * started are not interrupted, so the budget might be exceeded slightly.
+	 *
+	 * @param documentMillis Time for a document in milliseconds, 0 for no limit.
+	 * @param figureMillis Time for a single figure in milliseconds, 0 for no limit.
+	 */
+	public void setTimeBudget(long documentMillis, long figureMillis) {
+		this.documentTimeBudget = Math.max(0, documentMillis);
+		this.figureTimeBudget = Math.max(0, figureMillis);
+	}
+
+	/**
+	 * @return the time for a document in milliseconds, 0 for no limit
+	 */
+	public long getDocumentTimeBudget() {
+		return this.documentTimeBudget;
+	}
+
+	/**
+	 * @return the time for a single figure in milliseconds, 0 for no limit
+	 */
+	public long getFigureTimeBudget() {
+		return this.figureTimeBudget;
+	}
+
+	/**
+	 * Returns the deadline for a figure that is started now.
+	 *
+	 * @param documentDeadline Deadline of the document the figure belongs to
+	 * @return
+	 */
+	public Deadline getFigureDeadline(Deadline documentDeadline) {
+		return documentDeadline.limit(this.figureTimeBudget);
+	}
+
+	protected synchronized ExecutorService getFigureExecutor() {
+		if (this.figureExecutor == null) {
+			this.figureExecutor = Executors.newFixedThreadPool(this.figureThreads, (runnable) -> {
+				Thread thread = new Thread(runnable, "figure-worker");
+				// Don't keep the JVM alive if somebody forgets to call shutdown()
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return this.figureExecutor;
+	}
+
 	@Override
 	public boolean execute(Document document, Integer page) {
+		return this.execute(document, page, Deadline.in(this.documentTimeBudget));
+	}
+
+	@Override
+	public boolean execute(Document document, Integer page, Deadline deadline) {
 		Logger logger = LoggerFactory.getLogger(this.getClass());
 		logger.info("## Document: " + document);
 
 		LocationCollection documentLocations = this.getDocumentLocations(document);
 
 		FigureCollection figures = document.getFigures();
+		List<Figure> selectedFigures = new ArrayList<>();
 		for(Figure figure : figures) {
 			if (page != null && !figure.getPage().equals(page)) {
 				continue;
 			}
+			selectedFigures.add(figure);
+		}
+
+		if (this.figureThreads > 1 && selectedFigures.size() > 1) {
+			return this.executeParallel(selectedFigures, documentLocations, deadline);
+		}
+
+		for(Figure figure : selectedFigures) {
 			logger.info("# " + figure);
-	
+
+			figure.setDeadline(this.getFigureDeadline(deadline));
 			this.extractFigureLocations(figure, documentLocations);
 		}
 
 		return true;
 	}
+
+	/**
+	 * Extracts the figure locations using the worker threads and waits until all figures are done.
+	 *
+	 * Each figure only reads the document locations and writes its own location,
+	 * so the figures don't need to be synchronized with each other.
+	 * A figure that fails is logged and doesn't affect the other figures,
+	 * but the document is reported as failed so that its incomplete results
+	 * are not cached.
+	 *
+	 * @param figures
+	 * @param documentLocations
+	 * @param deadline Deadline of the document
+	 * @return false if a figure failed or the thread has been interrupted while waiting, true otherwise.
+	 */
+	protected boolean executeParallel(List<Figure> figures, LocationCollection documentLocations, Deadline deadline) {
+		Logger logger = LoggerFactory.getLogger(this.getClass());
+		ExecutorService executor = this.getFigureExecutor();
+		List<Future<?>> futures = new ArrayList<>();
+		for(Figure figure : figures) {
+			futures.add(executor.submit(() -> {
+				logger.info("# " + figure);
+				figure.setDeadline(this.getFigureDeadline(deadline));
+				this.extractFigureLocations(figure, documentLocations);
+			}));
+		}
+
+		boolean failed = false;
+		for(int i = 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).get();
+			} catch (ExecutionException e) {
+				logger.error("Extracting locations for " + figures.get(i) + " failed: " + e.getCause());
+				failed = true;
+			} catch (InterruptedException e) {
+				futures.forEach((future) -> future.cancel(true));
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return !failed;
+	}
 	
 	public abstract LocationCollection getDocumentLocations(Document document);
 	
-	public abstract void extractFigureLocations(Figure figure, LocationCollection documentLocations);
+	/**
+	 * Detects the locations for a single figure and stores them in the figure.
+	 *
+	 * Might be called concurrently for different figures, see setFigureThreads().
+	 * The pipeline calls the two steps separately (see Pipeline), so this is
+	 * final and subclasses customize recognizeFigureLocations() and
+	 * resolveFigureLocation() instead.
+	 *
+	 * @param figure
+	 * @param documentLocations Locations of the document, must not be modified.
+	 */
+	public final void extractFigureLocations(Figure figure, LocationCollection documentLocations) {
+		LocationCollection figureLocations = this.recognizeFigureLocations(figure, documentLocations);
+		if (figureLocations != null) {
+			this.resolveFigureLocation(figure, figureLocations);
+		}
+	}
+
+	/**
+	 * Collects the location candidates for a single figure without resolving them.
+	 *
+	 * Might be called concurrently for different figures, see setFigureThreads().
+	 * Implementations should respect the deadline of the figure, see Figure.getDeadline().
+	 *
+	 * @param figure
+	 * @param documentLocations Locations of the document, must not be modified.
+	 * @return Location candidates for the figure or null if the figure doesn't contain any location information (e.g. isn't a map).
+	 */
+	public abstract LocationCollection recognizeFigureLocations(Figure figure, LocationCollection documentLocations);
 
+	/**
+	 * Resolves the location candidates of a figure and stores the location in the figure.
+	 *
+	 * Only called if recognizeFigureLocations() returned location candidates.
+	 * Might be called concurrently for different figures.
+	 *
+	 * @param figure
+	 * @param locations Location candidates for the figure, see recognizeFigureLocations().
+	 */
 	public void resolveFigureLocation(Figure figure, LocationCollection locations) {
 		Location location = locations.resolveLocation(this.getLocationResolver());
 		figure.setLocation(location);
 	}
 
 	@Override
-	public void shutdown() {}
+	public synchronized void shutdown() {
+		if (this.figureExecutor != null) {
+			this.figureExecutor.shutdown();
+			this.figureExecutor = null;
+		}
+		// The pools of the worker threads would otherwise only be released by the finalizers
+		MatPool.clearAll();
+	}
 	
 }
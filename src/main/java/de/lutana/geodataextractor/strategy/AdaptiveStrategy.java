@@ -0,0 +1,324 @@
+package de.lutana.geodataextractor.strategy;
+
+import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.entity.Location;
+import de.lutana.geodataextractor.entity.LocationCollection;
+import de.lutana.geodataextractor.entity.locationresolver.LocationResolver;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
+import de.lutana.geodataextractor.recognizer.cv.CvGraphic;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Strategy that learns which recognizers are worth running for which kind of figure.
+ * 
+ * For each recognizer the strategy measures the costs and whether it changed
+ * the resolved location of the figure. The statistics are kept per context,
+ * which is derived from cheap signals: the image size, whether the caption
+ * contains locations, the map confidence and the number of text boxes.
+ * After a warm-up phase, recognizers that rarely change the result or that are
+ * too expensive for their benefit are pruned. Pruned recognizers are still run
+ * for a small share of the figures so that the statistics stay up to date.
+ * 
+ * The order of the recognizers is the same as in the DefaultStrategy, as the
+ * world map detection decides whether the other recognizers are needed at all
+ * and the GeoNames recognizer uses the previous results for outlier detection.
+ * 
+ * @author Matthias Mohr
+ */
+public class AdaptiveStrategy extends DefaultStrategy {
+	
+	public static final String WORLD_MAP = "recognizer.worldmap";
+	public static final String COORDINATES = "recognizer.coordinates";
+	public static final String GEONAMES = "recognizer.geonames";
+	
+	private static final long LARGE_IMAGE = 1000 * 1000; // in pixels
+	private static final String[] TEXT_BOX_CLASSES = {"notext", "littletext", "text", "muchtext"};
+	
+	private final RecognizerStatistics statistics;
+	private int warmUpSamples;
+	private double minUsefulness;
+	private double minGainPerSecond;
+	private double explorationRate;
+	
+	public AdaptiveStrategy() {
+		this(null);
+	}
+	
+	public AdaptiveStrategy(LocationResolver locationResolver) {
+		super(locationResolver);
+		this.statistics = new RecognizerStatistics(0.05);
+		this.warmUpSamples = 20;
+		this.minUsefulness = 0.02;
+		this.minGainPerSecond = 0.02;
+		this.explorationRate = 0.05;
+	}
+
+	@Override
+	public LocationCollection getMapLocations(Figure figure, CvGraphic graphic, LocationCollection documentLocations) {
+		return this.getMapLocations(figure, graphic, documentLocations, -1);
+	}
+	
+	/**
+	 * Collects the locations for a map using the recognizers that are expected to be useful.
+	 * 
+	 * @param figure
+	 * @param graphic
+	 * @param documentLocations
+	 * @param mapConfidence Confidence of the map detection, -1 if unknown.
+	 * @return 
+	 */
+	@Override
+	protected LocationCollection getMapLocations(Figure figure, CvGraphic graphic, LocationCollection documentLocations, float mapConfidence) {
+		LocationCollection figureLocations = new LocationCollection(documentLocations);
+		int size = figureLocations.size();
+		this.getLocationsFromText(figure.getCaption(), figureLocations, 0.75);
+		
+		StringBuilder context = new StringBuilder();
+		context.append((long) graphic.getWidth() * graphic.getHeight() >= LARGE_IMAGE ? "large" : "small");
+		context.append(figureLocations.size() > size ? ",caption" : ",nocaption");
+		if (mapConfidence < 0) {
+			context.append(",unknown");
+		}
+		else {
+			context.append(mapConfidence >= 0.7 ? ",certain" : ",uncertain");
+		}
+
+		List<Run> runs = new ArrayList<>();
+		boolean isWorldMap = false;
+		if (this.shouldRun(figure, WORLD_MAP, context.toString(), 500)) {
+			Run run = new Run(WORLD_MAP, context.toString(), figureLocations.size());
+			try (Timer.Sample sample = Metrics.time(WORLD_MAP)) {
+				isWorldMap = this.worldMapDetector.recognize(graphic, figureLocations, 1);
+			}
+			runs.add(run.finish(figureLocations.size()));
+		}
+		// Skip the slow stuff, as world map detection is pretty accurate (97% detection rate)
+		if (!isWorldMap) {
+			// The text detection (SWT) is expensive, so skip it if the recognizers that need it are pruned anyway
+			boolean coordinates = this.isUsefulForAnyText(COORDINATES, context.toString());
+			boolean exploreCoordinates = !coordinates && this.explore(figure, COORDINATES, context.toString());
+			boolean geonames = this.geonamesGraphicDetector != null && this.isUsefulForAnyText(GEONAMES, context.toString());
+			boolean exploreGeonames = this.geonamesGraphicDetector != null && !geonames && this.explore(figure, GEONAMES, context.toString());
+			if (coordinates || exploreCoordinates || geonames || exploreGeonames) {
+				long start = System.nanoTime();
+				String textContext = context + "," + this.getTextBoxClass(graphic.getTextBoxes().size());
+				double textCost = (System.nanoTime() - start) / 1000000d;
+				List<Run> textRuns = new ArrayList<>();
+				if (exploreCoordinates ? this.hasTimeFor(figure, COORDINATES, textContext, 2000) : coordinates && this.shouldRun(figure, COORDINATES, textContext, 2000)) {
+					Run run = new Run(COORDINATES, textContext, figureLocations.size());
+					try (Timer.Sample sample = Metrics.time(COORDINATES)) {
+						this.coordinateGraphicDetector.recognize(graphic, figureLocations, 1);
+					}
+					textRuns.add(run.finish(figureLocations.size()));
+				}
+				if (exploreGeonames ? this.hasTimeFor(figure, GEONAMES, textContext, 5000) : geonames && this.shouldRun(figure, GEONAMES, textContext, 5000)) {
+					// should be executed last as it uses previous results for outlier detection
+					Run run = new Run(GEONAMES, textContext, figureLocations.size());
+					try (Timer.Sample sample = Metrics.time(GEONAMES)) {
+						this.geonamesGraphicDetector.recognize(graphic, figureLocations, 0.25);
+					}
+					textRuns.add(run.finish(figureLocations.size()));
+				}
+				// The recognizers that use the text boxes pay for them
+				for(Run run : textRuns) {
+					run.cost += textCost / textRuns.size();
+				}
+				runs.addAll(textRuns);
+			}
+		}
+		this.learn(figureLocations, runs);
+		return figureLocations;
+	}
+	
+	private String getTextBoxClass(int textBoxes) {
+		if (textBoxes == 0) {
+			return TEXT_BOX_CLASSES[0];
+		}
+		else if (textBoxes <= 20) {
+			return TEXT_BOX_CLASSES[1];
+		}
+		else if (textBoxes <= 100) {
+			return TEXT_BOX_CLASSES[2];
+		}
+		else {
+			return TEXT_BOX_CLASSES[3];
+		}
+	}
+	
+	/**
+	 * Decides whether a recognizer should be run based on the statistics and the deadline of the figure.
+	 * 
+	 * @param figure
+	 * @param recognizer
+	 * @param context
+	 * @param defaultCost Estimated duration in milliseconds if there are no statistics yet.
+	 * @return 
+	 */
+	protected boolean shouldRun(Figure figure, String recognizer, String context, double defaultCost) {
+		if (!this.hasTimeFor(figure, recognizer, context, defaultCost)) {
+			return false;
+		}
+		return this.isUseful(recognizer, context) || this.explore(figure, recognizer, context);
+	}
+	
+	/**
+	 * Estimates the duration by the costs learned for the context.
+	 * 
+	 * Falls back to the mean of all executions (see DefaultStrategy) if
+	 * the recognizer hasn't been run in this context yet.
+	 */
+	@Override
+	protected double estimateMillis(String step, String context, double defaultMillis) {
+		if (context != null) {
+			RecognizerStatistics.Entry stats = this.statistics.get(step, context);
+			if (stats.getSamples() > 0) {
+				return stats.getCost();
+			}
+		}
+		return super.estimateMillis(step, context, defaultMillis);
+	}
+	
+	/**
+	 * Checks whether the recognizer is still warming up or worth its costs in the given context.
+	 */
+	private boolean isUseful(String recognizer, String context) {
+		RecognizerStatistics.Entry stats = this.statistics.get(recognizer, context);
+		if (stats.getSamples() < this.warmUpSamples) {
+			return true;
+		}
+		double gainPerSecond = stats.getUsefulness() * 1000 / Math.max(stats.getCost(), 1);
+		return stats.getUsefulness() >= this.minUsefulness && gainPerSecond >= this.minGainPerSecond;
+	}
+	
+	/**
+	 * Checks whether the recognizer is useful for at least one of the text box classes seen so far.
+	 * 
+	 * Text box classes that have never been seen are ignored, otherwise the
+	 * text boxes would be detected forever for classes that don't occur.
+	 * 
+	 * @param recognizer
+	 * @param context Context without the text box class
+	 * @return 
+	 */
+	private boolean isUsefulForAnyText(String recognizer, String context) {
+		boolean seen = false;
+		for(String textBoxClass : TEXT_BOX_CLASSES) {
+			String textContext = context + "," + textBoxClass;
+			if (this.statistics.get(recognizer, textContext).getSamples() == 0) {
+				continue;
+			}
+			seen = true;
+			if (this.isUseful(recognizer, textContext)) {
+				return true;
+			}
+		}
+		return !seen;
+	}
+	
+	/**
+	 * Decides whether a pruned recognizer is run anyway.
+	 */
+	private boolean explore(Figure figure, String recognizer, String context) {
+		// Run pruned recognizers from time to time, otherwise changes in the data would never be noticed
+		if (ThreadLocalRandom.current().nextDouble() < this.explorationRate) {
+			return true;
+		}
+		LoggerFactory.getLogger(getClass()).debug("Pruned " + recognizer + " for " + figure + " (" + context + ")");
+		Metrics.count("adaptive.pruned");
+		return false;
+	}
+	
+	/**
+	 * Updates the statistics with the recognizers run for a figure.
+	 * 
+	 * A recognizer is considered useful if the resolved location without
+	 * the locations added by the recognizer differs from the actual result.
+	 * 
+	 * @param locations
+	 * @param runs 
+	 */
+	private void learn(LocationCollection locations, List<Run> runs) {
+		LocationResolver resolver = this.getLocationResolver();
+		Location resolved = locations.isEmpty() ? null : resolver.resolve(locations);
+		for(Run run : runs) {
+			boolean useful = false;
+			if (run.to > run.from) {
+				LocationCollection without = new LocationCollection();
+				for(int i = 0; i < locations.size(); i++) {
+					if (i < run.from || i >= run.to) {
+						without.add(locations.get(i));
+					}
+				}
+				Location alternative = without.isEmpty() ? null : resolver.resolve(without);
+				useful = !Objects.equals(resolved, alternative);
+			}
+			this.statistics.add(run.recognizer, run.context, run.cost, useful);
+		}
+	}
+
+	/**
+	 * @return the statistics learned so far
+	 */
+	public RecognizerStatistics getStatistics() {
+		return this.statistics;
+	}
+
+	/**
+	 * Sets the number of observations per recognizer and context before recognizers are pruned.
+	 * 
+	 * @param warmUpSamples 
+	 */
+	public void setWarmUpSamples(int warmUpSamples) {
+		this.warmUpSamples = warmUpSamples;
+	}
+
+	/**
+	 * Sets the thresholds for pruning recognizers.
+	 * 
+	 * @param minUsefulness Minimum probability that a recognizer changes the result, e.g. 0.02 for 2%.
+	 * @param minGainPerSecond Minimum usefulness per second of computation time.
+	 */
+	public void setPruningThresholds(double minUsefulness, double minGainPerSecond) {
+		this.minUsefulness = minUsefulness;
+		this.minGainPerSecond = minGainPerSecond;
+	}
+
+	/**
+	 * Sets the share of figures for which pruned recognizers are run anyway.
+	 * 
+	 * @param explorationRate Value between 0 and 1, e.g. 0.05 for 5%.
+	 */
+	public void setExplorationRate(double explorationRate) {
+		this.explorationRate = explorationRate;
+	}
+	
+	private static class Run {
+		
+		private final String recognizer;
+		private final String context;
+		private final int from;
+		private final long start;
+		private int to;
+		private double cost;
+
+		public Run(String recognizer, String context, int from) {
+			this.recognizer = recognizer;
+			this.context = context;
+			this.from = from;
+			this.start = System.nanoTime();
+		}
+		
+		public Run finish(int to) {
+			this.to = to;
+			this.cost = (System.nanoTime() - this.start) / 1000000d;
+			return this;
+		}
+		
+	}
+	
+}
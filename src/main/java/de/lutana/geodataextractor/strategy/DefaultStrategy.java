@@ -1,5 +1,6 @@
 package de.lutana.geodataextractor.strategy;
 
+import de.lutana.geodataextractor.ModelRegistry;
 import de.lutana.geodataextractor.recognizer.DumbCountryTextRecognizer;
 import de.lutana.geodataextractor.recognizer.CoordinateGraphicRecognizer;
 import de.lutana.geodataextractor.recognizer.CoordinateTextRecognizer;
@@ -7,11 +8,18 @@ import de.lutana.geodataextractor.recognizer.GeoNamesGraphicRecognizer;
 import de.lutana.geodataextractor.recognizer.GeoNamesTextRecognizer;
 import de.lutana.geodataextractor.recognizer.WorldMapRecognizer;
 import de.lutana.geodataextractor.recognizer.cv.CvGraphic;
+import de.lutana.geodataextractor.recognizer.cv.MatScope;
 import de.lutana.geodataextractor.recognizer.gazetteer.LuceneIndex;
 import de.lutana.geodataextractor.entity.Document;
 import de.lutana.geodataextractor.entity.Figure;
 import de.lutana.geodataextractor.entity.LocationCollection;
+import de.lutana.geodataextractor.detector.FigurePrefilter;
 import de.lutana.geodataextractor.detector.MapDetector;
+import de.lutana.geodataextractor.detector.WorldMapDetector;
+import de.lutana.geodataextractor.recognizer.nlp.StanfordExtractor;
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.Timer;
+import de.lutana.geodataextractor.util.Deadline;
 import java.io.IOException;
 import org.slf4j.LoggerFactory;
 import de.lutana.geodataextractor.detector.GraphicDetector;
@@ -29,6 +37,9 @@ import de.lutana.geodataextractor.recognizer.TextRecognizer;
 public class DefaultStrategy extends AbstractStrategy {
 	
 	private LuceneIndex geoNamesIndex;
+	private boolean ownsGeoNamesIndex;
+	private ModelRegistry models;
+	protected FigurePrefilter prefilter;
 	protected GraphicDetector mapRecognizer;
 	protected TextRecognizer geonamesTextDetector;
 	protected GeoNamesGraphicRecognizer geonamesGraphicDetector;
@@ -44,26 +55,40 @@ public class DefaultStrategy extends AbstractStrategy {
 		this(locationResolver, null);
 	}
 	
+	/**
+	 * Creates a new strategy.
+	 * 
+	 * The models are shared with all other strategies, see ModelRegistry.
+	 * 
+	 * @param locationResolver Resolver to use, null for the JackardIndexResolver.
+	 * @param geoNamesIndex Index to use instead of the shared index, is closed on shutdown. null for the shared index.
+	 */
 	public DefaultStrategy(LocationResolver locationResolver, LuceneIndex geoNamesIndex) {
 		super(locationResolver != null ? locationResolver : new JackardIndexResolver());
+		this.models = ModelRegistry.getInstance();
+		this.models.retain();
 		if (geoNamesIndex == null) {
-			this.geoNamesIndex = new LuceneIndex();
-			this.geoNamesIndex.load();
+			this.geoNamesIndex = this.models.getGeoNamesIndex();
+			this.ownsGeoNamesIndex = false;
 		}
 		else {
 			this.geoNamesIndex = geoNamesIndex;
+			this.ownsGeoNamesIndex = true;
 		}
+		this.prefilter = new FigurePrefilter();
 		this.mapRecognizer = new MapDetector(false);
 		this.coordinateGraphicDetector = new CoordinateGraphicRecognizer();
 		this.coordinateTextDetector = new CoordinateTextRecognizer();
-		this.worldMapDetector = new WorldMapRecognizer();
 		this.geonamesGraphicDetector = new GeoNamesGraphicRecognizer(this.geoNamesIndex);
+		StanfordExtractor stanfordExtractor = null;
 		try {
-			this.geonamesTextDetector = new GeoNamesTextRecognizer(this.geoNamesIndex);
+			stanfordExtractor = this.models.getStanfordExtractor();
+			this.geonamesTextDetector = new GeoNamesTextRecognizer(this.geoNamesIndex, stanfordExtractor);
 		} catch (IOException | ClassNotFoundException ex) {
 			LoggerFactory.getLogger(getClass()).error("Loading GeoNamesTextDetector failed. Continuing with the DumbCountryTextDetector. " + ex.getMessage());
 			this.geonamesTextDetector = new DumbCountryTextRecognizer();
-		}	
+		}
+		this.worldMapDetector = new WorldMapRecognizer(new WorldMapDetector(true, stanfordExtractor));
 	}
 
 	@Override
@@ -78,35 +103,146 @@ public class DefaultStrategy extends AbstractStrategy {
 	public LocationCollection getMapLocations(Figure figure, CvGraphic graphic, LocationCollection documentLocations) {
 		LocationCollection figureLocations = new LocationCollection(documentLocations);
 		this.getLocationsFromText(figure.getCaption(), figureLocations, 0.75);
-		boolean isWorldMap = this.worldMapDetector.recognize(graphic, figureLocations, 1);
+		boolean isWorldMap = false;
+		if (this.hasTimeFor(figure, "recognizer.worldmap", 500)) {
+			try (Timer.Sample sample = Metrics.time("recognizer.worldmap")) {
+				isWorldMap = this.worldMapDetector.recognize(graphic, figureLocations, 1);
+			}
+		}
 		// Skip the slow stuff, as world map detection is pretty accurate (97% detection rate)
 		if (!isWorldMap) {
-			this.coordinateGraphicDetector.recognize(graphic, figureLocations, 1);
-			if (this.geonamesGraphicDetector != null) {
+			if (this.hasTimeFor(figure, "recognizer.coordinates", 2000)) {
+				try (Timer.Sample sample = Metrics.time("recognizer.coordinates")) {
+					this.coordinateGraphicDetector.recognize(graphic, figureLocations, 1);
+				}
+			}
+			if (this.geonamesGraphicDetector != null && this.hasTimeFor(figure, "recognizer.geonames", 5000)) {
 				// should be executed last as it uses previous results for outlier detection
-				this.geonamesGraphicDetector.recognize(graphic, figureLocations, 0.25);
+				try (Timer.Sample sample = Metrics.time("recognizer.geonames")) {
+					this.geonamesGraphicDetector.recognize(graphic, figureLocations, 0.25);
+				}
 			}
 		}
 		return figureLocations;
 	}
 	
+	/**
+	 * Collects the locations for a figure that has been detected as map.
+	 * 
+	 * Allows subclasses to take the confidence of the map detection into account.
+	 * 
+	 * @param figure
+	 * @param graphic
+	 * @param documentLocations
+	 * @param mapConfidence Confidence of the map detection, -1 if unknown.
+	 * @return 
+	 */
+	protected LocationCollection getMapLocations(Figure figure, CvGraphic graphic, LocationCollection documentLocations, float mapConfidence) {
+		return this.getMapLocations(figure, graphic, documentLocations);
+	}
+	
+	/**
+	 * Checks whether the remaining time of the figure is sufficient for a step.
+	 * 
+	 * The duration of the step is estimated by estimateMillis().
+	 * Skipped steps are recorded in the figure.
+	 * 
+	 * @param figure
+	 * @param step Name of the step, which is also the name of its timer.
+	 * @param defaultMillis Estimated duration if the step hasn't been executed yet.
+	 * @return true if the step should be executed, false if it should be skipped.
+	 */
+	protected boolean hasTimeFor(Figure figure, String step, double defaultMillis) {
+		return this.hasTimeFor(figure, step, null, defaultMillis);
+	}
+	
+	/**
+	 * Checks whether the remaining time of the figure is sufficient for a step in the given context.
+	 * 
+	 * @param figure
+	 * @param step Name of the step, which is also the name of its timer.
+	 * @param context Kind of figure the estimate is made for, see estimateMillis(). null if unknown.
+	 * @param defaultMillis Estimated duration if the step hasn't been executed yet.
+	 * @return true if the step should be executed, false if it should be skipped.
+	 */
+	protected boolean hasTimeFor(Figure figure, String step, String context, double defaultMillis) {
+		Deadline deadline = figure.getDeadline();
+		if (deadline.isUnlimited()) {
+			return true;
+		}
+		double estimate = this.estimateMillis(step, context, defaultMillis);
+		if (deadline.allows(estimate)) {
+			return true;
+		}
+		LoggerFactory.getLogger(getClass()).debug("Skipping " + step + " for " + figure + ", " + deadline + ", but " + Math.round(estimate) + " ms expected.");
+		figure.addSkippedStep(step);
+		return false;
+	}
+	
+	/**
+	 * Estimates the duration of a step.
+	 * 
+	 * The default implementation ignores the context and uses the mean of
+	 * all previous executions (see Metrics) or the given default for the
+	 * first execution.
+	 * 
+	 * @param step Name of the step, which is also the name of its timer.
+	 * @param context Kind of figure the estimate is made for, null if unknown.
+	 * @param defaultMillis Estimated duration if the step hasn't been executed yet.
+	 * @return Estimated duration in milliseconds
+	 */
+	protected double estimateMillis(String step, String context, double defaultMillis) {
+		Timer timer = Metrics.getInstance().timer(step);
+		return timer.getCount() > 0 ? timer.getMeanTime() : defaultMillis;
+	}
+	
+	/**
+	 * @return the filter for figures that obviously aren't maps or null if all figures are checked
+	 */
+	public FigurePrefilter getPrefilter() {
+		return this.prefilter;
+	}
+	
+	/**
+	 * @return the detector that decides whether a figure is a map
+	 */
+	public GraphicDetector getMapRecognizer() {
+		return this.mapRecognizer;
+	}
+	
+	/**
+	 * @param prefilter Filter for figures that obviously aren't maps, null to check all figures.
+	 */
+	public void setPrefilter(FigurePrefilter prefilter) {
+		this.prefilter = prefilter;
+	}
+	
 	public void disableGeoNamesGraphicRecognizer() {
 		this.geonamesGraphicDetector = null;
 	}
 	
 	@Override
-	public void extractFigureLocations(Figure figure, LocationCollection documentLocations) {
+	public LocationCollection recognizeFigureLocations(Figure figure, LocationCollection documentLocations) {
 		CvGraphic cvGraphic = new CvGraphic(figure);
-
-		// Detect whether it's a map or not
-		float mapConfidence = this.mapRecognizer.detect(figure, cvGraphic);
-		boolean isMap = (mapConfidence >= 0.4); // 10% tolerance
-		LoggerFactory.getLogger(this.getClass()).debug((isMap ? "Map detected" : "NOT a map") + " (" + mapConfidence * 100 + "%)");
-		if (isMap) {
-			LocationCollection figureLocations = this.getMapLocations(figure, cvGraphic, documentLocations);
-			this.resolveFigureLocation(figure, figureLocations);
+		try (MatScope scope = MatScope.open()) {
+			// Skip logos, equations etc. before the expensive map detection
+			if (this.prefilter != null && this.prefilter.reject(figure, cvGraphic)) {
+				LoggerFactory.getLogger(this.getClass()).debug("Figure rejected (" + figure.getRejectionReason() + "): " + figure);
+				return null;
+			}
+			// Detect whether it's a map or not
+			float mapConfidence = this.mapRecognizer.detect(figure, cvGraphic);
+			boolean isMap = (mapConfidence >= 0.4); // 10% tolerance
+			LoggerFactory.getLogger(this.getClass()).debug((isMap ? "Map detected" : "NOT a map") + " (" + mapConfidence * 100 + "%)");
+			LocationCollection figureLocations = null;
+			if (isMap) {
+				figureLocations = this.getMapLocations(figure, cvGraphic, documentLocations, mapConfidence);
+			}
+			return figureLocations;
+		} finally {
+			// Free the decoded image and all Mats of the figure right away instead of waiting for the garbage collector
+			cvGraphic.dispose();
 		}
-		cvGraphic.dispose();
 	}
 	
 	public void getLocationsFromText(String text, LocationCollection locations, double weight) {
@@ -118,10 +254,20 @@ public class DefaultStrategy extends AbstractStrategy {
 	}
 
 	@Override
-	public void shutdown() {
-		if (this.geoNamesIndex != null) {
+	public synchronized void shutdown() {
+		super.shutdown();
+		if (this.models == null) {
+			return; // Already shut down
+		}
+		if (this.ownsGeoNamesIndex && this.geoNamesIndex != null) {
 			this.geoNamesIndex.close();
 		}
+		if (this.mapRecognizer instanceof MapDetector) {
+			((MapDetector) this.mapRecognizer).close();
+		}
+		this.worldMapDetector.close();
+		this.models.release();
+		this.models = null;
 	}
 	
 }
\ No newline at end of file
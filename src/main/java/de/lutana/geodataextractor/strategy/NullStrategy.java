@@ -29,6 +29,8 @@ public class NullStrategy extends AbstractStrategy {
 	}
 
 	@Override
-	public void extractFigureLocations(Figure figure, LocationCollection documentLocations) {}
+	public LocationCollection recognizeFigureLocations(Figure figure, LocationCollection documentLocations) {
+		return null;
+	}
 	
 }
@@ -0,0 +1,181 @@
+package de.lutana.geodataextractor.strategy;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running statistics about the costs and the usefulness of recognizers.
+ *
+ * The statistics are kept per recognizer and context, where the context
+ * describes the kind of figure (e.g. small image with many text boxes).
+ * Costs and usefulness are exponentially weighted moving averages, so that
+ * recent observations count more than old ones.
+ *
+ * The statistics can be saved to and loaded from a JSON file, so that they
+ * don't have to be learned again in each run.
+ *
+ * @author Matthias Mohr
+ */
+public class RecognizerStatistics {
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	private final Map<String, Entry> entries;
+	private final double smoothing;
+
+	/**
+	 * @param smoothing Weight of a new observation between 0 and 1, e.g. 0.05.
+	 */
+	public RecognizerStatistics(double smoothing) {
+		this.entries = new TreeMap<>();
+		this.smoothing = smoothing;
+	}
+
+	/**
+	 * Returns the statistics for a recognizer in the given context.
+	 *
+	 * @param recognizer
+	 * @param context
+	 * @return A copy of the statistics, empty if nothing has been observed yet.
+	 */
+	public synchronized Entry get(String recognizer, String context) {
+		Entry entry = this.entries.get(recognizer + "|" + context);
+		return entry != null ? new Entry(entry) : new Entry();
+	}
+
+	/**
+	 * Adds an observation.
+	 *
+	 * @param recognizer
+	 * @param context
+	 * @param cost Duration in milliseconds
+	 * @param useful true if the recognizer changed the resolved location, false otherwise
+	 */
+	public synchronized void add(String recognizer, String context, double cost, boolean useful) {
+		Entry entry = this.entries.computeIfAbsent(recognizer + "|" + context, (key) -> new Entry());
+		double usefulness = useful ? 1 : 0;
+		if (entry.samples == 0) {
+			entry.cost = cost;
+			entry.usefulness = usefulness;
+		}
+		else {
+			// Average over the first observations until the smoothing takes over, otherwise the first sample dominates
+			double alpha = Math.max(this.smoothing, 1d / (entry.samples + 1));
+			entry.cost += alpha * (cost - entry.cost);
+			entry.usefulness += alpha * (usefulness - entry.usefulness);
+		}
+		entry.samples++;
+	}
+
+	/**
+	 * Loads the statistics from a file written by save(), existing statistics are replaced.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public synchronized void load(File file) throws IOException {
+		try (JsonParser p = FACTORY.createParser(file)) {
+			if (p.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Expected a JSON object");
+			}
+			this.entries.clear();
+			while(p.nextToken() == JsonToken.FIELD_NAME) {
+				String key = p.getCurrentName();
+				p.nextToken();
+				Entry entry = new Entry();
+				while(p.nextToken() == JsonToken.FIELD_NAME) {
+					String fieldName = p.getCurrentName();
+					p.nextToken();
+					if (fieldName.equals("samples")) {
+						entry.samples = p.getValueAsLong();
+					}
+					else if (fieldName.equals("cost")) {
+						entry.cost = p.getValueAsDouble();
+					}
+					else if (fieldName.equals("usefulness")) {
+						entry.usefulness = p.getValueAsDouble();
+					}
+					else {
+						p.skipChildren();
+					}
+				}
+				this.entries.put(key, entry);
+			}
+		}
+	}
+
+	/**
+	 * Saves the statistics to a file.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public synchronized void save(File file) throws IOException {
+		try (JsonGenerator g = FACTORY.createGenerator(file, JsonEncoding.UTF8)) {
+			g.useDefaultPrettyPrinter();
+			g.writeStartObject();
+			for(Map.Entry<String, Entry> e : this.entries.entrySet()) {
+				g.writeObjectFieldStart(e.getKey());
+				g.writeNumberField("samples", e.getValue().samples);
+				g.writeNumberField("cost", e.getValue().cost);
+				g.writeNumberField("usefulness", e.getValue().usefulness);
+				g.writeEndObject();
+			}
+			g.writeEndObject();
+		}
+	}
+
+	public static class Entry {
+
+		private long samples;
+		private double cost;
+		private double usefulness;
+
+		private Entry() {
+			this.samples = 0;
+			this.cost = 0;
+			this.usefulness = 0;
+		}
+
+		private Entry(Entry entry) {
+			this.samples = entry.samples;
+			this.cost = entry.cost;
+			this.usefulness = entry.usefulness;
+		}
+
+		/**
+		 * @return the number of observations
+		 */
+		public long getSamples() {
+			return this.samples;
+		}
+
+		/**
+		 * @return the average duration in milliseconds
+		 */
+		public double getCost() {
+			return this.cost;
+		}
+
+		/**
+		 * @return the probability that the recognizer changes the resolved location
+		 */
+		public double getUsefulness() {
+			return this.usefulness;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d samples, %.0f ms, %.0f%% useful", this.samples, this.cost, this.usefulness * 100);
+		}
+
+	}
+
+}
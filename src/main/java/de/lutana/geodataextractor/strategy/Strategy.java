@@ -1,6 +1,7 @@
 package de.lutana.geodataextractor.strategy;
 
 import de.lutana.geodataextractor.entity.Document;
+import de.lutana.geodataextractor.util.Deadline;
 
 /**
  * A strategy combines the detectors and the resulting location collections.
@@ -22,6 +23,22 @@ public interface Strategy {
 	 */
 	public boolean execute(Document document, Integer page);
 	
+	/**
+	 * Same as execute(document, page), but tries to finish before the deadline.
+	 * 
+	 * Strategies might skip expensive steps to meet the deadline, the skipped
+	 * steps are recorded for each figure (see Figure.getSkippedSteps()).
+	 * Strategies that don't support deadlines ignore it.
+	 * 
+	 * @param document
+	 * @param page
+	 * @param deadline
+	 * @return
+	 */
+	public default boolean execute(Document document, Integer page, Deadline deadline) {
+		return this.execute(document, page);
+	}
+	
 	public void shutdown();
 	
 }
@@ -0,0 +1,97 @@
+package de.lutana.geodataextractor.util;
+
+/**
+ * A point in time until which a task should be finished.
+ *
+ * Deadlines are immutable and based on System.nanoTime(), so they are not
+ * affected by changes of the system clock.
+ *
+ * @author Matthias Mohr
+ */
+public final class Deadline {
+
+	/**
+	 * A deadline that never expires.
+	 */
+	public static final Deadline NONE = new Deadline(0, false);
+
+	private final long end;
+	private final boolean limited;
+
+	private Deadline(long end, boolean limited) {
+		this.end = end;
+		this.limited = limited;
+	}
+
+	/**
+	 * Creates a deadline that expires after the given time.
+	 *
+	 * @param millis Time in milliseconds, 0 or less for no deadline.
+	 * @return
+	 */
+	public static Deadline in(long millis) {
+		if (millis <= 0) {
+			return NONE;
+		}
+		return new Deadline(System.nanoTime() + millis * 1000000L, true);
+	}
+
+	/**
+	 * Returns the earlier of this deadline and a deadline that expires after the given time.
+	 *
+	 * @param millis Time in milliseconds, 0 or less for no additional limit.
+	 * @return
+	 */
+	public Deadline limit(long millis) {
+		Deadline other = Deadline.in(millis);
+		if (!other.limited) {
+			return this;
+		}
+		if (!this.limited) {
+			return other;
+		}
+		return this.end - other.end <= 0 ? this : other;
+	}
+
+	/**
+	 * @return true if the deadline never expires, false otherwise
+	 */
+	public boolean isUnlimited() {
+		return !this.limited;
+	}
+
+	/**
+	 * @return true if the deadline has passed, false otherwise
+	 */
+	public boolean isExpired() {
+		return this.limited && System.nanoTime() - this.end >= 0;
+	}
+
+	/**
+	 * Returns the remaining time.
+	 *
+	 * @return Time in milliseconds, 0 if expired, Long.MAX_VALUE if unlimited.
+	 */
+	public long getRemaining() {
+		if (!this.limited) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, (this.end - System.nanoTime()) / 1000000L);
+	}
+
+	/**
+	 * Checks whether a task with the given duration can be finished in time.
+	 *
+	 * @param millis Expected duration in milliseconds
+	 * @return
+	 */
+	public boolean allows(double millis) {
+		return !this.limited || (!this.isExpired() && this.getRemaining() >= millis);
+	}
+
+	@Override
+	public String toString() {
+		return this.limited ? this.getRemaining() + " ms remaining" : "no deadline";
+	}
+
+}
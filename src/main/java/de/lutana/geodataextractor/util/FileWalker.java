@@ -0,0 +1,176 @@
+package de.lutana.geodataextractor.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lists the files in a folder lazily, optionally including all sub folders.
+ *
+ * The files are read from the file system while iterating, so only the
+ * entries of the directories on the current path are held in memory, but
+ * never the whole file list. Each directory is read completely and closed
+ * right away, so no file handles are left open if the iteration stops early.
+ * Each call to iterator() walks the folder again.
+ *
+ * Glob patterns (see FileSystem.getPathMatcher) are matched against the path
+ * relative to the folder and against the file name, e.g. "*.pdf" and
+ * "2017/**.pdf" both match "2017/jan/paper.pdf". Excluded folders are skipped
+ * completely. Folders that can't be read are logged and skipped.
+ *
+ * @author Matthias Mohr
+ */
+public class FileWalker implements Iterable<File> {
+
+	private final Path root;
+	private final boolean recursive;
+	private final List<PathMatcher> includes;
+	private final List<PathMatcher> excludes;
+
+	/**
+	 * @param folder Folder to list the files from
+	 * @param recursive true to include sub folders, false to list the folder only
+	 */
+	public FileWalker(File folder, boolean recursive) {
+		this(folder, recursive, null, null);
+	}
+
+	/**
+	 * @param folder Folder to list the files from
+	 * @param recursive true to include sub folders, false to list the folder only
+	 * @param includes Glob patterns, a file must match at least one of them. null or empty to include all files.
+	 * @param excludes Glob patterns for files and folders to skip, null or empty to skip nothing.
+	 */
+	public FileWalker(File folder, boolean recursive, Collection<String> includes, Collection<String> excludes) {
+		this.root = folder.toPath().toAbsolutePath().normalize();
+		this.recursive = recursive;
+		FileSystem fs = this.root.getFileSystem();
+		this.includes = new ArrayList<>();
+		if (includes != null) {
+			for(String glob : includes) {
+				this.includes.add(fs.getPathMatcher("glob:" + glob));
+			}
+		}
+		this.excludes = new ArrayList<>();
+		if (excludes != null) {
+			for(String glob : excludes) {
+				this.excludes.add(fs.getPathMatcher("glob:" + glob));
+			}
+		}
+	}
+
+	/**
+	 * @return the folder
+	 */
+	public File getFolder() {
+		return this.root.toFile();
+	}
+
+	/**
+	 * @return whether sub folders are included
+	 */
+	public boolean isRecursive() {
+		return this.recursive;
+	}
+
+	@Override
+	public Iterator<File> iterator() {
+		return new FileIterator();
+	}
+
+	private boolean matches(List<PathMatcher> matchers, Path path) {
+		Path relative = this.root.relativize(path);
+		Path name = path.getFileName();
+		for(PathMatcher matcher : matchers) {
+			if (matcher.matches(relative) || (name != null && matcher.matches(name))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isIncluded(Path file) {
+		return (this.includes.isEmpty() || this.matches(this.includes, file)) && !this.matches(this.excludes, file);
+	}
+
+	private class FileIterator implements Iterator<File> {
+
+		// Entries of the directories on the current path, the current one is on top
+		private final Deque<Iterator<Path>> iterators;
+		private File next;
+
+		public FileIterator() {
+			this.iterators = new ArrayDeque<>();
+			this.next = null;
+			this.open(root);
+		}
+
+		private void open(Path dir) {
+			List<Path> entries = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for(Path path : stream) {
+					entries.add(path);
+				}
+			} catch (IOException | DirectoryIteratorException e) {
+				// Use the entries read so far
+				LoggerFactory.getLogger(FileWalker.class).warn("Skipping (the rest of) folder " + dir + ": " + e);
+			}
+			this.iterators.push(entries.iterator());
+		}
+
+		private File findNext() {
+			while(!this.iterators.isEmpty()) {
+				Iterator<Path> it = this.iterators.peek();
+				if (!it.hasNext()) {
+					this.iterators.pop();
+					continue;
+				}
+				Path path = it.next();
+				// Don't follow symlinks to folders, they could lead to endless loops
+				if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+					if (recursive && !matches(excludes, path)) {
+						this.open(path);
+					}
+				}
+				else if (Files.isRegularFile(path) && isIncluded(path)) {
+					return path.toFile();
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (this.next == null) {
+				this.next = this.findNext();
+			}
+			return this.next != null;
+		}
+
+		@Override
+		public File next() {
+			if (!this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			File file = this.next;
+			this.next = null;
+			return file;
+		}
+
+	}
+
+}
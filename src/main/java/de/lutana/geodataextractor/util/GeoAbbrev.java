@@ -80,7 +80,7 @@ public class GeoAbbrev {
 		return usStatesMap.get(code.toUpperCase());
 	}
 	
-	private static void initIsoMaps() {
+	private static synchronized void initIsoMaps() {
 		if (iso2ToIso3Map == null || iso3ToIso2Map == null) {
 			String[] countries = Locale.getISOCountries();
 			iso2ToIso3Map = new HashMap<>(countries.length);
@@ -93,7 +93,7 @@ public class GeoAbbrev {
 		}
 	}
 	
-	private static void initUsStatesMap() {
+	private static synchronized void initUsStatesMap() {
 		if (usStatesMap != null) {
 			return;
 		}
@@ -151,7 +151,7 @@ public class GeoAbbrev {
 	}
 	
 	
-	private static void initAustraliaStatesMap() {
+	private static synchronized void initAustraliaStatesMap() {
 		if (australiaStatesMap != null) {
 			return;
 		}
@@ -167,7 +167,7 @@ public class GeoAbbrev {
 		australiaStatesMap.put("NT", "Northern Territory");
 	}
 	
-	private static void initIocMap() {
+	private static synchronized void initIocMap() {
 		if (iocMap != null) {
 			return;
 		}
@@ -0,0 +1,148 @@
+package de.lutana.geodataextractor.util;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Cheap statistics of an image, computed on a thumbnail instead of all pixels.
+ *
+ * The image is sampled on a regular grid of at most SAMPLES x SAMPLES pixels,
+ * so the costs don't depend on the resolution. The contrast is taken from the
+ * samples directly, so that single thin lines are still noticed. Blocks of
+ * 2x2 samples are averaged to a thumbnail, which is used for the brightness
+ * histogram and its entropy, the number of colors and the edge density.
+ *
+ * @author Matthias Mohr
+ */
+public class ImageStatistics {
+
+	public static final int SAMPLES = 128;
+	private static final int EDGE_THRESHOLD = 48;
+
+	private final int contrast;
+	private final double entropy;
+	private final double colorRatio;
+	private final double edgeDensity;
+
+	public ImageStatistics(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int cols = Math.min(SAMPLES, width);
+		int rows = Math.min(SAMPLES, height);
+		int thumbCols = (cols + 1) / 2;
+		int thumbRows = (rows + 1) / 2;
+		// Sum of red, green and blue per pixel of the thumbnail
+		int[] sums = new int[thumbCols * thumbRows * 3];
+		int[] counts = new int[thumbCols * thumbRows];
+		int min = 255;
+		int max = 0;
+		for(int y = 0; y < rows; y++) {
+			int sy = (int) ((y + 0.5) * height / rows);
+			for(int x = 0; x < cols; x++) {
+				int rgb = image.getRGB((int) ((x + 0.5) * width / cols), sy);
+				int r = (rgb >> 16) & 0xFF;
+				int g = (rgb >> 8) & 0xFF;
+				int b = rgb & 0xFF;
+				int v = gray(r, g, b);
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+				int cell = (y / 2) * thumbCols + x / 2;
+				sums[cell * 3] += r;
+				sums[cell * 3 + 1] += g;
+				sums[cell * 3 + 2] += b;
+				counts[cell]++;
+			}
+		}
+		this.contrast = Math.max(0, max - min);
+
+		int[] thumbnail = new int[counts.length];
+		int[] histogram = new int[32];
+		boolean[] colors = new boolean[1 << 15];
+		int colorCount = 0;
+		for(int i = 0; i < counts.length; i++) {
+			int r = sums[i * 3] / counts[i];
+			int g = sums[i * 3 + 1] / counts[i];
+			int b = sums[i * 3 + 2] / counts[i];
+			thumbnail[i] = gray(r, g, b);
+			histogram[thumbnail[i] >> 3]++;
+			// 5 bits per channel
+			int color = ((r >> 3) << 10) | ((g >> 3) << 5) | (b >> 3);
+			if (!colors[color]) {
+				colors[color] = true;
+				colorCount++;
+			}
+		}
+		this.entropy = entropy(histogram, thumbnail.length);
+		this.colorRatio = (double) colorCount / thumbnail.length;
+		this.edgeDensity = edgeDensity(thumbnail, thumbCols, thumbRows);
+	}
+
+	private static int gray(int r, int g, int b) {
+		return (r * 299 + g * 587 + b * 114) / 1000;
+	}
+
+	private static double entropy(int[] histogram, int total) {
+		double entropy = 0;
+		for(int count : histogram) {
+			if (count > 0) {
+				double p = (double) count / total;
+				entropy -= p * Math.log(p) / Math.log(2);
+			}
+		}
+		return entropy;
+	}
+
+	/**
+	 * Fraction of neighbouring pixels with a large difference in brightness.
+	 */
+	private static double edgeDensity(int[] gray, int cols, int rows) {
+		int edges = 0;
+		int pairs = 0;
+		for(int y = 0; y < rows; y++) {
+			for(int x = 0; x < cols; x++) {
+				int v = gray[y * cols + x];
+				if (x + 1 < cols) {
+					pairs++;
+					if (Math.abs(v - gray[y * cols + x + 1]) > EDGE_THRESHOLD) {
+						edges++;
+					}
+				}
+				if (y + 1 < rows) {
+					pairs++;
+					if (Math.abs(v - gray[(y + 1) * cols + x]) > EDGE_THRESHOLD) {
+						edges++;
+					}
+				}
+			}
+		}
+		return pairs > 0 ? (double) edges / pairs : 0;
+	}
+
+	/**
+	 * @return the difference between the darkest and the brightest sample (0-255)
+	 */
+	public int getContrast() {
+		return this.contrast;
+	}
+
+	/**
+	 * @return the entropy of the brightness of the thumbnail in bits (0-5)
+	 */
+	public double getEntropy() {
+		return this.entropy;
+	}
+
+	/**
+	 * @return the number of distinct colors per pixel of the thumbnail (0-1)
+	 */
+	public double getColorRatio() {
+		return this.colorRatio;
+	}
+
+	/**
+	 * @return the fraction of neighbouring pixels of the thumbnail with a large difference in brightness (0-1)
+	 */
+	public double getEdgeDensity() {
+		return this.edgeDensity;
+	}
+
+}
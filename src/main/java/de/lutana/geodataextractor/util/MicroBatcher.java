@@ -0,0 +1,153 @@
+package de.lutana.geodataextractor.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects single requests from several threads and processes them in batches.
+ *
+ * A batch is processed as soon as it's full or the window after its first
+ * request has passed, so a single request is delayed by the window at most.
+ * The batches are processed by a background thread, which is started with
+ * the first request.
+ *
+ * @author Matthias Mohr
+ * @param <I> Input type
+ * @param <O> Output type
+ */
+public class MicroBatcher<I, O> implements AutoCloseable {
+
+	private final String name;
+	private final Function<List<I>, List<O>> processor;
+	private final int maxBatchSize;
+	private final long windowNanos;
+	private final BlockingQueue<Request<I, O>> queue;
+	private Thread worker;
+	private volatile boolean closed;
+
+	/**
+	 * @param name Name of the background thread
+	 * @param processor Processes a batch, must return one output per input in the same order
+	 * @param maxBatchSize Maximum number of requests per batch
+	 * @param windowMillis Time to wait for further requests after the first request of a batch
+	 */
+	public MicroBatcher(String name, Function<List<I>, List<O>> processor, int maxBatchSize, long windowMillis) {
+		this.name = name;
+		this.processor = processor;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.windowNanos = Math.max(0, windowMillis) * 1000000L;
+		this.queue = new LinkedBlockingQueue<>();
+		this.worker = null;
+		this.closed = false;
+	}
+
+	/**
+	 * Adds the input to the next batch.
+	 *
+	 * @param input
+	 * @return Completed with the output once the batch is processed.
+	 */
+	public CompletableFuture<O> submit(I input) {
+		CompletableFuture<O> future = new CompletableFuture<>();
+		synchronized(this) {
+			if (this.closed) {
+				future.completeExceptionally(new IllegalStateException("Batcher " + this.name + " has been closed."));
+				return future;
+			}
+			// Restart the worker if it died unexpectedly, otherwise the request would wait forever
+			if (this.worker == null || !this.worker.isAlive()) {
+				this.worker = new Thread(this::run, this.name);
+				this.worker.setDaemon(true);
+				this.worker.start();
+			}
+			this.queue.add(new Request<>(input, future));
+		}
+		return future;
+	}
+
+	private void run() {
+		List<Request<I, O>> batch = new ArrayList<>(this.maxBatchSize);
+		try {
+			while(!this.closed) {
+				batch.add(this.queue.take());
+				long end = System.nanoTime() + this.windowNanos;
+				while(batch.size() < this.maxBatchSize) {
+					Request<I, O> request = this.queue.poll(end - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if (request == null) {
+						break;
+					}
+					batch.add(request);
+				}
+				this.process(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			// Closed
+		}
+		IllegalStateException e = new IllegalStateException("Batcher " + this.name + " has been closed.");
+		for(Request<I, O> request : batch) {
+			request.future.completeExceptionally(e);
+		}
+		for(Request<I, O> request : this.queue) {
+			request.future.completeExceptionally(e);
+		}
+	}
+
+	private void process(List<Request<I, O>> batch) {
+		List<I> inputs = new ArrayList<>(batch.size());
+		for(Request<I, O> request : batch) {
+			inputs.add(request.input);
+		}
+		try {
+			List<O> outputs = this.processor.apply(inputs);
+			if (outputs.size() != inputs.size()) {
+				throw new IllegalStateException("Expected " + inputs.size() + " results, got " + outputs.size());
+			}
+			for(int i = 0; i < batch.size(); i++) {
+				batch.get(i).future.complete(outputs.get(i));
+			}
+		} catch (Throwable e) {
+			// Errors (e.g. OutOfMemoryError) only fail the batch, the worker keeps running for the next batches
+			for(Request<I, O> request : batch) {
+				request.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * @return the maximum number of requests per batch
+	 */
+	public int getMaxBatchSize() {
+		return this.maxBatchSize;
+	}
+
+	/**
+	 * Stops the background thread, pending requests fail.
+	 */
+	@Override
+	public synchronized void close() {
+		this.closed = true;
+		if (this.worker != null) {
+			this.worker.interrupt();
+			this.worker = null;
+		}
+	}
+
+	private static class Request<I, O> {
+
+		private final I input;
+		private final CompletableFuture<O> future;
+
+		public Request(I input, CompletableFuture<O> future) {
+			this.input = input;
+			this.future = future;
+		}
+
+	}
+
+}
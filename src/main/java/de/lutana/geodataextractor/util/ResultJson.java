@@ -0,0 +1,242 @@
+package de.lutana.geodataextractor.util;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import de.lutana.geodataextractor.entity.Document;
+import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.entity.Location;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the locations detected for a document as JSON and reads them back.
+ *
+ * Example:
+ * {"document": "/path/to/file.pdf", "location": {"minLon": 5.9, "maxLon": 15.0, "minLat": 47.3, "maxLat": 55.0, "probability": 0.8}, "figures": [{"index": "1", "page": 2, "location": null}]}
+ *
+ * Figures for which steps have been skipped to meet a deadline list them in "skipped".
+ *
+ * @author Matthias Mohr
+ */
+public class ResultJson {
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	/**
+	 * Returns the result for the document as JSON string.
+	 *
+	 * @param document
+	 * @return
+	 */
+	public static String toString(Document document) {
+		StringWriter writer = new StringWriter();
+		try (JsonGenerator g = FACTORY.createGenerator(writer)) {
+			writeDocument(g, document);
+		} catch (IOException ex) {
+			// Can't happen for a StringWriter
+			ex.printStackTrace();
+		}
+		return writer.toString();
+	}
+
+	/**
+	 * Writes the result for the document as JSON to the stream.
+	 *
+	 * The stream is not closed.
+	 *
+	 * @param out
+	 * @param document
+	 * @throws IOException
+	 */
+	public static void write(OutputStream out, Document document) throws IOException {
+		try (JsonGenerator g = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+			g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			writeDocument(g, document);
+		}
+	}
+
+	/**
+	 * Writes the result for the document as JSON object.
+	 *
+	 * @param g
+	 * @param document
+	 * @throws IOException
+	 */
+	public static void writeDocument(JsonGenerator g, Document document) throws IOException {
+		g.writeStartObject();
+		g.writeStringField("document", document.getFile().getAbsolutePath());
+		g.writeFieldName("location");
+		writeLocation(g, document.getLocation());
+		g.writeArrayFieldStart("figures");
+		for(Figure figure : document.getFigures()) {
+			g.writeStartObject();
+			g.writeStringField("index", figure.getIndex());
+			if (figure.getPage() != null) {
+				g.writeNumberField("page", figure.getPage());
+			}
+			else {
+				g.writeNullField("page");
+			}
+			g.writeFieldName("location");
+			writeLocation(g, figure.getLocation());
+			if (!figure.getSkippedSteps().isEmpty()) {
+				g.writeArrayFieldStart("skipped");
+				for(String step : figure.getSkippedSteps()) {
+					g.writeString(step);
+				}
+				g.writeEndArray();
+			}
+			if (figure.getRejectionReason() != null) {
+				g.writeStringField("rejected", figure.getRejectionReason());
+			}
+			g.writeEndObject();
+		}
+		g.writeEndArray();
+		g.writeEndObject();
+	}
+
+	/**
+	 * Writes a location as JSON object or null if no location is given.
+	 *
+	 * @param g
+	 * @param location
+	 * @throws IOException
+	 */
+	public static void writeLocation(JsonGenerator g, Location location) throws IOException {
+		if (location == null) {
+			g.writeNull();
+			return;
+		}
+		g.writeStartObject();
+		g.writeNumberField("minLon", location.getMinX());
+		g.writeNumberField("maxLon", location.getMaxX());
+		g.writeNumberField("minLat", location.getMinY());
+		g.writeNumberField("maxLat", location.getMaxY());
+		g.writeNumberField("probability", location.getProbability());
+		g.writeEndObject();
+	}
+
+	/**
+	 * Restores a document and the locations of its figures from a JSON string written by toString().
+	 *
+	 * Only the data contained in the JSON is restored, e.g. the figures don't have graphics or captions.
+	 *
+	 * @param json
+	 * @return
+	 * @throws IOException If the JSON is invalid or incomplete
+	 */
+	public static Document read(String json) throws IOException {
+		try (JsonParser p = FACTORY.createParser(json)) {
+			if (p.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Expected a JSON object");
+			}
+			Document document = null;
+			while(p.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = p.getCurrentName();
+				p.nextToken();
+				if (fieldName.equals("document")) {
+					document = new Document(new File(p.getValueAsString()));
+				}
+				else if (fieldName.equals("figures") && document != null) {
+					while(p.nextToken() == JsonToken.START_OBJECT) {
+						readFigure(p, document);
+					}
+				}
+				else {
+					// The document location is derived from the figures
+					p.skipChildren();
+				}
+			}
+			if (document == null) {
+				throw new IOException("Document is missing");
+			}
+			return document;
+		}
+	}
+
+	private static void readFigure(JsonParser p, Document document) throws IOException {
+		String index = null;
+		Integer page = null;
+		Location location = null;
+		List<String> skipped = new ArrayList<>();
+		String rejected = null;
+		while(p.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = p.getCurrentName();
+			JsonToken token = p.nextToken();
+			if (fieldName.equals("index")) {
+				index = p.getValueAsString();
+			}
+			else if (fieldName.equals("page")) {
+				page = token == JsonToken.VALUE_NULL ? null : p.getValueAsInt();
+			}
+			else if (fieldName.equals("location")) {
+				location = readLocation(p);
+			}
+			else if (fieldName.equals("skipped") && token == JsonToken.START_ARRAY) {
+				while(p.nextToken() == JsonToken.VALUE_STRING) {
+					skipped.add(p.getValueAsString());
+				}
+			}
+			else if (fieldName.equals("rejected")) {
+				rejected = p.getValueAsString();
+			}
+			else {
+				p.skipChildren();
+			}
+		}
+		Figure figure = document.addFigure(null, index, page);
+		figure.setLocation(location);
+		for(String step : skipped) {
+			figure.addSkippedStep(step);
+		}
+		figure.setRejectionReason(rejected);
+	}
+
+	/**
+	 * Reads a location written by writeLocation(), the parser must point to the start of the object or null.
+	 *
+	 * @param p
+	 * @return
+	 * @throws IOException
+	 */
+	public static Location readLocation(JsonParser p) throws IOException {
+		if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+			return null;
+		}
+		double minLon = 0, maxLon = 0, minLat = 0, maxLat = 0, probability = 0;
+		while(p.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = p.getCurrentName();
+			p.nextToken();
+			switch(fieldName) {
+				case "minLon":
+					minLon = p.getValueAsDouble();
+					break;
+				case "maxLon":
+					maxLon = p.getValueAsDouble();
+					break;
+				case "minLat":
+					minLat = p.getValueAsDouble();
+					break;
+				case "maxLat":
+					maxLat = p.getValueAsDouble();
+					break;
+				case "probability":
+					probability = p.getValueAsDouble();
+					break;
+				default:
+					p.skipChildren();
+			}
+		}
+		Location location = new Location(minLon, maxLon, minLat, maxLat);
+		location.setProbability(probability);
+		return location;
+	}
+
+}
@@ -0,0 +1,79 @@
+package api;
+
+import de.lutana.geodataextractor.detector.CascadeDetector;
+import de.lutana.geodataextractor.entity.Figure;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+
+public class CascadeDetectorTest {
+
+	@org.junit.Test
+	public void testEarlyExit() {
+		List<String> executed = new ArrayList<>();
+		TestDetector detector = new TestDetector(executed, 0.1f, 0.2f);
+		// Expensive stage can at most add 0.3, which is not enough to reach the threshold
+		float probability = detector.detect(null, null);
+		Assert.assertTrue(probability < detector.getThreshold());
+		// Upper bound: cheap + maximum of expensive
+		Assert.assertEquals(0.4f, probability, 0.0001);
+		Assert.assertEquals(1, executed.size());
+		Assert.assertEquals("cheap", executed.get(0));
+	}
+
+	@org.junit.Test
+	public void testEarlyAccept() {
+		List<String> executed = new ArrayList<>();
+		TestDetector detector = new TestDetector(executed, 0.6f, 0.2f);
+		float probability = detector.detect(null, null);
+		Assert.assertTrue(probability >= detector.getThreshold());
+		// Lower bound: cheap + minimum of expensive, not the value with the expensive signal
+		Assert.assertEquals(0.6f, probability, 0.0001);
+		Assert.assertEquals(1, executed.size());
+	}
+
+	@org.junit.Test
+	public void testAllStages() {
+		List<String> executed = new ArrayList<>();
+		TestDetector detector = new TestDetector(executed, 0.4f, 0.3f);
+		Assert.assertEquals(0.7f, detector.detect(null, null), 0.0001);
+		Assert.assertEquals(2, executed.size());
+		Assert.assertEquals("expensive", executed.get(1));
+	}
+
+	@org.junit.Test
+	public void testStageOrder() {
+		TestDetector detector = new TestDetector(new ArrayList<>(), 0f, 0f);
+		Assert.assertEquals("cheap", detector.getStageNames().get(0));
+		Assert.assertEquals("expensive", detector.getStageNames().get(1));
+	}
+
+	private static class TestDetector extends CascadeDetector {
+
+		public TestDetector(List<String> executed, float cheap, float expensive) {
+			super(0.5f);
+			// Added in the wrong order on purpose
+			this.addStage("expensive", 100, 0, 0.3f, (f, g) -> {
+				executed.add("expensive");
+				return expensive;
+			});
+			this.addStage("cheap", 1, 0, 0.7f, (f, g) -> {
+				executed.add("cheap");
+				return cheap;
+			});
+		}
+
+		@Override
+		protected float combine(Map<String, Float> signals) {
+			return signals.getOrDefault("cheap", 0f) + signals.getOrDefault("expensive", 0f);
+		}
+
+		@Override
+		public float detect(Figure f) {
+			return this.detect(f, null);
+		}
+
+	}
+
+}
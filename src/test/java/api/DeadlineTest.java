@@ -0,0 +1,37 @@
+package api;
+
+import de.lutana.geodataextractor.util.Deadline;
+import org.junit.Assert;
+
+public class DeadlineTest {
+
+	@org.junit.Test
+	public void testUnlimited() {
+		Assert.assertSame(Deadline.NONE, Deadline.in(0));
+		Assert.assertTrue(Deadline.NONE.isUnlimited());
+		Assert.assertFalse(Deadline.NONE.isExpired());
+		Assert.assertTrue(Deadline.NONE.allows(Double.MAX_VALUE));
+		Assert.assertEquals(Long.MAX_VALUE, Deadline.NONE.getRemaining());
+	}
+
+	@org.junit.Test
+	public void testLimit() throws InterruptedException {
+		Deadline document = Deadline.in(60000);
+		Assert.assertFalse(document.isExpired());
+		Assert.assertTrue(document.allows(1000));
+		Assert.assertFalse(document.allows(120000));
+
+		// The earlier deadline wins
+		Deadline figure = document.limit(50);
+		Assert.assertTrue(figure.getRemaining() <= 50);
+		Assert.assertSame(document, document.limit(120000));
+		Assert.assertSame(document, document.limit(0));
+		Assert.assertFalse(Deadline.NONE.limit(50).isUnlimited());
+
+		Thread.sleep(60);
+		Assert.assertTrue(figure.isExpired());
+		Assert.assertEquals(0, figure.getRemaining());
+		Assert.assertFalse(figure.allows(0));
+	}
+
+}
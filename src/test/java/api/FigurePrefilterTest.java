@@ -0,0 +1,124 @@
+package api;
+
+import de.lutana.geodataextractor.Config;
+import de.lutana.geodataextractor.detector.FigurePrefilter;
+import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.entity.Graphic;
+import de.lutana.geodataextractor.recognizer.cv.CvGraphic;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Random;
+import org.junit.Assert;
+
+public class FigurePrefilterTest {
+
+	private long limit;
+
+	@org.junit.Before
+	public void setUp() {
+		this.limit = Config.getGraphicMemoryLimit();
+		// Keep the images in memory, they are never written in these tests
+		Config.setGraphicMemoryLimit(Long.MAX_VALUE);
+	}
+
+	@org.junit.After
+	public void tearDown() {
+		Config.setGraphicMemoryLimit(this.limit);
+	}
+
+	@org.junit.Test
+	public void testTiny() {
+		this.assertRejected(FigurePrefilter.TINY, new BufferedImage(40, 300, BufferedImage.TYPE_INT_RGB));
+	}
+
+	@org.junit.Test
+	public void testAspectRatio() {
+		this.assertRejected(FigurePrefilter.ASPECT_RATIO, new BufferedImage(1200, 80, BufferedImage.TYPE_INT_RGB));
+	}
+
+	@org.junit.Test
+	public void testBlank() {
+		BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, 400, 300);
+		g.dispose();
+		this.assertRejected(FigurePrefilter.BLANK, image);
+	}
+
+	@org.junit.Test
+	public void testAccepted() {
+		BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, 400, 300);
+		Random random = new Random(1);
+		for(int i = 0; i < 200; i++) {
+			g.setColor(new Color(random.nextInt(0xFFFFFF)));
+			g.drawLine(random.nextInt(400), random.nextInt(300), random.nextInt(400), random.nextInt(300));
+		}
+		g.dispose();
+		this.assertRejected(null, image);
+	}
+
+	@org.junit.Test
+	public void testSparseLineDrawing() {
+		// Outline of an area with a single dot inside, far less than 1% of the pixels are not white
+		BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, 800, 600);
+		g.setColor(Color.GRAY);
+		g.drawPolygon(new int[] {120, 610, 700, 380, 90}, new int[] {80, 60, 400, 540, 300}, 5);
+		g.fillOval(400, 280, 3, 3);
+		g.dispose();
+		this.assertRejected(null, image);
+	}
+
+	@org.junit.Test
+	public void testPhotograph() {
+		this.assertRejected(FigurePrefilter.PHOTOGRAPH, this.createPhotograph());
+	}
+
+	@org.junit.Test
+	public void testAerialPhotograph() {
+		this.assertRejected(null, this.createPhotograph(), "Aerial photograph of the study area");
+	}
+
+	private BufferedImage createPhotograph() {
+		// Smooth shading with some noise, no sharp edges
+		BufferedImage image = new BufferedImage(1200, 900, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(2);
+		for(int y = 0; y < 900; y++) {
+			for(int x = 0; x < 1200; x++) {
+				int v = clamp((int) (128 + 100 * Math.sin(x / 90.0) * Math.cos(y / 70.0)) + random.nextInt(20) - 10);
+				image.setRGB(x, y, new Color(v, clamp(v - 30 + x / 40), 255 - v).getRGB());
+			}
+		}
+		return image;
+	}
+
+	private static int clamp(int value) {
+		return Math.max(0, Math.min(255, value));
+	}
+
+	private void assertRejected(String reason, BufferedImage image) {
+		this.assertRejected(reason, image, "");
+	}
+
+	private void assertRejected(String reason, BufferedImage image, String caption) {
+		Figure figure = new Figure(null, null, "1");
+		figure.setCaption(caption);
+		figure.setGraphic(new Graphic(image, new File("figure.png")));
+		CvGraphic graphic = new CvGraphic(figure);
+		try {
+			Assert.assertEquals(reason != null, new FigurePrefilter().reject(figure, graphic));
+			Assert.assertEquals(reason, figure.getRejectionReason());
+		} finally {
+			graphic.dispose();
+		}
+	}
+
+}
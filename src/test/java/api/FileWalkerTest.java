@@ -0,0 +1,61 @@
+package api;
+
+import de.lutana.geodataextractor.util.FileWalker;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+
+public class FileWalkerTest {
+
+	private static Path root;
+
+	@org.junit.BeforeClass
+	public static void createFolders() throws IOException {
+		root = Files.createTempDirectory("walker");
+		Files.createDirectories(root.resolve("a/b"));
+		Files.createDirectories(root.resolve("drafts"));
+		Files.createFile(root.resolve("1.pdf"));
+		Files.createFile(root.resolve("2.html"));
+		Files.createFile(root.resolve("a/3.pdf"));
+		Files.createFile(root.resolve("a/b/4.pdf"));
+		Files.createFile(root.resolve("drafts/5.pdf"));
+	}
+
+	@org.junit.AfterClass
+	public static void deleteFolders() {
+		FileUtils.deleteQuietly(root.toFile());
+	}
+
+	private Set<String> walk(FileWalker walker) {
+		Set<String> names = new HashSet<>();
+		for(File file : walker) {
+			names.add(file.getName());
+		}
+		return names;
+	}
+
+	@org.junit.Test
+	public void testNonRecursive() {
+		FileWalker walker = new FileWalker(root.toFile(), false);
+		Assert.assertEquals(new HashSet<>(Arrays.asList("1.pdf", "2.html")), this.walk(walker));
+	}
+
+	@org.junit.Test
+	public void testRecursive() {
+		FileWalker walker = new FileWalker(root.toFile(), true);
+		Assert.assertEquals(new HashSet<>(Arrays.asList("1.pdf", "2.html", "3.pdf", "4.pdf", "5.pdf")), this.walk(walker));
+	}
+
+	@org.junit.Test
+	public void testIncludeExclude() {
+		FileWalker walker = new FileWalker(root.toFile(), true, Arrays.asList("*.pdf"), Arrays.asList("drafts", "a/b/**"));
+		Assert.assertEquals(new HashSet<>(Arrays.asList("1.pdf", "3.pdf")), this.walk(walker));
+	}
+
+}
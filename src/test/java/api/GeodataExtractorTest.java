@@ -33,5 +33,46 @@ public class GeodataExtractorTest {
 
 		assertEquals(expResult, result);
 	}
+
+	/**
+	 * Test of run method using the pipeline, of class GeodataExtractor.
+	 * @throws java.io.IOException
+	 */
+	@org.junit.Test
+	public void testRunPipeline() throws IOException {
+		File documentFile = new File("test-docs/germany.html");
+
+		Set<Document> expResult = new HashSet<>();
+		expResult.add(new Document(documentFile));
+
+		GeodataExtractor instance = new GeodataExtractor();
+		instance.setStageThreads(1, 1, 2, 1);
+		instance.addDocument(documentFile);
+		Set<Document> result = instance.run();
+		instance.shutdown();
+
+		assertEquals(expResult, result);
+	}
+
+	/**
+	 * Test of run method with a listener, of class GeodataExtractor.
+	 * @throws java.io.IOException
+	 */
+	@org.junit.Test
+	public void testRunListener() throws IOException {
+		File documentFile = new File("test-docs/germany.html");
+
+		Set<Document> expResult = new HashSet<>();
+		expResult.add(new Document(documentFile));
+
+		GeodataExtractor instance = new GeodataExtractor();
+		instance.addDocument(documentFile);
+		Set<Document> result = new HashSet<>();
+		boolean success = instance.run(result::add);
+		instance.shutdown();
+
+		assertTrue(success);
+		assertEquals(expResult, result);
+	}
 	
 }
@@ -0,0 +1,83 @@
+package api;
+
+import de.lutana.geodataextractor.Config;
+import de.lutana.geodataextractor.entity.Graphic;
+import de.lutana.geodataextractor.recognizer.cv.CvGraphic;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import javax.imageio.ImageIO;
+import org.junit.Assert;
+
+public class GraphicTest {
+
+	private long limit;
+	private File folder;
+
+	@org.junit.Before
+	public void setUp() throws IOException {
+		this.limit = Config.getGraphicMemoryLimit();
+		this.folder = Files.createTempDirectory("graphic").toFile();
+	}
+
+	@org.junit.After
+	public void tearDown() {
+		Config.setGraphicMemoryLimit(this.limit);
+		for(File file : this.folder.listFiles()) {
+			file.delete();
+		}
+		this.folder.delete();
+	}
+
+	@org.junit.Test
+	public void testInMemory() {
+		Config.setGraphicMemoryLimit(Long.MAX_VALUE);
+		File file = new File(this.folder, "a.png");
+		BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+		Graphic graphic = new Graphic(image, file);
+		Assert.assertTrue(graphic.isInMemory());
+		Assert.assertSame(image, graphic.getImage());
+		Assert.assertFalse(file.exists());
+		// Requesting the file writes the image
+		Assert.assertEquals(file, graphic.getFile());
+		Assert.assertTrue(file.exists());
+		graphic.spill();
+		Assert.assertFalse(graphic.isInMemory());
+		Assert.assertEquals(10, graphic.getImage().getWidth());
+	}
+
+	@org.junit.Test
+	public void testSpillOverLimit() {
+		Config.setGraphicMemoryLimit(0);
+		File file = new File(this.folder, "b.png");
+		Graphic graphic = new Graphic(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), file);
+		Assert.assertFalse(graphic.isInMemory());
+		Assert.assertTrue(file.exists());
+	}
+
+	@org.junit.Test
+	public void testMemoryUsage() {
+		Config.setGraphicMemoryLimit(Long.MAX_VALUE);
+		long before = Graphic.getMemoryUsage();
+		Graphic graphic = new Graphic(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), new File(this.folder, "c.png"));
+		Assert.assertEquals(before + 400, Graphic.getMemoryUsage());
+		graphic.spill();
+		Assert.assertEquals(before, Graphic.getMemoryUsage());
+	}
+
+	@org.junit.Test
+	public void testCvGraphicDecodesOnce() throws IOException {
+		File file = new File(this.folder, "d.png");
+		ImageIO.write(new BufferedImage(30, 20, BufferedImage.TYPE_INT_RGB), "png", file);
+		CvGraphic graphic = new CvGraphic(file);
+		// Dimensions are read from the header
+		Assert.assertEquals(30, graphic.getWidth());
+		Assert.assertEquals(20, graphic.getHeight());
+		BufferedImage image = graphic.getBufferedImage();
+		Assert.assertSame(image, graphic.getBufferedImage());
+		graphic.dispose();
+		Assert.assertNotSame(image, graphic.getBufferedImage());
+	}
+
+}
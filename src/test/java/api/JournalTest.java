@@ -0,0 +1,63 @@
+package api;
+
+import de.lutana.geodataextractor.Journal;
+import de.lutana.geodataextractor.entity.Document;
+import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.entity.Location;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Map;
+import org.junit.Assert;
+
+public class JournalTest {
+
+	@org.junit.Test
+	public void testAppendAndRead() throws IOException {
+		File file = File.createTempFile("journal", ".jsonl");
+		file.deleteOnExit();
+
+		Document doc = new Document(new File("test-docs/germany.html"));
+		Figure figure = doc.addFigure(null, "1", 2);
+		Location location = new Location(5.98865807458, 15.0169958839, 47.3024876979, 54.983104153);
+		location.setProbability(0.75);
+		figure.setLocation(location);
+		doc.addFigure(null, "2", null);
+
+		Journal journal = new Journal(file);
+		journal.open(false);
+		journal.append(doc);
+		journal.close();
+
+		Map<Document, Document> result = journal.read();
+		Assert.assertEquals(1, result.size());
+		Document restored = result.get(new Document(new File("test-docs/germany.html")));
+		Assert.assertNotNull(restored);
+		Assert.assertEquals(2, restored.getFigures().size());
+		Assert.assertEquals(location, restored.getFigures().get(0).getLocation());
+		Assert.assertEquals(0.75, restored.getFigures().get(0).getLocation().getProbability(), 0.00001);
+		Assert.assertEquals(Integer.valueOf(2), restored.getFigures().get(0).getPage());
+		Assert.assertNull(restored.getFigures().get(1).getLocation());
+		Assert.assertEquals(doc.getLocation(), restored.getLocation());
+	}
+
+	@org.junit.Test
+	public void testResumeAfterIncompleteLine() throws IOException {
+		File file = File.createTempFile("journal", ".jsonl");
+		file.deleteOnExit();
+		try (FileWriter writer = new FileWriter(file)) {
+			// Simulates a crash while writing
+			writer.write("{\"document\": \"test-docs/a.pdf\", \"figu");
+		}
+
+		Journal journal = new Journal(file);
+		journal.open(true);
+		journal.append(new Document(new File("test-docs/b.pdf")));
+		journal.close();
+
+		Map<Document, Document> result = journal.read();
+		Assert.assertEquals(1, result.size());
+		Assert.assertTrue(result.containsKey(new Document(new File("test-docs/b.pdf"))));
+	}
+
+}
@@ -0,0 +1,94 @@
+package api;
+
+import de.lutana.geodataextractor.Config;
+import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.entity.Graphic;
+import de.lutana.geodataextractor.recognizer.cv.CvGraphic;
+import de.lutana.geodataextractor.recognizer.cv.MapAxesLineDetector;
+import de.lutana.geodataextractor.recognizer.cv.MatScope;
+import de.lutana.geodataextractor.recognizer.cv.OpenCV;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+public class MapAxesLineDetectorTest {
+
+	private static final int[][] COLORS = new int[][] {{20, 30, 200}, {230, 230, 230}, {40, 160, 40}};
+
+	private long limit;
+
+	@org.junit.Before
+	public void setUp() {
+		this.limit = Config.getGraphicMemoryLimit();
+		Config.setGraphicMemoryLimit(Long.MAX_VALUE);
+		// Loads the native library
+		OpenCV.getInstance();
+	}
+
+	@org.junit.After
+	public void tearDown() {
+		Config.setGraphicMemoryLimit(this.limit);
+	}
+
+	@org.junit.Test
+	public void testCluster() {
+		Figure figure = new Figure(null, null, "1");
+		figure.setGraphic(new Graphic(new BufferedImage(200, 100, BufferedImage.TYPE_3BYTE_BGR), new File("figure.png")));
+		CvGraphic graphic = new CvGraphic(figure);
+		try (MatScope scope = MatScope.open()) {
+			// Three clearly separated colours with some noise
+			Mat cutout = MatScope.track(new Mat(100, 200, CvType.CV_8UC3));
+			Random random = new Random(1);
+			byte[] data = new byte[(int) cutout.total() * 3];
+			for(int i = 0; i < data.length; i += 3) {
+				int[] color = COLORS[random.nextInt(COLORS.length)];
+				for(int c = 0; c < 3; c++) {
+					data[i + c] = (byte) Math.max(0, Math.min(255, color[c] + random.nextInt(21) - 10));
+				}
+			}
+			cutout.put(0, 0, data);
+
+			Mat clustered = new MapAxesLineDetector(graphic).cluster(cutout, COLORS.length);
+			Assert.assertEquals(cutout.type(), clustered.type());
+			byte[] result = new byte[data.length];
+			clustered.get(0, 0, result);
+
+			// The result only consists of the colours of the cluster centers
+			Set<Integer> palette = new HashSet<>();
+			for(int i = 0; i < result.length; i += 3) {
+				palette.add(toInt(result, i));
+			}
+			Assert.assertEquals(COLORS.length, palette.size());
+
+			// Each pixel has the colour of the nearest center
+			for(int i = 0; i < data.length; i += 3) {
+				int nearest = 0;
+				long minDist = Long.MAX_VALUE;
+				for(int color : palette) {
+					long dist = 0;
+					for(int c = 0; c < 3; c++) {
+						long d = (data[i + c] & 0xFF) - ((color >> (16 - c * 8)) & 0xFF);
+						dist += d * d;
+					}
+					if (dist < minDist) {
+						minDist = dist;
+						nearest = color;
+					}
+				}
+				Assert.assertEquals("Pixel " + i / 3, nearest, toInt(result, i));
+			}
+		} finally {
+			graphic.dispose();
+		}
+	}
+
+	private static int toInt(byte[] data, int i) {
+		return ((data[i] & 0xFF) << 16) | ((data[i + 1] & 0xFF) << 8) | (data[i + 2] & 0xFF);
+	}
+
+}
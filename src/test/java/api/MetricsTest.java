@@ -0,0 +1,47 @@
+package api;
+
+import de.lutana.geodataextractor.metrics.Metrics;
+import de.lutana.geodataextractor.metrics.PrometheusMetricsReporter;
+import de.lutana.geodataextractor.metrics.Timer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+
+public class MetricsTest {
+
+	@org.junit.Test
+	public void testTimer() {
+		Timer timer = new Timer("test");
+		for(int i = 1; i <= 100; i++) {
+			timer.record(i * 1000000L); // 1 to 100 ms
+		}
+		Assert.assertEquals(100, timer.getCount());
+		Assert.assertEquals(5050, timer.getTotalTime(), 0.001);
+		Assert.assertEquals(100, timer.getMaxTime(), 0.001);
+		Assert.assertEquals(50.5, timer.getMeanTime(), 0.001);
+		// Percentiles are estimated within the bucket bounds
+		Assert.assertEquals(50, timer.getPercentile(0.5), 1);
+		Assert.assertEquals(95, timer.getPercentile(0.95), 2.5);
+	}
+
+	@org.junit.Test
+	public void testPrometheus() throws IOException {
+		Metrics metrics = Metrics.getInstance();
+		metrics.reset();
+		metrics.timer("ocr.tesseract").record(3000000L);
+		Metrics.count("documents");
+		Metrics.count("documents");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		metrics.report(new PrometheusMetricsReporter(), out);
+		String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		Assert.assertTrue(text.contains("# TYPE geodataextractor_ocr_tesseract_seconds histogram\n"));
+		Assert.assertTrue(text.contains("geodataextractor_ocr_tesseract_seconds_bucket{le=\"0.001\"} 0\n"));
+		Assert.assertTrue(text.contains("geodataextractor_ocr_tesseract_seconds_bucket{le=\"0.005\"} 1\n"));
+		Assert.assertTrue(text.contains("geodataextractor_ocr_tesseract_seconds_count 1\n"));
+		Assert.assertTrue(text.contains("geodataextractor_documents_total 2\n"));
+		metrics.reset();
+	}
+
+}
@@ -0,0 +1,70 @@
+package api;
+
+import de.lutana.geodataextractor.util.MicroBatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+
+public class MicroBatcherTest {
+
+	@org.junit.Test
+	public void testBatching() throws InterruptedException, ExecutionException {
+		AtomicInteger batches = new AtomicInteger();
+		List<Integer> sizes = new ArrayList<>();
+		try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test", inputs -> {
+			batches.incrementAndGet();
+			sizes.add(inputs.size());
+			List<Integer> outputs = new ArrayList<>();
+			for(Integer i : inputs) {
+				outputs.add(i * 2);
+			}
+			return outputs;
+		}, 4, 200)) {
+			List<CompletableFuture<Integer>> futures = new ArrayList<>();
+			for(int i = 0; i < 6; i++) {
+				futures.add(batcher.submit(i));
+			}
+			for(int i = 0; i < 6; i++) {
+				Assert.assertEquals(Integer.valueOf(i * 2), futures.get(i).get());
+			}
+		}
+		Assert.assertEquals(2, batches.get());
+		Assert.assertEquals(Integer.valueOf(4), sizes.get(0));
+	}
+
+	@org.junit.Test(expected = ExecutionException.class)
+	public void testFailure() throws InterruptedException, ExecutionException {
+		try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test", inputs -> {
+			throw new IllegalArgumentException();
+		}, 4, 0)) {
+			batcher.submit(1).get();
+		}
+	}
+
+	@org.junit.Test
+	public void testErrorKeepsWorkerRunning() throws InterruptedException, ExecutionException {
+		AtomicInteger calls = new AtomicInteger();
+		try (MicroBatcher<Integer, Integer> batcher = new MicroBatcher<>("test", inputs -> {
+			if (calls.incrementAndGet() == 1) {
+				throw new OutOfMemoryError();
+			}
+			return inputs;
+		}, 4, 0)) {
+			try {
+				batcher.submit(1).get();
+				Assert.fail();
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof OutOfMemoryError);
+			}
+			Assert.assertEquals(Integer.valueOf(2), batcher.submit(2).get(10, TimeUnit.SECONDS));
+		} catch (TimeoutException e) {
+			Assert.fail("The batcher doesn't process requests after an error.");
+		}
+	}
+
+}
@@ -0,0 +1,81 @@
+package api;
+
+import de.lutana.geodataextractor.ModelRegistry;
+import de.lutana.geodataextractor.detector.MapDetector;
+import de.lutana.geodataextractor.detector.TensorFlowMapDetector;
+import org.junit.Assert;
+import org.junit.Assume;
+
+public class ModelRegistryTest {
+
+	private final ModelRegistry registry = ModelRegistry.getInstance();
+
+	@org.junit.Before
+	public void setUp() {
+		// The models are only closed by the last user, so there must be no other users
+		Assume.assumeTrue(this.registry.getReferences() == 0);
+	}
+
+	@org.junit.Test
+	public void testSharedInstance() throws Exception {
+		this.registry.retain();
+		try {
+			TensorFlowMapDetector detector = this.registry.getTensorFlowMapDetector();
+			Assert.assertSame(detector, this.registry.getTensorFlowMapDetector());
+			Assert.assertSame(detector, TensorFlowMapDetector.getInstance());
+		} finally {
+			this.registry.release();
+		}
+	}
+
+	@org.junit.Test
+	public void testLastReleaseCloses() throws Exception {
+		this.registry.retain();
+		this.registry.retain();
+		TensorFlowMapDetector detector = this.registry.getTensorFlowMapDetector();
+		this.registry.release();
+		Assert.assertEquals(1, this.registry.getReferences());
+		Assert.assertFalse(detector.isClosed());
+		this.registry.release();
+		Assert.assertEquals(0, this.registry.getReferences());
+		Assert.assertTrue(detector.isClosed());
+
+		// The next user gets a new instance
+		this.registry.retain();
+		try {
+			TensorFlowMapDetector reloaded = this.registry.getTensorFlowMapDetector();
+			Assert.assertNotSame(detector, reloaded);
+			Assert.assertFalse(reloaded.isClosed());
+		} finally {
+			this.registry.release();
+		}
+	}
+
+	@org.junit.Test(expected = IllegalStateException.class)
+	public void testClosedModel() throws Exception {
+		this.registry.retain();
+		TensorFlowMapDetector detector = this.registry.getTensorFlowMapDetector();
+		this.registry.release();
+		detector.preload();
+	}
+
+	@org.junit.Test
+	public void testDetectorRetains() throws Exception {
+		MapDetector detector = new MapDetector(false);
+		Assert.assertEquals(1, this.registry.getReferences());
+		TensorFlowMapDetector model = this.registry.getTensorFlowMapDetector();
+		detector.close();
+		Assert.assertEquals(0, this.registry.getReferences());
+		Assert.assertTrue(model.isClosed());
+		// Closing twice doesn't release somebody else's reference
+		detector.close();
+		Assert.assertEquals(0, this.registry.getReferences());
+	}
+
+	@org.junit.Test
+	public void testReleaseWithoutRetain() {
+		this.registry.release();
+		Assert.assertEquals(0, this.registry.getReferences());
+	}
+
+}
@@ -0,0 +1,151 @@
+package api;
+
+import de.lutana.geodataextractor.recognizer.cv.MatScope;
+import de.lutana.geodataextractor.recognizer.cv.OpenCV;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import org.junit.Assert;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+public class OpenCVTest {
+
+	private static final int WIDTH = 13;
+	private static final int HEIGHT = 7;
+
+	@org.junit.Test
+	public void testColorRoundTrip() {
+		int[] types = new int[] {
+			BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_4BYTE_ABGR_PRE,
+			BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_INT_BGR,
+			BufferedImage.TYPE_USHORT_565_RGB, BufferedImage.TYPE_USHORT_555_RGB,
+			BufferedImage.TYPE_BYTE_INDEXED, BufferedImage.TYPE_BYTE_BINARY
+		};
+		for(int type : types) {
+			BufferedImage image = createImage(type);
+			this.assertRoundTrip(image, CvType.CV_8UC3);
+		}
+	}
+
+	@org.junit.Test
+	public void testSubImageRoundTrip() {
+		BufferedImage image = createImage(BufferedImage.TYPE_3BYTE_BGR).getSubimage(2, 1, 8, 5);
+		this.assertRoundTrip(image, CvType.CV_8UC3);
+	}
+
+	@org.junit.Test
+	public void testGrayRoundTrip() {
+		this.assertRoundTrip(createImage(BufferedImage.TYPE_BYTE_GRAY), CvType.CV_8UC1);
+	}
+
+	@org.junit.Test
+	public void testUShortGrayRoundTrip() {
+		this.assertRoundTrip(createImage(BufferedImage.TYPE_USHORT_GRAY), CvType.CV_16UC1);
+	}
+
+	@org.junit.Test
+	public void testToMonotoneCustom() {
+		OpenCV cv = OpenCV.getInstance();
+		try (MatScope scope = MatScope.open()) {
+			// Mostly dark values around the threshold of 75, including black, gray and equal channels
+			Mat source = MatScope.track(new Mat(HEIGHT * 4, WIDTH * 4, CvType.CV_8UC3));
+			Random random = new Random(1);
+			byte[] data = new byte[(int) source.total() * 3];
+			for(int i = 0; i < data.length; i += 3) {
+				int v = random.nextInt(4) == 0 ? 255 : random.nextInt(90);
+				boolean gray = random.nextBoolean();
+				for(int c = 0; c < 3; c++) {
+					if (random.nextInt(10) == 0) {
+						data[i + c] = 0;
+					}
+					else {
+						data[i + c] = (byte) (gray || random.nextInt(4) == 0 ? v : random.nextInt(90));
+					}
+				}
+			}
+			source.put(0, 0, data);
+			for(boolean inverse : new boolean[] {false, true}) {
+				Mat expected = toMonotoneCustomPerPixel(cv, source, inverse);
+				Mat actual = cv.toMonotoneCustom(source, inverse);
+				byte[] expectedData = new byte[(int) expected.total()];
+				byte[] actualData = new byte[(int) actual.total()];
+				expected.get(0, 0, expectedData);
+				actual.get(0, 0, actualData);
+				Assert.assertArrayEquals(expectedData, actualData);
+			}
+		}
+	}
+
+	/**
+	 * The former implementation of toMonotoneCustom(), which processed the image pixel by pixel.
+	 */
+	private static Mat toMonotoneCustomPerPixel(OpenCV cv, Mat source, boolean inverse) {
+		Mat img = MatScope.track(source.clone());
+		final double[] white = new double[] {255,255,255};
+		for (int y = 0; y < img.rows(); ++y) {
+			for (int x = 0; x < img.cols(); ++x) {
+				double[] bgr = img.get(y, x);
+				if (bgr[0] != 0 && bgr[1] != 0 && bgr[2] != 0) {
+					double r = bgr[2] / 25;
+					double g = bgr[1] / 25;
+					double b = bgr[0] / 25;
+					if (r > 3 || g > 3 || b > 3) {
+						img.put(y, x, white);
+					} else if (r != g || g != b || b != r) {
+						img.put(y, x, white);
+					}
+				}
+			}
+		}
+		img = cv.toGrayscale(img);
+		Imgproc.threshold(img, img, 128, 255, inverse ? Imgproc.THRESH_BINARY_INV : Imgproc.THRESH_BINARY);
+		return img;
+	}
+
+	private static BufferedImage createImage(int type) {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+		Random random = new Random(type);
+		if (type == BufferedImage.TYPE_BYTE_GRAY || type == BufferedImage.TYPE_USHORT_GRAY) {
+			// Set the samples directly, setRGB would apply a color conversion
+			int max = type == BufferedImage.TYPE_BYTE_GRAY ? 0xFF : 0xFFFF;
+			for(int y = 0; y < HEIGHT; y++) {
+				for(int x = 0; x < WIDTH; x++) {
+					image.getRaster().setSample(x, y, 0, random.nextInt(max + 1));
+				}
+			}
+		}
+		else {
+			// Opaque colors only, as the alpha channel is dropped
+			for(int y = 0; y < HEIGHT; y++) {
+				for(int x = 0; x < WIDTH; x++) {
+					image.setRGB(x, y, 0xFF000000 | random.nextInt(0x1000000));
+				}
+			}
+		}
+		return image;
+	}
+
+	private void assertRoundTrip(BufferedImage image, int matType) {
+		String message = "BufferedImage type " + image.getType();
+		OpenCV cv = OpenCV.getInstance();
+		try (MatScope scope = MatScope.open()) {
+			Mat mat = cv.toMat(image);
+			Assert.assertEquals(message, matType, mat.type());
+			BufferedImage result = cv.toBufferedImage(mat);
+			Assert.assertEquals(message, image.getWidth(), result.getWidth());
+			Assert.assertEquals(message, image.getHeight(), result.getHeight());
+			for(int y = 0; y < image.getHeight(); y++) {
+				for(int x = 0; x < image.getWidth(); x++) {
+					if (matType == CvType.CV_8UC3) {
+						Assert.assertEquals(message + " at " + x + "," + y, image.getRGB(x, y), result.getRGB(x, y));
+					}
+					else {
+						Assert.assertEquals(message + " at " + x + "," + y, image.getRaster().getSample(x, y, 0), result.getRaster().getSample(x, y, 0));
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+package api;
+
+import de.lutana.geodataextractor.fileparser.PageRange;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+
+public class PageRangeTest {
+
+	@org.junit.Test
+	public void testContains() {
+		PageRange range = new PageRange(3, 5);
+		Assert.assertFalse(range.contains(2));
+		Assert.assertTrue(range.contains(3));
+		Assert.assertTrue(range.contains(5));
+		Assert.assertFalse(range.contains(6));
+		Assert.assertFalse(range.contains(null));
+	}
+
+	@org.junit.Test
+	public void testGetPages() {
+		Assert.assertEquals(Arrays.asList(3, 4, 5), new PageRange(3, 5).getPages(0, 10));
+		// Pages outside of the document are ignored
+		Assert.assertEquals(Arrays.asList(3, 4), new PageRange(3, 5).getPages(0, 4));
+		Assert.assertEquals(Collections.emptyList(), PageRange.of(12).getPages(0, 4));
+	}
+
+	@org.junit.Test(expected = IllegalArgumentException.class)
+	public void testInvalid() {
+		new PageRange(5, 3);
+	}
+
+}
@@ -0,0 +1,108 @@
+package api;
+
+import de.lutana.geodataextractor.Config;
+import de.lutana.geodataextractor.entity.Document;
+import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.fileparser.PageRange;
+import de.lutana.geodataextractor.fileparser.PdfParser;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.Assert;
+
+public class PdfParserTest {
+
+	private static final int PAGES = 3;
+
+	private File file;
+	private long limit;
+
+	@org.junit.Before
+	public void setUp() throws IOException {
+		this.limit = Config.getGraphicMemoryLimit();
+		Config.setGraphicMemoryLimit(Long.MAX_VALUE);
+		this.file = Files.createTempFile("pages-", ".pdf").toFile();
+		createPdf(this.file);
+	}
+
+	@org.junit.After
+	public void tearDown() {
+		Config.setGraphicMemoryLimit(this.limit);
+		this.file.delete();
+	}
+
+	@org.junit.Test
+	public void testSinglePage() throws Exception {
+		Document complete = new Document(this.file);
+		new PdfParser().parse(complete);
+		for(int page = 0; page < PAGES; page++) {
+			Document document = new Document(this.file);
+			new PdfParser().parse(document, PageRange.of(page));
+			Assert.assertFalse(document.getFigures().isEmpty());
+			for(Figure figure : document.getFigures()) {
+				Assert.assertEquals(Integer.valueOf(page), figure.getPage());
+			}
+			// The same figures as in the complete document
+			int expected = 0;
+			for(Figure figure : complete.getFigures()) {
+				if (Integer.valueOf(page).equals(figure.getPage())) {
+					expected++;
+				}
+			}
+			Assert.assertEquals(expected, document.getFigures().size());
+		}
+	}
+
+	/**
+	 * Creates a document with some text and a captioned figure on each page.
+	 */
+	private static void createPdf(File file) throws IOException {
+		try (PDDocument pdf = new PDDocument()) {
+			for(int i = 1; i <= PAGES; i++) {
+				PDPage page = new PDPage();
+				pdf.addPage(page);
+				PDImageXObject image = LosslessFactory.createFromImage(pdf, createImage(i));
+				try (PDPageContentStream content = new PDPageContentStream(pdf, page)) {
+					writeText(content, 72, 720, "Section " + i + ". The study area is located in the north of the region.");
+					writeText(content, 72, 705, "The samples were collected at several sites between 2010 and 2015.");
+					content.drawImage(image, 106, 380, 400, 300);
+					writeText(content, 72, 360, "Figure " + i + ": Map of the sampling sites in area " + i + ".");
+					writeText(content, 72, 320, "The results are discussed in the following sections of the paper.");
+				}
+			}
+			pdf.save(file);
+		}
+	}
+
+	private static void writeText(PDPageContentStream content, float x, float y, String text) throws IOException {
+		content.beginText();
+		content.setFont(PDType1Font.HELVETICA, 10);
+		content.newLineAtOffset(x, y);
+		content.showText(text);
+		content.endText();
+	}
+
+	private static BufferedImage createImage(int seed) {
+		BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(new Color(200, 230, 200));
+		g.fillRect(0, 0, 400, 300);
+		g.setColor(new Color(150, 190, 240));
+		g.fillPolygon(new int[] {0, 150 + seed * 20, 250, 0}, new int[] {0, 60, 200, 300}, 4);
+		g.setColor(Color.BLACK);
+		g.drawRect(0, 0, 399, 299);
+		g.drawLine(40, 250, 360, 40 + seed * 30);
+		g.dispose();
+		return image;
+	}
+
+}
@@ -0,0 +1,43 @@
+package api;
+
+import de.lutana.geodataextractor.strategy.RecognizerStatistics;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Assert;
+
+public class RecognizerStatisticsTest {
+
+	@org.junit.Test
+	public void testAdd() {
+		RecognizerStatistics stats = new RecognizerStatistics(0.05);
+		Assert.assertEquals(0, stats.get("ocr", "small").getSamples());
+
+		stats.add("ocr", "small", 100, true);
+		stats.add("ocr", "small", 300, false);
+		RecognizerStatistics.Entry entry = stats.get("ocr", "small");
+		Assert.assertEquals(2, entry.getSamples());
+		// The first observations are averaged
+		Assert.assertEquals(200, entry.getCost(), 0.001);
+		Assert.assertEquals(0.5, entry.getUsefulness(), 0.001);
+		// Contexts are independent
+		Assert.assertEquals(0, stats.get("ocr", "large").getSamples());
+	}
+
+	@org.junit.Test
+	public void testSaveAndLoad() throws IOException {
+		File file = File.createTempFile("statistics", ".json");
+		file.deleteOnExit();
+
+		RecognizerStatistics stats = new RecognizerStatistics(0.05);
+		stats.add("ocr", "small,caption", 120, true);
+		stats.save(file);
+
+		RecognizerStatistics loaded = new RecognizerStatistics(0.05);
+		loaded.load(file);
+		RecognizerStatistics.Entry entry = loaded.get("ocr", "small,caption");
+		Assert.assertEquals(1, entry.getSamples());
+		Assert.assertEquals(120, entry.getCost(), 0.001);
+		Assert.assertEquals(1, entry.getUsefulness(), 0.001);
+	}
+
+}
@@ -0,0 +1,48 @@
+package api;
+
+import de.lutana.geodataextractor.ResultCache;
+import de.lutana.geodataextractor.entity.Document;
+import de.lutana.geodataextractor.entity.Figure;
+import de.lutana.geodataextractor.entity.Location;
+import de.lutana.geodataextractor.strategy.NullStrategy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+
+public class ResultCacheTest {
+
+	@org.junit.Test
+	public void testStoreAndRestore() throws IOException {
+		File folder = Files.createTempDirectory("results").toFile();
+		try {
+			ResultCache cache = new ResultCache(folder);
+			NullStrategy strategy = new NullStrategy();
+
+			Document doc = new Document(new File("test-docs/germany.html"));
+			File entry = cache.getEntry(doc, strategy);
+			Assert.assertFalse(cache.restore(doc, entry));
+
+			Figure figure = doc.addFigure(null, "1", 1);
+			Location location = new Location(5.98865807458, 15.0169958839, 47.3024876979, 54.983104153);
+			figure.setLocation(location);
+			cache.store(doc, entry);
+
+			// A copy of the file has the same content and must hit the cache
+			File copy = new File(folder, "copy.html");
+			Files.copy(new File("test-docs/germany.html").toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Document copyDoc = new Document(copy);
+			File copyEntry = cache.getEntry(copyDoc, strategy);
+			Assert.assertEquals(entry, copyEntry);
+			Assert.assertTrue(cache.restore(copyDoc, copyEntry));
+			Assert.assertEquals(1, copyDoc.getFigures().size());
+			Assert.assertEquals(location, copyDoc.getFigures().get(0).getLocation());
+			Assert.assertEquals(copyDoc, copyDoc.getFigures().get(0).getDocument());
+		} finally {
+			FileUtils.deleteQuietly(folder);
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+package api;
+
+import de.lutana.geodataextractor.GeodataExtractor;
+import de.lutana.geodataextractor.Server;
+import de.lutana.geodataextractor.strategy.NullStrategy;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+
+public class ServerTest {
+
+	// Started once, stopping the server waits for the connections kept alive by HttpURLConnection
+	private static Server server;
+
+	@org.junit.BeforeClass
+	public static void setUp() throws IOException {
+		server = new Server(new GeodataExtractor(new NullStrategy()), 0, 1);
+		server.setRoot(new File("test-docs"));
+		server.setMaxUploadSize(1024);
+		server.start();
+	}
+
+	@org.junit.AfterClass
+	public static void tearDown() {
+		server.stop();
+	}
+
+	@org.junit.Test
+	public void testMethodNotAllowed() throws IOException {
+		HttpURLConnection connection = this.open("/extract?name=test.html", "GET");
+		Assert.assertEquals(405, connection.getResponseCode());
+	}
+
+	@org.junit.Test
+	public void testPathOutsideOfRoot() throws IOException {
+		String path = URLEncoder.encode(new File("pom.xml").getAbsolutePath(), "UTF-8");
+		HttpURLConnection connection = this.open("/extract?path=" + path, "POST");
+		Assert.assertEquals(403, connection.getResponseCode());
+
+		path = URLEncoder.encode("test-docs/../pom.xml", "UTF-8");
+		connection = this.open("/extract?path=" + path, "POST");
+		Assert.assertEquals(403, connection.getResponseCode());
+	}
+
+	@org.junit.Test
+	public void testUploadTooLarge() throws IOException {
+		HttpURLConnection connection = this.open("/extract?name=test.html", "POST");
+		byte[] body = new byte[2048];
+		connection.setDoOutput(true);
+		connection.setFixedLengthStreamingMode(body.length);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body);
+		} catch (IOException e) {
+			// The server might reject the request before the body has been sent completely
+		}
+		Assert.assertEquals(413, connection.getResponseCode());
+	}
+
+	@org.junit.Test
+	public void testUpload() throws IOException {
+		HttpURLConnection connection = this.open("/extract?name=test.html", "POST");
+		byte[] body = "<html><head><title>Germany</title></head><body><p>Berlin</p></body></html>".getBytes(StandardCharsets.UTF_8);
+		connection.setDoOutput(true);
+		connection.setFixedLengthStreamingMode(body.length);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body);
+		}
+		Assert.assertEquals(200, connection.getResponseCode());
+		Assert.assertTrue(connection.getContentType().startsWith("application/json"));
+		String json = read(connection.getInputStream());
+		Assert.assertTrue(json.startsWith("{"));
+		Assert.assertTrue(json.contains("\"document\""));
+	}
+
+	@org.junit.Test
+	public void testPathInRoot() throws IOException {
+		String path = URLEncoder.encode("test-docs/germany.html", "UTF-8");
+		HttpURLConnection connection = this.open("/extract?path=" + path, "POST");
+		Assert.assertEquals(200, connection.getResponseCode());
+		Assert.assertTrue(read(connection.getInputStream()).contains("germany.html"));
+	}
+
+	private HttpURLConnection open(String path, String method) throws IOException {
+		URL url = new URL("http", server.getBindAddress(), server.getPort(), path);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestMethod(method);
+		return connection;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		try (InputStream stream = in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = stream.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package benchmark;
+
+import de.lutana.geodataextractor.recognizer.cv.OpenCV;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the conversion between BufferedImage and Mat for typical figure sizes.
+ * 
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=benchmark.OpenCVConversionBenchmark
+ * 
+ * @author Matthias Mohr
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenCVConversionBenchmark {
+	
+	@Param({"800x600", "1600x1200", "3000x2200"})
+	public String size;
+	
+	@Param({"3BYTE_BGR", "INT_RGB", "4BYTE_ABGR", "BYTE_INDEXED"})
+	public String type;
+	
+	private OpenCV cv;
+	private BufferedImage image;
+	private Mat mat;
+	private File file;
+	
+	@Setup
+	public void setUp() throws IOException {
+		this.cv = OpenCV.getInstance();
+		String[] dim = this.size.split("x");
+		int width = Integer.parseInt(dim[0]);
+		int height = Integer.parseInt(dim[1]);
+		this.image = new BufferedImage(width, height, getType(this.type));
+		// Draw something like a figure, a plain image would be encoded unrealistically well
+		Random random = new Random(42);
+		Graphics2D g = this.image.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		for(int i = 0; i < 500; i++) {
+			g.setColor(new Color(random.nextInt(0xFFFFFF)));
+			g.drawLine(random.nextInt(width), random.nextInt(height), random.nextInt(width), random.nextInt(height));
+			g.drawString("Label " + i, random.nextInt(width), random.nextInt(height));
+		}
+		g.dispose();
+		this.mat = this.cv.toMat(this.image);
+		this.file = File.createTempFile("benchmark", ".png");
+		ImageIO.write(this.image, "png", this.file);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		this.mat.release();
+		this.file.delete();
+	}
+	
+	private static int getType(String type) {
+		switch(type) {
+			case "INT_RGB":
+				return BufferedImage.TYPE_INT_RGB;
+			case "4BYTE_ABGR":
+				return BufferedImage.TYPE_4BYTE_ABGR;
+			case "BYTE_INDEXED":
+				return BufferedImage.TYPE_BYTE_INDEXED;
+			default:
+				return BufferedImage.TYPE_3BYTE_BGR;
+		}
+	}
+	
+	@Benchmark
+	public int toMat() {
+		Mat result = this.cv.toMat(this.image);
+		int rows = result.rows();
+		result.release();
+		return rows;
+	}
+	
+	@Benchmark
+	public BufferedImage toBufferedImage() {
+		return this.cv.toBufferedImage(this.mat);
+	}
+	
+	@Benchmark
+	public int decodeWithImageIO() throws IOException {
+		Mat result = this.cv.toMat(ImageIO.read(this.file));
+		int rows = result.rows();
+		result.release();
+		return rows;
+	}
+	
+	@Benchmark
+	public int decodeWithOpenCV() {
+		Mat result = this.cv.readMat(this.file);
+		int rows = result.rows();
+		result.release();
+		return rows;
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(OpenCVConversionBenchmark.class.getSimpleName()).build()).run();
+	}
+	
+}
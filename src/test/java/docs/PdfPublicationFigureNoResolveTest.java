@@ -12,7 +12,7 @@ public class PdfPublicationFigureNoResolveTest extends BaseRecognizerTest {
 
 	public static class TestAnalyzerStrategy extends DefaultStrategy {
 		@Override
-		public void extractFigureLocations(Figure figure, LocationCollection documentLocations) {
+		public LocationCollection recognizeFigureLocations(Figure figure, LocationCollection documentLocations) {
 			CvGraphic cvGraphic = new CvGraphic(figure);
 
 			LocationCollection figureLocations = null;
@@ -20,13 +20,15 @@ public class PdfPublicationFigureNoResolveTest extends BaseRecognizerTest {
 			if (mapConfidence >= 0.4) { // 10% tolerance
 				figureLocations = this.getMapLocations(figure, cvGraphic, documentLocations);
 			}
+			cvGraphic.dispose();
 			StudyResults studyResults = getStudyResultsForFigure(figure);
 			try {
 				if (studyResults.isMap()) {
-					this.resolveFigureLocation(figure, figureLocations);
+					// Compare all maps, even if they haven't been detected
+					return figureLocations != null ? figureLocations : new LocationCollection();
 				}
 			} catch (InconsistencyException ex) {}
-			cvGraphic.dispose();
+			return null;
 		}
 		
 		@Override